@@ -0,0 +1,86 @@
+package system;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * JMH benchmarks comparing scalar and Vector API kernels of aggregates (see
+ * AggregateKernels) over columns of rows rows: value of stock, count below a
+ * reorder threshold and sums per key (e.g. VAT rate).
+ *
+ * VECTOR requires module jdk.incubator.vector (added to the benchmark JVM in
+ * build.gradle).
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class AggregateBenchmark {
+
+	@Param({ "SCALAR", "VECTOR" })
+	public String kernel;
+
+	@Param({ "4096", "1000000" })
+	public int rows;
+
+	private AggregateKernels kernels;
+
+	private long[] prices;
+
+	private int[] units;
+
+	private byte[] live;
+
+	private byte[] keys;
+
+	private long[] sums;
+
+
+	@Setup( Level.Trial )
+	public void setUp() {
+		kernels = kernel.equals( "VECTOR" )? AggregateKernels.vector() : AggregateKernels.scalar();
+		if( kernels == null ) {
+			throw new IllegalStateException( "module jdk.incubator.vector not present" );
+		}
+		Random rnd = new Random( 42 );
+		prices = new long[ rows ];
+		units = new int[ rows ];
+		live = new byte[ rows ];
+		keys = new byte[ rows ];
+		sums = new long[ 4 ];
+		for( int i=0; i < rows; i++ ) {
+			prices[ i ] = 100 + rnd.nextInt( 10000 );
+			units[ i ] = rnd.nextInt( 1000 );
+			live[ i ] = (byte)( rnd.nextInt( 100 ) < 98? 1 : 0 );
+			keys[ i ] = (byte)rnd.nextInt( 2 );
+		}
+	}
+
+	@Benchmark
+	public long stockValue() {
+		return kernels.sumOfProducts( prices, units, live, rows );
+	}
+
+	@Benchmark
+	public long countBelow() {
+		return kernels.countBelow( units, live, rows, 50 );
+	}
+
+	@Benchmark
+	public long[] sumByKey() {
+		sums[ 0 ] = sums[ 1 ] = 0L;
+		kernels.sumByKey( prices, keys, rows, sums );
+		return sums;
+	}
+}
@@ -0,0 +1,97 @@
+package system;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+
+
+/**
+ * JMH benchmarks of DataFactory.createArticle(), createOrder() and createOrderItem().
+ *
+ * Article ids have 6 digits, the id space is therefore limited to 10^6 articles.
+ * createArticle() is measured in batches of batchSize articles per iteration with
+ * the inventory cleared before each iteration.
+ *
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class DataFactoryBenchmark {
+
+	@Param({ "1000", "20000" })
+	public int batchSize;
+
+	private Components.DataFactory dataFactory;
+
+	private Components.InventoryManager inventoryManager;
+
+	private OrderRepository orderRepository;
+
+	private Customer customer;
+
+	private Article article;
+
+
+	@Setup( Level.Trial )
+	public void setUp() {
+		ComponentFactory componentFactory = ComponentFactory.getInstance();
+		dataFactory = componentFactory.getDataFactory();
+		inventoryManager = componentFactory.getInventoryManager();
+		orderRepository = componentFactory.getOrderRepository();
+		customer = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+		article = dataFactory.createArticle( "Kanne", 1999, 0 );
+	}
+
+	@Setup( Level.Iteration )
+	public void clear() {
+		inventoryManager.clear();
+		orderRepository.clear();	// created orders are stored in the repository
+	}
+
+	@Benchmark
+	@BenchmarkMode( Mode.SingleShotTime )
+	@Warmup( iterations = 5 )
+	@Measurement( iterations = 10 )
+	public Article createArticles() {
+		Article a = null;
+		for( int i=0; i < batchSize; i++ ) {
+			a = dataFactory.createArticle( "Tasse", 299, 2000 );
+		}
+		return a;
+	}
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	public Order createOrder() {
+		return dataFactory.createOrder( customer );
+	}
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	public OrderItem createOrderItem() {
+		// description built per item, deduplicated by DescriptionDictionary
+		return dataFactory.createOrderItem( article.getDescription() + " aus Porzellan", article, 1 );
+	}
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	@Threads( 8 )
+	public Order createOrderConcurrent() {
+		return dataFactory.createOrder( customer );
+	}
+}
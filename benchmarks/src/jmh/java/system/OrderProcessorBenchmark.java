@@ -0,0 +1,137 @@
+package system;
+
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * JMH benchmarks of OrderProcessor hot paths: accept(), orderValue() and vat().
+ * 
+ * Orders are drawn round-robin from a pool of pre-built orders with itemsPerOrder
+ * items referring to random articles of an inventory of articles articles.
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class OrderProcessorBenchmark {
+
+	private static final int ORDER_POOL = 1024;
+
+	@Param({ "LOCKING", "OPTIMISTIC", "RING" })
+	public String stockMode;
+
+	@Param({ "1000", "100000" })
+	public int articles;
+
+	@Param({ "1", "10", "100" })
+	public int itemsPerOrder;
+
+	private OrderProcessor orderProcessor;
+
+	private Article[] inventory;
+
+	private Order[] orders;
+
+	private long[] grossValues;
+
+	private List<Order> orderList;
+
+
+	@Setup( Level.Trial )
+	public void setUp() {
+		Components.DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+		InventoryManager inventoryManager = new InventoryManager();
+		orderProcessor = new OrderProcessor( inventoryManager, new VatRateTable(),
+			OrderProcessor.StockMode.valueOf( stockMode ), RoundingMode.HALF_UP );
+
+		Random rnd = new Random( 42 );
+		inventory = new Article[ articles ];
+		for( int i=0; i < articles; i++ ) {
+			inventory[ i ] = dataFactory.createArticle( "Artikel " + i, 100 + rnd.nextInt( 10000 ), 0 );
+			inventoryManager.add( inventory[ i ] );
+		}
+		Customer customer = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+		orders = new Order[ ORDER_POOL ];
+		grossValues = new long[ ORDER_POOL ];
+		for( int o=0; o < ORDER_POOL; o++ ) {
+			orders[ o ] = dataFactory.createOrder( customer );
+			for( int i=0; i < itemsPerOrder; i++ ) {
+				Article a = inventory[ rnd.nextInt( articles ) ];
+				orders[ o ].addItem( dataFactory.createOrderItem( a.getDescription(), a, 1 + rnd.nextInt( 3 ) ) );
+			}
+			grossValues[ o ] = rnd.nextInt( 1000000 );
+		}
+		orderList = List.of( orders );
+	}
+
+	@Setup( Level.Iteration )
+	public void restock() {
+		for( Article a : inventory ) {
+			a.setUnitsInStore( Integer.MAX_VALUE - 1 );
+		}
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		orderProcessor.close();
+	}
+
+	@State( Scope.Thread )
+	public static class Cursor {
+		int next = 0;
+
+		int next() {
+			return next++ & ( ORDER_POOL - 1 );
+		}
+	}
+
+	@Benchmark
+	public boolean accept( Cursor cursor ) {
+		return orderProcessor.accept( orders[ cursor.next() ] );
+	}
+
+	@Benchmark
+	@Threads( 4 )
+	public boolean acceptConcurrent( Cursor cursor ) {
+		return orderProcessor.accept( orders[ cursor.next() ] );
+	}
+
+	@Benchmark
+	public int acceptAll() {
+		return orderProcessor.acceptAll( orderList, null, null, null );
+	}
+
+	@Benchmark
+	public long orderValue( Cursor cursor ) {
+		return orderProcessor.orderValue( orders[ cursor.next() ] );
+	}
+
+	@Benchmark
+	public long vatOfOrder( Cursor cursor ) {
+		return orderProcessor.vat( orders[ cursor.next() ] );
+	}
+
+	@Benchmark
+	public long vat( Cursor cursor ) {
+		return orderProcessor.vat( grossValues[ cursor.next() ] );
+	}
+}
@@ -0,0 +1,104 @@
+package system;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * JMH benchmarks of OutputProcessor hot paths: fmtPrice(), fmtLine(), splitName()
+ * and printOrders() of orders lists of different sizes written to a null Writer,
+ * sequentially and in parallel in the common fork/join pool.
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class OutputProcessorBenchmark {
+
+	@Param({ "100", "10000" })
+	public int orders;
+
+	@Param({ "3", "50" })
+	public int itemsPerOrder;
+
+	private OutputProcessor outputProcessor;
+
+	private List<Order> orderList;
+
+	private Customer customer;
+
+	private final Writer out = Writer.nullWriter();
+
+	private long price = 0L;
+
+
+	@Setup( Level.Trial )
+	public void setUp() {
+		ComponentFactory componentFactory = ComponentFactory.getInstance();
+		Components.DataFactory dataFactory = componentFactory.getDataFactory();
+		outputProcessor = componentFactory.getOutputProcessor();
+
+		Random rnd = new Random( 42 );
+		String[] descriptions = { "Tasse", "Becher", "Kanne", "Teller", "Kaffeemaschine", "Teekocher" };
+		Article[] articles = new Article[ descriptions.length ];
+		for( int i=0; i < articles.length; i++ ) {
+			articles[ i ] = dataFactory.createArticle( descriptions[ i ], 100 + rnd.nextInt( 3000 ), 1000 );
+		}
+		customer = dataFactory.createCustomer( "Nadine Ulla Blumenfeld", "+4915292454" );
+		orderList = new ArrayList<Order>( orders );
+		for( int o=0; o < orders; o++ ) {
+			Order order = dataFactory.createOrder( customer );
+			for( int i=0; i < itemsPerOrder; i++ ) {
+				Article a = articles[ rnd.nextInt( articles.length ) ];
+				order.addItem( dataFactory.createOrderItem( a.getDescription(), a, 1 + rnd.nextInt( 12 ) ) );
+			}
+			orderList.add( order );
+		}
+	}
+
+	@Benchmark
+	public void printOrders() throws IOException {
+		outputProcessor.printOrders( orderList, true, out );
+	}
+
+	@Benchmark
+	public void printOrdersParallel() throws IOException {
+		outputProcessor.printOrders( orderList, true, out, ForkJoinPool.commonPool() );
+	}
+
+	@Benchmark
+	public String fmtPrice() {
+		price += 997;
+		return outputProcessor.fmtPrice( price, "EUR", 14 );
+	}
+
+	@Benchmark
+	public StringBuffer fmtLine() {
+		return outputProcessor.fmtLine( "#6135735635, Blumenfeld, Nadine Ulla's Bestellung: 12x Teller blau/weiss Keramik",
+			"     77,88 EUR", 84 );
+	}
+
+	@Benchmark
+	public String splitName() {
+		return outputProcessor.splitName( customer, "Nadine Ulla Blumenfeld" );
+	}
+}
@@ -0,0 +1,125 @@
+package system;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Aggregate kernels implemented with the Vector API of module jdk.incubator.vector,
+ * see AggregateKernels. Only loaded through AggregateKernels.vector() when the
+ * module is present. Compiled separately from the other system classes, see
+ * source set vector in build.gradle.
+ *
+ * Loops process one vector of the preferred species per iteration. Narrower
+ * columns (int units, byte live flags and keys) are loaded with species of at
+ * least the same number of lanes and widened with convertShape(). Remaining rows
+ * are processed by the scalar loops.
+ *
+ */
+final class VectorAggregateKernels extends AggregateKernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INTS_OF_LONGS = VectorSpecies.of( int.class,
+            VectorShape.forBitSize( Math.max( 64, LONGS.length() * Integer.SIZE ) ) );
+
+    private static final VectorSpecies<Byte> BYTES_OF_LONGS = VectorSpecies.of( byte.class,
+            VectorShape.forBitSize( Math.max( 64, LONGS.length() * Byte.SIZE ) ) );
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Byte> BYTES_OF_INTS = VectorSpecies.of( byte.class,
+            VectorShape.forBitSize( Math.max( 64, INTS.length() * Byte.SIZE ) ) );
+
+
+    // Konstruktor in den Komponenten‐Klasse VectorAggregateKernels:
+    VectorAggregateKernels() {
+    }
+
+    @Override
+    String name() {
+        return "vector(" + LONGS.vectorBitSize() + " bit)";
+    }
+
+    @Override
+    long sumOfProducts( long[] values, int[] units, byte[] live, int len ) {
+        final int lanes = LONGS.length();
+        final int bound = len - Math.max( lanes, BYTES_OF_LONGS.length() );   // loads of narrow columns may be wider
+        LongVector acc = LongVector.zero( LONGS );
+        int i = 0;
+        if( live == null ) {
+            for( ; i <= bound; i += lanes ) {
+                LongVector v = LongVector.fromArray( LONGS, values, i );
+                LongVector u = (LongVector)IntVector.fromArray( INTS_OF_LONGS, units, i )
+                        .convertShape( VectorOperators.I2L, LONGS, 0 );
+                acc = acc.add( v.mul( u ) );
+            }
+        } else {
+            for( ; i <= bound; i += lanes ) {
+                LongVector v = LongVector.fromArray( LONGS, values, i );
+                LongVector u = (LongVector)IntVector.fromArray( INTS_OF_LONGS, units, i )
+                        .convertShape( VectorOperators.I2L, LONGS, 0 );
+                VectorMask<Long> m = ByteVector.fromArray( BYTES_OF_LONGS, live, i )
+                        .convertShape( VectorOperators.B2L, LONGS, 0 ).compare( VectorOperators.NE, 0L );
+                acc = acc.add( v.mul( u ), m );
+            }
+        }
+        long sum = acc.reduceLanes( VectorOperators.ADD );
+        for( ; i < len; i++ ) {
+            sum += values[ i ] * units[ i ] * ( live == null? 1 : live[ i ] );
+        }
+        return sum;
+    }
+
+    @Override
+    long countBelow( int[] units, byte[] live, int len, int threshold ) {
+        if( threshold <= 0 ) {
+            return 0L;
+        }
+        final int lanes = INTS.length();
+        final int bound = len - Math.max( lanes, BYTES_OF_INTS.length() );
+        long count = 0L;
+        int i = 0;
+        for( ; i <= bound; i += lanes ) {
+            VectorMask<Integer> m = IntVector.fromArray( INTS, units, i ).compare( VectorOperators.LT, threshold );
+            if( live != null ) {
+                m = m.and( ByteVector.fromArray( BYTES_OF_INTS, live, i )
+                        .convertShape( VectorOperators.B2I, INTS, 0 ).compare( VectorOperators.NE, 0 ) );
+            }
+            count += m.trueCount();
+        }
+        for( ; i < len; i++ ) {
+            count += units[ i ] < threshold && ( live == null || live[ i ] != 0 )? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    void sumByKey( long[] values, byte[] keys, int len, long[] sums ) {
+        final int lanes = LONGS.length();
+        final int bound = len - Math.max( lanes, BYTES_OF_LONGS.length() );
+        final int end = bound < 0? 0 : ( bound / lanes + 1 ) * lanes;     // rows handled by vectors
+        ByteVector max = ByteVector.zero( BYTES_OF_LONGS );
+        for( int i=0; i < end; i += lanes ) {
+            max = max.max( ByteVector.fromArray( BYTES_OF_LONGS, keys, i ) );
+        }
+        final int keyCount = end == 0? 0 : max.reduceLanes( VectorOperators.MAX ) + 1;
+        for( int k=0; k < keyCount; k++ ) {       // one pass per key, few keys (e.g. VAT rates)
+            LongVector acc = LongVector.zero( LONGS );
+            for( int i=0; i < end; i += lanes ) {
+                VectorMask<Long> m = ByteVector.fromArray( BYTES_OF_LONGS, keys, i )
+                        .convertShape( VectorOperators.B2L, LONGS, 0 ).compare( VectorOperators.EQ, k );
+                acc = acc.add( LongVector.fromArray( LONGS, values, i ), m );
+            }
+            sums[ k ] += acc.reduceLanes( VectorOperators.ADD );
+        }
+        for( int i=end; i < len; i++ ) {
+            sums[ keys[ i ] ] += values[ i ];
+        }
+    }
+}
@@ -1,67 +1,77 @@
 package datamodel;
 
-public class Article {
-
-    // Attribute:
-    private String id;
-    private String description;
-    private long unitPrice;
-    private int unitsInStore;
+/**
+ * Article without attributes of its own. Attributes are kept by subclasses:
+ * HeapArticle keeps them in fields, inventories may keep them in their own
+ * storage and hand out articles that are views on it.
+ *
+ * Subclasses apply the same rules to values set, see the valid...() methods.
+ */
+public abstract class Article {
 
     // Konstruktor:
-    protected Article(String id, String descr, long price, int units) {
-    	this.id = id;
-        this.setDescription(description);
-        this.setUnitPrice(price);
-        this.setUnitsInStore(units);
+    protected Article() {
     }
 
     // Methoden:
-    public String getId() {
-        return id;
-    }
+    public abstract String getId();
 
-    public String getDescription() {
-        return description;
-    }
+    public abstract String getDescription();
+
+    public abstract void setDescription(String description);
+
+    public abstract long getUnitPrice();
+
+    public abstract void setUnitPrice(long unitPrice);
+
+    public abstract int getUnitsInStore();
+
+    public abstract void setUnitsInStore(int unitsInStore);
+
+    public abstract TaxClass getTaxClass();
+
+    public abstract void setTaxClass(TaxClass taxClass);
+
+    /**
+     * Atomically reduce unitsInStore by units, if enough units are in store.
+     * Uses a compare-and-set retry loop instead of a lock.
+     *
+     * @param units units to reserve, must be positive
+     * @return true, if units were reserved; false, if not enough units are in store
+     */
+    public abstract boolean tryReserve(int units);
+
+    /**
+     * Atomically return units previously reserved with tryReserve() to the store.
+     *
+     * @param units units to release, must be positive
+     */
+    public abstract void release(int units);
 
-    public void setDescription(String description) {
-    	
-    	if(description == null) {
-            this.description = "";
-        } else {
-            this.description = description;
-        }
-    	
+    protected static String validDescription(String description) {
+        return description == null ? "" : description;
     }
 
-    public long getUnitPrice() {
-        return unitPrice;
+    protected static long validUnitPrice(long unitPrice) {
+        return unitPrice < 0 || unitPrice == Long.MAX_VALUE ? 0 : unitPrice;
     }
 
-    public void setUnitPrice(long unitPrice) {
-    	
-        if(unitPrice < 0) {
-            this.unitPrice = 0;
-        } else if (unitPrice == Long.MAX_VALUE) {
-            this.unitPrice = 0;
-        } else {
-            this.unitPrice = unitPrice;
-        }
-        
+    protected static int validUnitsInStore(int unitsInStore) {
+        return unitsInStore < 0 || unitsInStore == Integer.MAX_VALUE ? 0 : unitsInStore;
     }
 
-    public int getUnitsInStore() {
-        return unitsInStore;
+    protected static TaxClass validTaxClass(TaxClass taxClass) {
+        return taxClass == null ? TaxClass.STANDARD : taxClass;
     }
 
-    public void setUnitsInStore(int unitsInStore) {
-    	
-    	if(unitsInStore < 0 || unitsInStore == Integer.MAX_VALUE) {
-            this.unitsInStore = 0;
-        } else {
-            this.unitsInStore = unitsInStore;
-        }
-    	
+    /**
+     * Return units in store after releasing units, capped below Integer.MAX_VALUE.
+     *
+     * @param unitsInStore units in store before
+     * @param units units released, positive
+     * @return units in store after
+     */
+    protected static int released(int unitsInStore, int units) {
+        return (int) Math.min((long) unitsInStore + units, Integer.MAX_VALUE - 1);
     }
 }
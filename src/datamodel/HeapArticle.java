@@ -0,0 +1,111 @@
+package datamodel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Article that keeps its attributes in fields on the heap. Unlike other datamodel
+ * classes, HeapArticle has a public constructor: articles are created by the
+ * inventory that keeps them (see system.Components.InventoryManager.createArticle()),
+ * which creates HeapArticle objects or views on its own storage.
+ */
+public final class HeapArticle extends Article {
+
+    // VarHandle for lock-free compare-and-set updates of unitsInStore:
+    private static final VarHandle UNITS_IN_STORE;
+
+    static {
+        try {
+            UNITS_IN_STORE = MethodHandles.lookup().findVarHandle(HeapArticle.class, "unitsInStore", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Attribute:
+    private final String id;
+    private String description;
+    private long unitPrice;
+    private volatile int unitsInStore;
+    private TaxClass taxClass = TaxClass.STANDARD;
+
+    // Konstruktor:
+    public HeapArticle(String id, String descr, long price, int units) {
+        this.id = id;
+        this.setDescription(descr);
+        this.setUnitPrice(price);
+        this.setUnitsInStore(units);
+    }
+
+    // Methoden:
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public void setDescription(String description) {
+        this.description = validDescription(description);
+    }
+
+    @Override
+    public long getUnitPrice() {
+        return unitPrice;
+    }
+
+    @Override
+    public void setUnitPrice(long unitPrice) {
+        this.unitPrice = validUnitPrice(unitPrice);
+    }
+
+    @Override
+    public int getUnitsInStore() {
+        return unitsInStore;
+    }
+
+    @Override
+    public void setUnitsInStore(int unitsInStore) {
+        this.unitsInStore = validUnitsInStore(unitsInStore);
+    }
+
+    @Override
+    public TaxClass getTaxClass() {
+        return taxClass;
+    }
+
+    @Override
+    public void setTaxClass(TaxClass taxClass) {
+        this.taxClass = validTaxClass(taxClass);
+    }
+
+    @Override
+    public boolean tryReserve(int units) {
+        if (units <= 0) {
+            return units == 0;
+        }
+        int current;
+        do {
+            current = unitsInStore;
+            if (current < units) {
+                return false;
+            }
+        } while (!UNITS_IN_STORE.weakCompareAndSet(this, current, current - units));
+        return true;
+    }
+
+    @Override
+    public void release(int units) {
+        if (units <= 0) {
+            return;
+        }
+        int current;
+        do {
+            current = unitsInStore;
+        } while (!UNITS_IN_STORE.weakCompareAndSet(this, current, released(current, units)));
+    }
+}
@@ -8,7 +8,13 @@ public class Order {
 	private final long id;
 	private Date date;
 	private Customer customer;
-	private List<OrderItem> items = new ArrayList<OrderItem>();
+	// items in insertion order, OrderItem has identity equality: O(1) duplicate check and removal
+	private final LinkedHashSet<OrderItem> items = new LinkedHashSet<OrderItem>();
+	private final Collection<OrderItem> itemsView = Collections.unmodifiableCollection( items );
+	// running totals of items, updated when items are added, removed or changed
+	private long value = 0L;
+	private long unitsOrdered = 0L;
+	private final long[] valueByTaxClass = new long[ TaxClass.values().length ];
 
 	// Konstruktor:
 	protected Order(long id, Date date, Customer customer) {
@@ -19,7 +25,6 @@ public class Order {
 			this.date = date;
 		}
 		this.customer = customer;
-		this.items = new ArrayList<>();
 	}
 
 	// Methoden:
@@ -36,30 +41,90 @@ public class Order {
 	}
 
 	public Iterable<OrderItem> getItems() {
-		return items;
+		return itemsView;
 	}
 
+	/**
+	 * Add item to order. Items that are already part of this or another order are
+	 * not added.
+	 *
+	 * @param item item to add
+	 * @return self-reference to allow method chaining
+	 */
 	public Order addItem(OrderItem item) {
-		
-		if (item == null || items.contains(item)) {
+
+		if (item == null || item.getOrder() != null || ! items.add(item)) {
 			return this;
 		}
-		this.items.add(item);
+		item.setOrder(this);
+		itemChanged(item.getValue(), item.getUnitsOrdered(), item.getTaxClass());
 		return this;
-		
+
 	}
 
 	public Order removeItem(OrderItem item) {
-		this.items.remove(item);
+		if (item != null && items.remove(item)) {
+			item.setOrder(null);
+			itemChanged(- item.getValue(), - item.getUnitsOrdered(), item.getTaxClass());
+		}
 		return this;
 	}
 
 	public Order clearItems() {
+		for (OrderItem item : items) {
+			item.setOrder(null);
+		}
 		this.items.clear();
+		this.value = 0L;
+		this.unitsOrdered = 0L;
+		Arrays.fill(valueByTaxClass, 0L);
 		return this;
 	}
 
+	/**
+	 * Return number of items (lines) of order.
+	 *
+	 * @return number of items
+	 */
 	public int count() {
 		return items.size();
 	}
+
+	/**
+	 * Return value of order as sum of values of its items, see OrderItem.getValue().
+	 *
+	 * @return value of order in cents
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Return value of items of a tax class. VAT of an order is calculated from
+	 * these values (one per tax class) rather than per item.
+	 *
+	 * @param taxClass tax class of items
+	 * @return value of items of taxClass in cents
+	 */
+	public long getValue(TaxClass taxClass) {
+		return valueByTaxClass[ taxClass == null? TaxClass.STANDARD.ordinal() : taxClass.ordinal() ];
+	}
+
+	/**
+	 * Return sum of units ordered over all items.
+	 *
+	 * @return units ordered
+	 */
+	public long getUnitsOrdered() {
+		return unitsOrdered;
+	}
+
+	/*
+	 * Update running totals by changes of an item.
+	 */
+	void itemChanged(long valueDelta, long unitsDelta, TaxClass taxClass) {
+		this.value += valueDelta;
+		this.unitsOrdered += unitsDelta;
+		this.valueByTaxClass[ taxClass.ordinal() ] += valueDelta;
+	}
 }
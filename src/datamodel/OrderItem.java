@@ -1,17 +1,18 @@
 package datamodel;
 
-import java.util.List;
-
 public class OrderItem {
 
 	// Attribute:
 	private String description;
 	private final Article article;
 	private int unitsOrdered;
+	private long value;			// unitsOrdered * unit price, booked when units are set
+	private TaxClass taxClass;	// tax class of article, booked with value
+	private Order order;		// order the item is part of, notified of changes
 
 	// Konstruktor:
 	protected OrderItem(String descr, Article article, int units) {
-		this.setDescription(description);
+		this.setDescription(descr);
         this.article = article;
         this.setUnitsOrdered(units);
 	}
@@ -41,11 +42,48 @@ public class OrderItem {
 
 	public void setUnitsOrdered(int unitsOrdered) {
 
-		if (unitsOrdered < 0) {
-			this.unitsOrdered = 0;
-		} else {
-			this.unitsOrdered = unitsOrdered;
+		int units = unitsOrdered < 0? 0 : unitsOrdered;
+		long value = article == null? 0L : units * article.getUnitPrice();
+		TaxClass taxClass = article == null? TaxClass.STANDARD : article.getTaxClass();
+		if (order != null) {
+			order.itemChanged(- this.value, - this.unitsOrdered, this.taxClass);
+			order.itemChanged(value, units, taxClass);
 		}
+		this.unitsOrdered = units;
+		this.value = value;
+		this.taxClass = taxClass;
+
+	}
+
+	/**
+	 * Return value of item as units ordered times the article's unit price at the
+	 * time units were set. Later changes of the unit price do not affect the value.
+	 *
+	 * @return value of item in cents
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Return tax class of the article at the time units were set.
+	 *
+	 * @return tax class of item
+	 */
+	public TaxClass getTaxClass() {
+		return taxClass;
+	}
+
+	/**
+	 * Return order the item is part of.
+	 *
+	 * @return order or null, if item is not part of an order
+	 */
+	public Order getOrder() {
+		return order;
+	}
 
+	void setOrder(Order order) {
+		this.order = order;
 	}
 }
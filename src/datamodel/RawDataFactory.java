@@ -66,7 +66,7 @@ final public class RawDataFactory {
 
             @Override
             public Article createArticle( String id, String descr, long price, int units ) {
-                return new Article( id, descr, price, units);
+                return new HeapArticle( id, descr, price, units);
             }
 
             @Override
@@ -0,0 +1,15 @@
+package datamodel;
+
+/**
+ * VAT tax classes of articles. The tax rate of a class is not part of the
+ * datamodel, it is resolved by system.VatRateTable for a given date, e.g.
+ * 19% for STANDARD and 7% for REDUCED in Germany.
+ * 
+ */
+public enum TaxClass {
+
+	STANDARD,		// e.g. 19%
+
+	REDUCED			// e.g. 7%, food, books
+
+}
@@ -0,0 +1,153 @@
+package system;
+
+
+/**
+ * Kernels of aggregate queries over primitive columns, e.g. of the columnar
+ * inventory (see ColumnarInventoryManager) or of values gathered from orders
+ * (see Aggregates).
+ *
+ * This class implements the kernels as plain scalar loops, which the JIT compiler
+ * may unroll and auto-vectorize. get() returns the kernels implemented with the
+ * Vector API (VectorAggregateKernels) instead, if module jdk.incubator.vector is
+ * present in the boot layer (java --add-modules jdk.incubator.vector) and vector
+ * kernels are not disabled with system property se1.vectorKernels=false. The
+ * vector kernels are loaded reflectively, such that the system runs without the
+ * incubator module. They are compiled in source set vector (src-vector), the only
+ * sources compiled with --add-modules jdk.incubator.vector; the module must be
+ * added to the JVM that runs the system as well (gradle run, test and jmh do so).
+ *
+ */
+class AggregateKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final String VECTOR_KERNELS = "VectorAggregateKernels";
+
+    private static final AggregateKernels SCALAR = new AggregateKernels();
+
+    /*
+     * Holder of vector kernels, loaded on first use.
+     */
+    private static final class Vector {
+        static final AggregateKernels KERNELS = load();
+    }
+
+
+    // Konstruktor in den Komponenten‐Klasse AggregateKernels:
+    AggregateKernels() {
+    }
+
+    /**
+     * Return the kernels to use: vector kernels if available and enabled,
+     * scalar kernels otherwise.
+     *
+     * @return kernels
+     */
+    static AggregateKernels get() {
+        final AggregateKernels vector = Boolean.parseBoolean(
+                System.getProperty( ComponentFactory.VECTOR_KERNELS_PROPERTY, "true" ) )? vector() : null;
+        return vector != null? vector : SCALAR;
+    }
+
+    /**
+     * Return the scalar kernels.
+     *
+     * @return scalar kernels
+     */
+    static AggregateKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Return the kernels implemented with the Vector API.
+     *
+     * @return vector kernels, null if module jdk.incubator.vector is not present
+     */
+    static AggregateKernels vector() {
+        return Vector.KERNELS;
+    }
+
+    /**
+     * Return the name of the kernels, e.g. for logs and benchmarks.
+     *
+     * @return name of kernels
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Sum of products of values and units of rows 0..len-1 that are live.
+     *
+     * @param values values, e.g. prices
+     * @param units units, e.g. units in store
+     * @param live 1 for rows included, 0 for rows excluded, null to include all rows
+     * @param len number of rows
+     * @return sum of values[i] * units[i] * live[i]
+     */
+    long sumOfProducts( long[] values, int[] units, byte[] live, int len ) {
+        long sum = 0L;
+        if( live == null ) {
+            for( int i=0; i < len; i++ ) {
+                sum += values[ i ] * units[ i ];
+            }
+        } else {
+            for( int i=0; i < len; i++ ) {
+                sum += values[ i ] * units[ i ] * live[ i ];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Count rows 0..len-1 that are live and have fewer units than threshold.
+     *
+     * @param units units, must not be negative
+     * @param live 1 for rows included, 0 for rows excluded, null to include all rows
+     * @param len number of rows
+     * @param threshold units below which rows are counted
+     * @return number of rows with units[i] < threshold
+     */
+    long countBelow( int[] units, byte[] live, int len, int threshold ) {
+        if( threshold <= 0 ) {
+            return 0L;
+        }
+        long count = 0L;
+        if( live == null ) {
+            for( int i=0; i < len; i++ ) {
+                count += ( units[ i ] - threshold ) >>> 31;     // units >= 0, no overflow
+            }
+        } else {
+            for( int i=0; i < len; i++ ) {
+                count += ( ( units[ i ] - threshold ) >>> 31 ) & live[ i ];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add values of rows 0..len-1 to the sum of their key.
+     *
+     * @param values values, e.g. gross values
+     * @param keys key of each row, 0 <= keys[i] < sums.length
+     * @param len number of rows
+     * @param sums sums per key, values are added
+     */
+    void sumByKey( long[] values, byte[] keys, int len, long[] sums ) {
+        for( int i=0; i < len; i++ ) {
+            sums[ keys[ i ] ] += values[ i ];
+        }
+    }
+
+    private static AggregateKernels load() {
+        if( ModuleLayer.boot().findModule( VECTOR_MODULE ).isPresent() ) {
+            try {
+                return (AggregateKernels)Class.forName( AggregateKernels.class.getPackageName() + "." + VECTOR_KERNELS )
+                        .getDeclaredConstructor().newInstance();
+            } catch( ReflectiveOperationException | LinkageError e ) {
+                // fall back to scalar kernels
+            }
+        }
+        return null;
+    }
+}
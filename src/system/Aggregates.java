@@ -0,0 +1,158 @@
+package system;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import datamodel.Article;
+import datamodel.Order;
+import datamodel.OrderItem;
+import datamodel.TaxClass;
+
+
+/**
+ * Aggregate queries over inventory and orders, e.g. for a dashboard that is
+ * refreshed periodically: value of all stock, articles below a reorder threshold,
+ * value of order items at current unit prices and VAT per tax rate.
+ *
+ * Inventory aggregates are delegated to the inventory, which scans its columns
+ * in place when it is a ColumnarInventoryManager. Orders are objects, their
+ * values are gathered in blocks of BLOCK rows into primitive arrays which are
+ * aggregated with the AggregateKernels (vectorized, if available).
+ *
+ */
+final class Aggregates implements Components.Aggregates {
+
+    private static final int BLOCK = 4096;          // rows gathered per kernel call
+
+    private static final int MAX_RATES = Byte.MAX_VALUE + 1;
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
+    // Attribute:
+    private final Components.InventoryManager inventory;
+
+    private final OrderProcessor orderProcessor;
+
+    private final AggregateKernels kernels;
+
+
+    // Konstruktor in den Komponenten‐Klasse Aggregates:
+    Aggregates( Components.InventoryManager inventory, OrderProcessor orderProcessor ) {
+        this( inventory, orderProcessor, AggregateKernels.get() );
+    }
+
+    /**
+     * Constructor with kernels, e.g. to compare scalar and vector kernels.
+     *
+     * @param inventory inventory of which stock is aggregated
+     * @param orderProcessor order processor that resolves VAT rates and rounding
+     * @param kernels kernels that aggregate gathered values
+     */
+    Aggregates( Components.InventoryManager inventory, OrderProcessor orderProcessor, AggregateKernels kernels ) {
+        this.inventory = inventory;
+        this.orderProcessor = orderProcessor;
+        this.kernels = kernels;
+    }
+
+    /**
+     * Return the value of all stock in inventory.
+     *
+     * @return sum of unitsInStore * unitPrice over all articles in inventory
+     */
+    @Override
+    public long stockValue() {
+        return inventory.stockValue();
+    }
+
+    /**
+     * Return the number of articles in inventory below a reorder threshold.
+     *
+     * @param threshold units in store below which articles are counted
+     * @return number of articles with unitsInStore < threshold
+     */
+    @Override
+    public long countBelow( int threshold ) {
+        return inventory.countBelow( threshold );
+    }
+
+    /**
+     * Return the value of order items at the current unit prices of their
+     * articles. Unlike Order.getValue(), which is booked at the unit prices at
+     * the time items were added, this reflects later price changes.
+     *
+     * @param orders orders of which items are aggregated
+     * @return sum of unitsOrdered * unitPrice over all items
+     */
+    @Override
+    public long itemValue( Iterable<Order> orders ) {
+        final long[] prices = new long[ BLOCK ];
+        final int[] units = new int[ BLOCK ];
+        long value = 0L;
+        int n = 0;
+        for( Order order : orders ) {
+            for( OrderItem item : order.getItems() ) {
+                final Article article = item.getArticle();
+                prices[ n ] = article == null? 0L : article.getUnitPrice();
+                units[ n ] = item.getUnitsOrdered();
+                if( ++n == BLOCK ) {
+                    value += kernels.sumOfProducts( prices, units, null, n );
+                    n = 0;
+                }
+            }
+        }
+        return value + kernels.sumOfProducts( prices, units, null, n );
+    }
+
+    /**
+     * Return VAT included in orders per VAT rate. Values of orders per tax class
+     * are summed up per rate effective at the order date, VAT is calculated once
+     * per rate (rounded with the rounding of the OrderProcessor), which may
+     * differ by rounding from the sum of OrderProcessor.vat( order ) over orders.
+     *
+     * @param orders orders of which VAT is aggregated
+     * @return included VAT by VAT rate in basis points (e.g. 1900 for 19%)
+     */
+    @Override
+    public SortedMap<Integer, Long> vatByRate( Iterable<Order> orders ) {
+        final VatRateTable vatRateTable = orderProcessor.getVatRateTable();
+        final long[] values = new long[ BLOCK ];
+        final byte[] keys = new byte[ BLOCK ];
+        final int[] rates = new int[ MAX_RATES ];      // rate of each key
+        final long[] sums = new long[ MAX_RATES ];
+        int rateCount = 0;
+        int n = 0;
+        for( Order order : orders ) {
+            final long time = order.getDate().getTime();
+            for( TaxClass taxClass : TAX_CLASSES ) {
+                final long value = order.getValue( taxClass );
+                if( value == 0L ) {
+                    continue;
+                }
+                final int rate = vatRateTable.rate( taxClass, time );
+                int key = 0;
+                while( key < rateCount && rates[ key ] != rate ) {
+                    key++;
+                }
+                if( key == rateCount ) {
+                    if( rateCount == MAX_RATES ) {
+                        throw new IllegalStateException( "too many VAT rates: " + rateCount );
+                    }
+                    rates[ rateCount++ ] = rate;
+                }
+                values[ n ] = value;
+                keys[ n ] = (byte)key;
+                if( ++n == BLOCK ) {
+                    kernels.sumByKey( values, keys, n, sums );
+                    n = 0;
+                }
+            }
+        }
+        kernels.sumByKey( values, keys, n, sums );
+        final TreeMap<Integer, Long> vat = new TreeMap<Integer, Long>();
+        for( int key=0; key < rateCount; key++ ) {
+            vat.merge( rates[ key ], OrderProcessor.includedVat( sums[ key ], rates[ key ], orderProcessor.getVatRounding() ), Long::sum );
+        }
+        return Collections.unmodifiableSortedMap( vat );
+    }
+}
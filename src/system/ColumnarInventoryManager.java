@@ -0,0 +1,557 @@
+package system;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import datamodel.Article;
+import datamodel.TaxClass;
+
+
+/**
+ * Implementation class of the InventoryManager interface that stores articles
+ * column-wise (structure of arrays) instead of as objects on the heap: prices
+ * in long[], units in store in int[], descriptions dictionary-encoded as int[]
+ * codes into a table of distinct descriptions, tax classes in byte[].
+ *
+ * Articles are flyweight views on a row of the columns that only keep the id,
+ * the row and its chunk. Getters and setters of a view read and write the
+ * columns, tryReserve() and release() update units with compare-and-set on the
+ * int[] element. Views are created by createArticle() (used by
+ * DataFactory.createArticle()); articles created elsewhere are copied into a new
+ * row when added and get() returns the view, not the added object.
+ *
+ * Columns are allocated in chunks of CHUNK rows that never move once allocated,
+ * only the directory of chunks is copied when the table grows. Views hold
+ * references to their chunks, such that growing never loses updates of views.
+ * A removed row stays in place as long as its view is referred to (e.g. from
+ * orders) and is masked out of scans by the live column. Once the view has been
+ * reclaimed by the garbage collector, a Cleaner puts the row on a free list from
+ * which rows are allocated before the table grows. Rows of views that are created
+ * but never added are reclaimed by clear() only.
+ *
+ * The dictionary counts the rows that refer to each description. Descriptions no
+ * longer referred to are dropped and their codes reused, such that the dictionary
+ * holds at most one entry per row.
+ *
+ * stockValue() and countBelow() scan the columns chunk by chunk with the
+ * AggregateKernels, branch-free loops over primitive arrays that read memory
+ * sequentially (vectorized with the Vector API, if available).
+ *
+ */
+final class ColumnarInventoryManager implements Components.InventoryManager {
+
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK = 1 << CHUNK_SHIFT;      // rows per chunk
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle( int[].class );
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Attribute:
+    private final ConcurrentHashMap<String, View> index;
+
+    private final Collection<Article> inventoryView;
+
+    private final OrderJournal journal;         // null without journal
+
+    private final AggregateKernels kernels;
+
+    private volatile Chunk[] chunks;
+
+    private volatile int rows;                  // rows allocated in chunks
+
+    private volatile Dictionary dictionary;     // replaced by clear() with the chunks
+
+    private int[] free;                         // rows of reclaimed views, guarded by this
+
+    private int freeCount;
+
+
+    /*
+     * Columns of CHUNK rows.
+     */
+    private static final class Chunk {
+        final ColumnarInventoryManager table;
+        final Dictionary dictionary;
+        final int index;            // in chunks
+        final long[] prices = new long[ CHUNK ];
+        final int[] units = new int[ CHUNK ];
+        final int[] descrs = new int[ CHUNK ];
+        final byte[] taxClasses = new byte[ CHUNK ];
+        final byte[] live = new byte[ CHUNK ];      // 1 for rows of articles in inventory, 0 otherwise
+        final byte[] watched = new byte[ CHUNK ];   // 1 for rows whose view is registered with the Cleaner, guarded by table
+
+        Chunk( ColumnarInventoryManager table, Dictionary dictionary, int index ) {
+            this.table = table;
+            this.dictionary = dictionary;
+            this.index = index;
+            Arrays.fill( descrs, Dictionary.NONE );
+        }
+    }
+
+
+    /*
+     * Flyweight Article on one row of the columns.
+     */
+    private static final class View extends Article {
+        private final String id;
+        private final Chunk chunk;
+        private final int i;            // row in chunk
+
+        View( String id, Chunk chunk, int i ) {
+            this.id = id;
+            this.chunk = chunk;
+            this.i = i;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getDescription() {
+            return chunk.dictionary.decode( chunk.descrs, i );
+        }
+
+        @Override
+        public void setDescription( String description ) {
+            chunk.dictionary.encode( chunk.descrs, i, validDescription( description ) );
+        }
+
+        @Override
+        public long getUnitPrice() {
+            return chunk.prices[ i ];
+        }
+
+        @Override
+        public void setUnitPrice( long unitPrice ) {
+            chunk.prices[ i ] = validUnitPrice( unitPrice );
+        }
+
+        @Override
+        public int getUnitsInStore() {
+            return (int)INTS.getVolatile( chunk.units, i );
+        }
+
+        @Override
+        public void setUnitsInStore( int unitsInStore ) {
+            INTS.setVolatile( chunk.units, i, validUnitsInStore( unitsInStore ) );
+        }
+
+        @Override
+        public TaxClass getTaxClass() {
+            return TAX_CLASSES[ chunk.taxClasses[ i ] ];
+        }
+
+        @Override
+        public void setTaxClass( TaxClass taxClass ) {
+            chunk.taxClasses[ i ] = (byte)validTaxClass( taxClass ).ordinal();
+        }
+
+        @Override
+        public boolean tryReserve( int units ) {
+            if( units <= 0 ) {
+                return units == 0;
+            }
+            final int[] u = chunk.units;
+            int current;
+            do {
+                current = (int)INTS.getVolatile( u, i );
+                if( current < units ) {
+                    return false;
+                }
+            } while( ! INTS.weakCompareAndSet( u, i, current, current - units ) );
+            return true;
+        }
+
+        @Override
+        public void release( int units ) {
+            if( units <= 0 ) {
+                return;
+            }
+            final int[] u = chunk.units;
+            int current;
+            do {
+                current = (int)INTS.getVolatile( u, i );
+            } while( ! INTS.weakCompareAndSet( u, i, current, released( current, units ) ) );
+        }
+    }
+
+
+    /*
+     * Cleaner action that frees the row of a removed view after the view has
+     * been reclaimed. Must not refer to the view.
+     */
+    private static final class Reclaim implements Runnable {
+        private final Chunk chunk;
+        private final int i;
+
+        Reclaim( Chunk chunk, int i ) {
+            this.chunk = chunk;
+            this.i = i;
+        }
+
+        @Override
+        public void run() {
+            chunk.table.reclaim( chunk, i );
+        }
+    }
+
+
+    /*
+     * Dictionary of distinct descriptions with the number of rows that refer to
+     * each. Codes hold the slot of the entry in the lower SLOT_BITS and a
+     * generation above that is incremented when the slot is reused, such that
+     * readers detect that an entry was replaced after they read the code.
+     * Entries are added and dropped under the lock of the dictionary, which
+     * also guards all writes of codes to rows.
+     */
+    private static final class Dictionary {
+        static final int NONE = -1;         // code of rows without description
+
+        private static final int SLOT_BITS = 24;
+
+        private static final int SLOT_MASK = ( 1 << SLOT_BITS ) - 1;
+
+        private static final class Entry {
+            final String description;
+            final int code;
+            int references;         // guarded by the dictionary
+
+            Entry( String description, int code ) {
+                this.description = description;
+                this.code = code;
+            }
+        }
+
+        private final HashMap<String, Entry> codes = new HashMap<String, Entry>();
+
+        private volatile Entry[] entries = new Entry[ 16 ];    // slot -> entry
+
+        private int slots;                  // slots used in entries
+
+        private int[] free = new int[ 16 ]; // codes of dropped entries
+
+        private int freeCount;
+
+        String decode( int[] descrs, int i ) {
+            while( true ) {
+                final int code = (int)INTS.getAcquire( descrs, i );
+                final Entry e = entries[ code & SLOT_MASK ];
+                if( e != null && e.code == code ) {
+                    return e.description;
+                }
+            }
+        }
+
+        synchronized void encode( int[] descrs, int i, String description ) {
+            Entry e = codes.get( description );
+            if( e == null ) {
+                e = add( description );
+            }
+            e.references++;
+            final int old = descrs[ i ];
+            INTS.setRelease( descrs, i, e.code );   // publishes the entry
+            drop( old );
+        }
+
+        synchronized void clear( int[] descrs, int i ) {
+            final int old = descrs[ i ];
+            INTS.setRelease( descrs, i, NONE );
+            drop( old );
+        }
+
+        synchronized int size() {
+            return codes.size();
+        }
+
+        private Entry add( String description ) {
+            final int code;
+            if( freeCount > 0 ) {
+                code = free[ --freeCount ] + ( 1 << SLOT_BITS );   // next generation of the slot
+            } else if( slots < SLOT_MASK ) {        // slot of NONE is never used
+                code = slots++;
+            } else {
+                throw new IllegalStateException( "too many descriptions" );
+            }
+            Entry[] a = entries;
+            if( ( code & SLOT_MASK ) == a.length ) {
+                a = Arrays.copyOf( a, a.length * 2 );
+            }
+            final Entry e = new Entry( description, code );
+            a[ code & SLOT_MASK ] = e;
+            entries = a;
+            codes.put( description, e );
+            return e;
+        }
+
+        private void drop( int code ) {
+            if( code == NONE ) {
+                return;
+            }
+            final Entry e = entries[ code & SLOT_MASK ];
+            if( --e.references == 0 ) {
+                codes.remove( e.description );
+                entries[ code & SLOT_MASK ] = null;
+                if( freeCount == free.length ) {
+                    free = Arrays.copyOf( free, freeCount * 2 );
+                }
+                free[ freeCount++ ] = code;
+            }
+        }
+    }
+
+
+    // Konstruktor in den Komponenten‐Klasse ColumnarInventoryManager:
+    public ColumnarInventoryManager() {
+        this( null );
+    }
+
+    /**
+     * Constructor with journal in which stock received is recorded.
+     *
+     * @param journal order journal, null for none
+     */
+    ColumnarInventoryManager( OrderJournal journal ) {
+        this.index = new ConcurrentHashMap<String, View>();
+        this.inventoryView = Collections.unmodifiableCollection( index.values() );
+        this.journal = journal;
+        this.kernels = AggregateKernels.get();
+        this.chunks = new Chunk[ 0 ];
+        this.rows = 0;
+        this.dictionary = new Dictionary();
+        this.free = new int[ 16 ];
+        this.freeCount = 0;
+    }
+
+    @Override
+    public Article createArticle(String id, String descr, long price, int units) {
+        final View view = allocate( id );
+        view.setDescription( descr );
+        view.setUnitPrice( price );
+        view.setUnitsInStore( units );
+        return view;
+    }
+
+    @Override
+    public boolean containsArticle(String id) {
+        return id != null && index.containsKey( id );
+    }
+
+    @Override
+    public Iterable<Article> getInventory() {
+        return inventoryView;
+    }
+
+    @Override
+    public Optional<Article> get(String id) {
+        return id == null? Optional.empty() : Optional.ofNullable( index.get( id ) );
+    }
+
+    @Override
+    public long count() {
+        return index.mappingCount();
+    }
+
+    @Override
+    public Components.InventoryManager add(Article article) {
+        if( article != null && article.getId() != null ) {
+            index.compute( article.getId(), ( id, present ) -> {
+                if( present != null ) {
+                    return present;
+                }
+                final View view = own( article )? (View)article : copy( article );
+                view.chunk.live[ view.i ] = 1;
+                return view;
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public Components.InventoryManager remove(Article article) {
+        if( article != null && article.getId() != null ) {
+            index.computeIfPresent( article.getId(), ( id, present ) -> {
+                if( present != article ) {
+                    return present;
+                }
+                present.chunk.live[ present.i ] = 0;
+                watch( present );
+                return null;
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public Components.InventoryManager restock(Article article, int units) {
+        if( units <= 0 ) {
+            throw new IllegalArgumentException( "illegal units: " + units );
+        }
+        if( article != null && article.getId() != null && index.get( article.getId() ) == article ) {
+            if( journal != null ) {
+                final long lsn;
+                journal.gate().enter();
+                try {
+                    journal.gate().beforeStockChange( article );
+                    article.release( units );       // atomic add, see View.tryReserve()
+                    lsn = journal.stockReceived( article, units );
+                } finally {
+                    journal.gate().exit();
+                }
+                journal.commit( lsn );
+            } else {
+                article.release( units );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Scan the units and prices columns for the value of all stock.
+     *
+     * @return sum of units in store times unit price over all articles in inventory
+     */
+    @Override
+    public long stockValue() {
+        final int n = rows;             // read before chunks, see allocate()
+        final Chunk[] c = chunks;       // fewer than n rows after a concurrent clear()
+        long value = 0L;
+        for( int chunk=0, base=0; base < n && chunk < c.length; chunk++, base += CHUNK ) {
+            value += kernels.sumOfProducts( c[ chunk ].prices, c[ chunk ].units, c[ chunk ].live, Math.min( CHUNK, n - base ) );
+        }
+        return value;
+    }
+
+    /**
+     * Scan the units column for articles with fewer units in store than threshold.
+     *
+     * @param threshold units in store below which articles are counted
+     * @return number of articles in inventory with less than threshold units in store
+     */
+    @Override
+    public long countBelow(int threshold) {
+        final int n = rows;
+        final Chunk[] c = chunks;
+        long count = 0L;
+        for( int chunk=0, base=0; base < n && chunk < c.length; chunk++, base += CHUNK ) {
+            count += kernels.countBelow( c[ chunk ].units, c[ chunk ].live, Math.min( CHUNK, n - base ), threshold );
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        synchronized( this ) {
+            rows = 0;
+            chunks = new Chunk[ 0 ];        // views created before are detached
+            dictionary = new Dictionary();
+            freeCount = 0;
+        }
+        index.clear();      // not holding the lock, add() allocates rows in index.compute()
+    }
+
+    /**
+     * Return the number of rows of reclaimed views that are free for reuse.
+     *
+     * @return number of free rows
+     */
+    synchronized int freeRows() {
+        return freeCount;
+    }
+
+    /**
+     * Return the number of distinct descriptions in the dictionary.
+     *
+     * @return number of descriptions
+     */
+    int descriptions() {
+        return dictionary.size();
+    }
+
+    /*
+     * Allocate a row, a free row if there is one, and return a view on it. A
+     * new row is published to scans by writing rows after chunks. clear() writes
+     * rows before chunks, scans that read rows before clear() and chunks after
+     * it therefore bound their loop by the chunks they read.
+     */
+    private synchronized View allocate( String id ) {
+        if( freeCount > 0 ) {
+            final int row = free[ --freeCount ];
+            return new View( id, chunks[ row >>> CHUNK_SHIFT ], row & ( CHUNK - 1 ) );
+        }
+        final int row = rows;
+        if( row == Integer.MAX_VALUE ) {
+            throw new IllegalStateException( "inventory full" );
+        }
+        Chunk[] c = chunks;
+        final int chunk = row >>> CHUNK_SHIFT;
+        if( chunk == c.length ) {
+            c = Arrays.copyOf( c, chunk + 1 );
+            c[ chunk ] = new Chunk( this, dictionary, chunk );
+            chunks = c;
+        }
+        final View view = new View( id, c[ chunk ], row & ( CHUNK - 1 ) );
+        rows = row + 1;
+        return view;
+    }
+
+    /*
+     * Register a removed view with the Cleaner, once per row, to reclaim the
+     * row after the view is gone.
+     */
+    private synchronized void watch( View view ) {
+        final Chunk chunk = view.chunk;
+        if( chunk.watched[ view.i ] == 0 && current( chunk ) ) {
+            chunk.watched[ view.i ] = 1;
+            CLEANER.register( view, new Reclaim( chunk, view.i ) );
+        }
+    }
+
+    /*
+     * Reset the row of a reclaimed view and put it on the free list, unless
+     * the chunk was dropped by clear().
+     */
+    private synchronized void reclaim( Chunk chunk, int i ) {
+        chunk.watched[ i ] = 0;
+        if( current( chunk ) && chunk.live[ i ] == 0 ) {
+            chunk.dictionary.clear( chunk.descrs, i );
+            chunk.prices[ i ] = 0L;
+            INTS.setVolatile( chunk.units, i, 0 );
+            chunk.taxClasses[ i ] = 0;
+            if( freeCount == free.length ) {
+                free = Arrays.copyOf( free, freeCount * 2 );
+            }
+            free[ freeCount++ ] = ( chunk.index << CHUNK_SHIFT ) | i;
+        }
+    }
+
+    private boolean current( Chunk chunk ) {
+        final Chunk[] c = chunks;
+        return chunk.table == this && chunk.index < c.length && c[ chunk.index ] == chunk;
+    }
+
+    private boolean own( Article article ) {
+        return article instanceof View && current( ((View)article).chunk );
+    }
+
+    private View copy( Article article ) {
+        final View view = allocate( article.getId() );
+        view.setDescription( article.getDescription() );
+        view.setUnitPrice( article.getUnitPrice() );
+        view.setUnitsInStore( article.getUnitsInStore() );
+        view.setTaxClass( article.getTaxClass() );
+        return view;
+    }
+}
@@ -1,26 +1,147 @@
 package system;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import datamodel.RawDataFactory;
 
 public final class ComponentFactory {
 
     // Attribute der ComponentFactory:
     private static ComponentFactory instance = null;
-    private final InventoryManager inventoryManager;
+    private final Components.InventoryManager inventoryManager;
+    private final CustomerRepository customerRepository;
+    private final OrderRepository orderRepository;
+    private final VatRateTable vatRateTable;
     private final OrderProcessor orderProcessor;
+    private final OrderIntake orderIntake;
     private final OutputProcessor outputProcessor;
     private final DataFactory dataFactory;
+    private final OrderJournal orderJournal;
+    private final Snapshotter snapshotter;
+    private final Aggregates aggregates;
+
+    /*
+     * System property to select how OrderProcessor updates stock, one of
+     * OrderProcessor.StockMode: LOCKING (default), OPTIMISTIC or RING (single
+     * writer thread fed through a ring buffer).
+     */
+    static final String STOCK_MODE_PROPERTY = "se1.stockMode";
+
+    /*
+     * System property to select rounding of included VAT: HALF_UP (default,
+     * commercial rounding) or HALF_EVEN (banker's rounding).
+     */
+    static final String VAT_ROUNDING_PROPERTY = "se1.vatRounding";
+
+    /*
+     * System property to set the maximum number of orders in flight in
+     * OrderIntake (default: OrderIntake.DEFAULT_MAX_IN_FLIGHT).
+     */
+    static final String INTAKE_MAX_IN_FLIGHT_PROPERTY = "se1.intakeMaxInFlight";
+
+    /*
+     * System property to set the directory of the order journal. Without it,
+     * state is not journaled. With it, state is rebuilt from the journal when
+     * the ComponentFactory is created.
+     */
+    static final String JOURNAL_DIR_PROPERTY = "se1.journalDir";
+
+    /*
+     * System property whether accepting an order waits until the order is
+     * durable in the journal: true (default) or false (flushed periodically).
+     */
+    static final String JOURNAL_SYNC_PROPERTY = "se1.journalSync";
+
+    /*
+     * System property to set the interval in seconds at which snapshots are
+     * written next to the order journal (default: 300, 0 for none). State is
+     * restored from the latest snapshot and journal records behind it.
+     */
+    static final String SNAPSHOT_INTERVAL_PROPERTY = "se1.snapshotIntervalSeconds";
+
+    /*
+     * System property to select how articles are stored in inventory: MAP
+     * (default, Article objects in a ConcurrentHashMap, see InventoryManager),
+     * COLUMNAR (primitive arrays per attribute, see ColumnarInventoryManager)
+     * or OFFHEAP (slots outside the Java heap, see OffHeapInventoryManager).
+     */
+    static final String INVENTORY_PROPERTY = "se1.inventory";
+
+    /*
+     * System property whether aggregates use kernels implemented with the Vector
+     * API when module jdk.incubator.vector is present: true (default) or false,
+     * see AggregateKernels. The module is only present when the JVM is started
+     * with --add-modules jdk.incubator.vector.
+     */
+    static final String VECTOR_KERNELS_PROPERTY = "se1.vectorKernels";
+
+    /*
+     * System property to set the number of descriptions of articles and order
+     * items kept for deduplication (default: DescriptionDictionary.DEFAULT_CAPACITY,
+     * 0 for none).
+     */
+    static final String DESCRIPTION_DICTIONARY_PROPERTY = "se1.descriptionDictionarySize";
 
     /**
      * Private constructor.
      */
     private ComponentFactory() {
-        this.inventoryManager = new InventoryManager();
-        this.orderProcessor = new OrderProcessor( inventoryManager );
+        OrderProcessor.StockMode stockMode = OrderProcessor.StockMode.valueOf(
+                System.getProperty( STOCK_MODE_PROPERTY, OrderProcessor.StockMode.LOCKING.name() ).toUpperCase() );
+        RoundingMode vatRounding = RoundingMode.valueOf(
+                System.getProperty( VAT_ROUNDING_PROPERTY, RoundingMode.HALF_UP.name() ).toUpperCase() );
+        String journalDir = System.getProperty( JOURNAL_DIR_PROPERTY );
+        try {
+            this.orderJournal = journalDir == null? null : new OrderJournal( Paths.get( journalDir ),
+                    OrderJournal.DEFAULT_SEGMENT_SIZE,
+                    Boolean.parseBoolean( System.getProperty( JOURNAL_SYNC_PROPERTY, "true" ) ) );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        switch( System.getProperty( INVENTORY_PROPERTY, "MAP" ).toUpperCase() ) {
+        case "COLUMNAR":
+            this.inventoryManager = new ColumnarInventoryManager( orderJournal );
+            break;
+        case "OFFHEAP":
+            this.inventoryManager = new OffHeapInventoryManager( orderJournal );
+            break;
+        default:
+            this.inventoryManager = new InventoryManager( orderJournal );
+        }
+        this.customerRepository = new CustomerRepository();
+        this.orderRepository = new OrderRepository();
+        this.vatRateTable = new VatRateTable();
+        this.orderProcessor = new OrderProcessor( inventoryManager, vatRateTable, stockMode, vatRounding, orderJournal, orderRepository );
+        this.orderIntake = new OrderIntake( orderProcessor,
+                Integer.getInteger( INTAKE_MAX_IN_FLIGHT_PROPERTY, OrderIntake.DEFAULT_MAX_IN_FLIGHT ) );
         this.outputProcessor = new OutputProcessor(inventoryManager, orderProcessor);
         //Object objectRawFactory = null;
         RawDataFactory.RawDataFactoryIntf objectRawFactory = RawDataFactory.getInstance( this );
-        this.dataFactory = new DataFactory( objectRawFactory, inventoryManager, outputProcessor );
+        DescriptionDictionary descriptions = new DescriptionDictionary(
+                Integer.getInteger( DESCRIPTION_DICTIONARY_PROPERTY, DescriptionDictionary.DEFAULT_CAPACITY ) );
+        this.dataFactory = new DataFactory( objectRawFactory, inventoryManager, customerRepository, outputProcessor, orderJournal, descriptions );
+        this.aggregates = new Aggregates( inventoryManager, orderProcessor );
+        if( orderJournal != null ) {
+            try {
+                Path snapshot = Snapshotter.latest( orderJournal.directory() );
+                long from = snapshot == null? 0L :
+                    dataFactory.restore( snapshot, inventoryManager, customerRepository, orderRepository );
+                dataFactory.replay( orderJournal, from, inventoryManager, customerRepository, orderRepository );
+            } catch( IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+            this.snapshotter = new Snapshotter( orderJournal, inventoryManager, customerRepository, orderRepository );
+            long interval = Long.getLong( SNAPSHOT_INTERVAL_PROPERTY, 300L );
+            if( interval > 0L ) {
+                snapshotter.start( interval * 1000L );
+            }
+        } else {
+            this.snapshotter = null;
+        }
     }
 
     /**
@@ -39,14 +160,30 @@ public final class ComponentFactory {
 
     // selbst geschriebene Methoden:
 
-    public InventoryManager getInventoryManager(){
+    public Components.InventoryManager getInventoryManager(){
         return inventoryManager;
     }
 
+    public CustomerRepository getCustomerRepository(){
+        return customerRepository;
+    }
+
+    public OrderRepository getOrderRepository(){
+        return orderRepository;
+    }
+
+    public VatRateTable getVatRateTable(){
+        return vatRateTable;
+    }
+
     public OrderProcessor getOrderProcessor(){
         return orderProcessor;
     }
 
+    public OrderIntake getOrderIntake(){
+        return orderIntake;
+    }
+
     public OutputProcessor getOutputProcessor(){
         return outputProcessor;
     }
@@ -55,4 +192,22 @@ public final class ComponentFactory {
         return dataFactory;
     }
 
+    public Components.Aggregates getAggregates(){
+        return aggregates;
+    }
+
+    /**
+     * Return the order journal, null if state is not journaled.
+     */
+    public OrderJournal getOrderJournal(){
+        return orderJournal;
+    }
+
+    /**
+     * Return the snapshotter of the order journal, null if state is not journaled.
+     */
+    public Snapshotter getSnapshotter(){
+        return snapshotter;
+    }
+
 }
\ No newline at end of file
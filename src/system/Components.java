@@ -1,24 +1,37 @@
 package system;
 
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
 import datamodel.Article;
 import datamodel.Customer;
 import datamodel.Order;
 import datamodel.OrderItem;
+import datamodel.TaxClass;
 
 
 /**
  * Central location defining system component interfaces for:
  * \\
- *  - InventoryManager		; manage article inventory
- *  - OrderProcessor		; process orders
+ * 	- InventoryManager		; manage article inventory
+ * 	- CustomerRepository	; store and index customers by id and name
+ * 	- OrderRepository		; store and index orders by id, date and customer
+ * 	- OrderProcessor		; process orders
+ * 	- OrderIntake			; accept orders from many producers asynchronously
+ * 	- VatRateTable			; resolve VAT tax rates of tax classes by date
  * 	- DataFactory			; create business objects from the datamodel
  * 	- OutputProcessor		; produce system outputs and mapping functions,
  * 							; e.g. to map Customer names between single-string
  * 							; and split-string (first-/lastName) representations
+ * 	- Aggregates			; aggregate queries over inventory and orders
  * 
  * @author svgr64
  *
@@ -63,6 +76,19 @@ public interface Components {
 		 */
 		long count();
 
+		/**
+		 * Create an article that is kept by this inventory: an object with its own
+		 * attributes or a view on storage of the inventory. The article is not in
+		 * inventory before it is added.
+		 * 
+		 * @param id article id
+		 * @param descr article description
+		 * @param price article price
+		 * @param units units of article in store
+		 * @return new article
+		 */
+		Article createArticle( String id, String descr, long price, int units );
+
 		/**
 		 * Add Article to inventory, if article.id is not already present.
 		 * 
@@ -79,6 +105,33 @@ public interface Components {
 		 */
 		InventoryManager remove( Article article );
 
+		/**
+		 * Add units received to the stock of an article in inventory. Unlike
+		 * Article.setUnitsInStore(), units are added atomically and the change
+		 * is recorded in the order journal (if the system has one).
+		 * 
+		 * @param article article in inventory
+		 * @param units units received, must be positive
+		 * @return self-reference to allow method chaining
+		 */
+		InventoryManager restock( Article article, int units );
+
+		/**
+		 * Return the value of all stock in inventory.
+		 * 
+		 * @return sum of unitsInStore * unitPrice over all articles in inventory
+		 */
+		long stockValue();
+
+		/**
+		 * Return the number of articles in inventory with fewer units in store
+		 * than threshold, e.g. to raise low-stock alerts.
+		 * 
+		 * @param threshold units in store below which articles are counted
+		 * @return number of articles with unitsInStore < threshold
+		 */
+		long countBelow( int threshold );
+
 		/**
 		 * Clear all articles from inventory.
 		 * 
@@ -89,6 +142,152 @@ public interface Components {
 	}
 
 
+	/**
+	 * Interface of CustomerRepository that stores customers and looks them up
+	 * by id and by name prefix.
+	 *
+	 */
+	interface CustomerRepository {
+
+		/**
+		 * Indicate whether repository contains customer with given id.
+		 * 
+		 * @param id customer id
+		 * @return true, if customer with id is in repository
+		 */
+		boolean contains( String id );
+
+		/**
+		 * Return customer from repository by its id. Returns Optional.
+		 * 
+		 * @param id customer id
+		 * @return customer as Optional
+		 */
+		Optional<Customer> get( String id );
+
+		/**
+		 * Return customers whose last name starts with prefix (ignoring case)
+		 * in order of last names.
+		 * 
+		 * @param prefix prefix of last name, "" for all customers
+		 * @param limit maximum number of customers returned
+		 * @return customers with matching last name
+		 */
+		List<Customer> findByLastName( String prefix, int limit );
+
+		/**
+		 * Return customers whose first name starts with prefix (ignoring case)
+		 * in order of first names.
+		 * 
+		 * @param prefix prefix of first name, "" for all customers
+		 * @param limit maximum number of customers returned
+		 * @return customers with matching first name
+		 */
+		List<Customer> findByFirstName( String prefix, int limit );
+
+		/**
+		 * Return the number of customers in repository.
+		 * 
+		 * @return number of customers
+		 */
+		long count();
+
+		/**
+		 * Add Customer to repository, if customer.id is not already present.
+		 * 
+		 * @param customer customer added, if customer.id is not already present
+		 * @return self-reference to allow method chaining
+		 */
+		CustomerRepository add( Customer customer );
+
+		/**
+		 * Remove Customer from repository.
+		 * 
+		 * @param customer customer to remove
+		 * @return self-reference to allow method chaining
+		 */
+		CustomerRepository remove( Customer customer );
+
+		/**
+		 * Clear all customers from repository.
+		 */
+		void clear();
+
+	}
+
+
+	/**
+	 * Interface of OrderRepository that stores orders and looks them up by id,
+	 * by date range and by customer. Orders are added when they are accepted by
+	 * the OrderProcessor, rejected orders are not stored.
+	 *
+	 */
+	interface OrderRepository {
+
+		/**
+		 * Indicate whether repository contains order with given id.
+		 * 
+		 * @param id order id
+		 * @return true, if order with id is in repository
+		 */
+		boolean contains( long id );
+
+		/**
+		 * Return order from repository by its id. Returns Optional.
+		 * 
+		 * @param id order id
+		 * @return order as Optional
+		 */
+		Optional<Order> get( long id );
+
+		/**
+		 * Return orders with dates in range [from, to) in order of their dates.
+		 * 
+		 * @param from start of range (inclusive), null for unbounded
+		 * @param to end of range (exclusive), null for unbounded
+		 * @return orders in range
+		 */
+		List<Order> findByDate( Date from, Date to );
+
+		/**
+		 * Return orders of a customer in order of their dates.
+		 * 
+		 * @param customer customer of orders
+		 * @return orders of customer
+		 */
+		List<Order> findByCustomer( Customer customer );
+
+		/**
+		 * Return the number of orders in repository.
+		 * 
+		 * @return number of orders
+		 */
+		long count();
+
+		/**
+		 * Add Order to repository, if order.id is not already present.
+		 * 
+		 * @param order order added, if order.id is not already present
+		 * @return self-reference to allow method chaining
+		 */
+		OrderRepository add( Order order );
+
+		/**
+		 * Remove Order from repository.
+		 * 
+		 * @param order order to remove
+		 * @return self-reference to allow method chaining
+		 */
+		OrderRepository remove( Order order );
+
+		/**
+		 * Clear all orders from repository.
+		 */
+		void clear();
+
+	}
+
+
 	/**
 	 * Interface of the central order processing component.
 	 *
@@ -123,6 +322,26 @@ public interface Components {
 			Consumer<OrderItem> rejectedOrderItemCode	// invoked for each rejected order item
 		);
 
+		/**
+		 * Batch variation of accept( order, ... ) for a collection of orders.
+		 * Orders are validated in iteration order against the inventory as
+		 * reduced by orders accepted earlier in the same batch. Units ordered
+		 * are grouped per article over the batch and inventory is updated once
+		 * per article. Each order is accepted or rejected as a whole, as with
+		 * accept( order ).
+		 * 
+		 * @param orders orders to accept
+		 * @param acceptCode Functional Interface invoked for each accepted order
+		 * @param rejectCode Functional Interface invoked for each rejected order
+		 * @param rejectedOrderItemCode invoked for each rejected order item
+		 * @return number of accepted orders
+		 */
+		int acceptAll( Collection<Order> orders,
+			Consumer<Order> acceptCode,
+			Consumer<Order> rejectCode,
+			Consumer<OrderItem> rejectedOrderItemCode
+		);
+
 		/**
 		 * Calculate order value as sum of value of all order items.
 		 * 
@@ -151,6 +370,112 @@ public interface Components {
 		 */
 		long vat( long grossValue, int rateIndex );
 
+		/**
+		 * Calculate included VAT at the rate of a tax class that is effective
+		 * at a given date, e.g. the date of an order.
+		 * 
+		 * @param grossValue value of which included VAT is calculated
+		 * @param taxClass tax class of the article of which grossValue is derived
+		 * @param date date at which tax rate is effective
+		 * @return included VAT
+		 */
+		long vat( long grossValue, TaxClass taxClass, Date date );
+
+		/**
+		 * Calculate VAT included in the value of an order as sum of VAT included
+		 * in the order's values per tax class at rates effective at the order date.
+		 * 
+		 * @param order order of which included VAT is calculated
+		 * @return included VAT
+		 */
+		long vat( Order order );
+
+	}
+
+
+	/**
+	 * Interface of OrderIntake that accepts orders submitted concurrently by many
+	 * producers asynchronously through the OrderProcessor. The number of orders
+	 * in flight is limited, producers block when the limit is reached.
+	 *
+	 */
+	interface OrderIntake extends AutoCloseable {
+
+		/**
+		 * Submit order for acceptance, see OrderProcessor.accept( order ). Blocks
+		 * while the maximum number of orders is in flight.
+		 * 
+		 * @param order order to accept
+		 * @return future completed with true if order is accepted
+		 * @throws InterruptedException when interrupted while waiting
+		 * @throws java.util.concurrent.RejectedExecutionException when intake is closed
+		 */
+		CompletableFuture<Boolean> submit( Order order ) throws InterruptedException;
+
+		/**
+		 * Submit order for acceptance with code executed when the order is
+		 * accepted or rejected, see OrderProcessor.accept( order, ... ). Code
+		 * is executed by the thread that accepts the order.
+		 * 
+		 * @param order order to accept
+		 * @param acceptCode Functional Interface invoked when order is accepted
+		 * @param rejectCode Functional Interface invoked when order is rejected
+		 * @param rejectedOrderItemCode invoked for each rejected order item
+		 * @return future completed with true if order is accepted
+		 * @throws InterruptedException when interrupted while waiting
+		 * @throws java.util.concurrent.RejectedExecutionException when intake is closed
+		 */
+		CompletableFuture<Boolean> submit( Order order,
+			Consumer<Order> acceptCode,
+			Consumer<Order> rejectCode,
+			Consumer<OrderItem> rejectedOrderItemCode
+		) throws InterruptedException;
+
+		/**
+		 * Return the number of orders submitted, but not yet accepted or rejected.
+		 * 
+		 * @return number of orders in flight
+		 */
+		int inFlight();
+
+		/**
+		 * Stop taking orders and wait until orders in flight are processed.
+		 */
+		@Override
+		void close();
+
+	}
+
+
+	/**
+	 * Interface of the VatRateTable that resolves VAT tax rates of article tax
+	 * classes at a given date. Rates are expressed in basis points (1/100 percent),
+	 * e.g. 1900 for 19%.
+	 *
+	 */
+	interface VatRateTable {
+
+		/**
+		 * Return tax rate of a tax class that is effective at a given date.
+		 * 
+		 * @param taxClass tax class
+		 * @param date date at which rate is effective, null for now
+		 * @return tax rate in basis points
+		 */
+		int rate( TaxClass taxClass, Date date );
+
+		/**
+		 * Define tax rate of a tax class that is effective from a given date until
+		 * the next defined rate change. A rate that is already defined for the same
+		 * date is replaced.
+		 * 
+		 * @param taxClass tax class
+		 * @param effectiveFrom date from which rate is effective
+		 * @param rate tax rate in basis points
+		 * @return self-reference to allow method chaining
+		 */
+		VatRateTable define( TaxClass taxClass, Date effectiveFrom, int rate );
+
 	}
 
 
@@ -199,6 +524,14 @@ public interface Components {
 		 */
 		OrderItem createOrderItem( String descr, Article article, int units );
 
+		/**
+		 * Return ids pre-allocated for the calling thread to the shared id space.
+		 * Threads that create objects concurrently should call releaseIds() when
+		 * they are done, otherwise their unused ids are returned only after the
+		 * thread has ended and is garbage collected.
+		 */
+		void releaseIds();
+
 	}
 
 
@@ -231,6 +564,46 @@ public interface Components {
 		void printOrders( List<Order> orders, boolean printVAT );
 
 
+		/**
+		 * Stream orders report in the format of printOrders( orders, printVAT )
+		 * line-by-line to an Appendable such as a Writer. Orders are iterated
+		 * once and memory use does not depend on the number of orders.
+		 * 
+		 * @param orders orders to print
+		 * @param printVAT print included VAT at the end of each line item
+		 * @param out output to which report lines are written
+		 * @throws IOException when writing to out fails
+		 */
+		void printOrders( Iterable<Order> orders, boolean printVAT, Appendable out ) throws IOException;
+
+
+		/**
+		 * Stream orders report in the format of printOrders( orders, printVAT )
+		 * line-by-line UTF-8 encoded to a WritableByteChannel such as a FileChannel.
+		 * 
+		 * @param orders orders to print
+		 * @param printVAT print included VAT at the end of each line item
+		 * @param out channel to which report lines are written
+		 * @throws IOException when writing to out fails
+		 */
+		void printOrders( Iterable<Order> orders, boolean printVAT, WritableByteChannel out ) throws IOException;
+
+
+		/**
+		 * Write orders report in the format of printOrders( orders, printVAT )
+		 * to an Appendable. Chunks of orders are valuated and formatted in
+		 * parallel in a fork/join pool, output is written in the order of the
+		 * list with totals summed up exactly.
+		 * 
+		 * @param orders orders to print
+		 * @param printVAT print included VAT at the end of each line item
+		 * @param out output to which report lines are written
+		 * @param pool fork/join pool in which chunks of orders are formatted
+		 * @throws IOException when writing to out fails
+		 */
+		void printOrders( List<Order> orders, boolean printVAT, Appendable out, ForkJoinPool pool ) throws IOException;
+
+
 		/**
 		 * Print available inventory.
 		 * 
@@ -303,4 +676,47 @@ public interface Components {
 
 	}
 
+
+	/**
+	 * Interface of Aggregates that answers aggregate queries over inventory and
+	 * orders, e.g. for a dashboard that is refreshed periodically.
+	 *
+	 */
+	interface Aggregates {
+
+		/**
+		 * Return the value of all stock in inventory.
+		 * 
+		 * @return sum of unitsInStore * unitPrice over all articles in inventory
+		 */
+		long stockValue();
+
+		/**
+		 * Return the number of articles in inventory below a reorder threshold.
+		 * 
+		 * @param threshold units in store below which articles are counted
+		 * @return number of articles with unitsInStore < threshold
+		 */
+		long countBelow( int threshold );
+
+		/**
+		 * Return the value of order items at the current unit prices of their
+		 * articles. Unlike Order.getValue(), which is booked at the unit prices at
+		 * the time items were added, this reflects later price changes.
+		 * 
+		 * @param orders orders of which items are aggregated
+		 * @return sum of unitsOrdered * unitPrice over all items
+		 */
+		long itemValue( Iterable<Order> orders );
+
+		/**
+		 * Return VAT included in orders per VAT rate.
+		 * 
+		 * @param orders orders of which VAT is aggregated
+		 * @return included VAT by VAT rate in basis points (e.g. 1900 for 19%)
+		 */
+		SortedMap<Integer, Long> vatByRate( Iterable<Order> orders );
+
+	}
+
 }
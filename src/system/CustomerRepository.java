@@ -0,0 +1,139 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import datamodel.Customer;
+
+
+/**
+ * Implementation class of the CustomerRepository interface. Customers are kept
+ * in a ConcurrentHashMap indexed by customer id for lookups in O(1).
+ *
+ * Names are indexed in two ConcurrentSkipListMaps (one for last names, one for
+ * first names) sorted by key: the lower-case name, a '\0' separator and the
+ * customer id, which makes keys unique for equal names. A prefix search is a
+ * range scan over keys in [prefix, prefix + MAX_CHAR) in O(log n + results).
+ * Skip lists allow concurrent inserts while searches are in progress, searches
+ * never block and see a weakly consistent state.
+ *
+ * Names are indexed as they are when a customer is added. Keys are remembered
+ * per customer such that remove() finds them after names have changed.
+ *
+ */
+final class CustomerRepository implements Components.CustomerRepository {
+
+    private static final char SEPARATOR = '\0';
+
+    private static final char MAX_CHAR = Character.MAX_VALUE;
+
+    // Attribute:
+    private final ConcurrentHashMap<String, Entry> customers = new ConcurrentHashMap<String, Entry>();
+
+    private final ConcurrentSkipListMap<String, Customer> byLastName = new ConcurrentSkipListMap<String, Customer>();
+
+    private final ConcurrentSkipListMap<String, Customer> byFirstName = new ConcurrentSkipListMap<String, Customer>();
+
+
+    /*
+     * Customer with its keys in the name indexes.
+     */
+    private static final class Entry {
+        final Customer customer;
+        final String lastNameKey;
+        final String firstNameKey;
+
+        Entry( Customer customer ) {
+            this.customer = customer;
+            this.lastNameKey = key( customer.getLastName(), customer.getId() );
+            this.firstNameKey = key( customer.getFirstName(), customer.getId() );
+        }
+    }
+
+
+    // Konstruktor in den Komponenten‐Klasse CustomerRepository:
+    public CustomerRepository() { }
+
+    @Override
+    public boolean contains( String id ) {
+        return id != null && customers.containsKey( id );
+    }
+
+    @Override
+    public Optional<Customer> get( String id ) {
+        final Entry e = id == null? null : customers.get( id );
+        return e == null? Optional.empty() : Optional.of( e.customer );
+    }
+
+    @Override
+    public List<Customer> findByLastName( String prefix, int limit ) {
+        return findByPrefix( byLastName, prefix, limit );
+    }
+
+    @Override
+    public List<Customer> findByFirstName( String prefix, int limit ) {
+        return findByPrefix( byFirstName, prefix, limit );
+    }
+
+    @Override
+    public long count() {
+        return customers.mappingCount();
+    }
+
+    @Override
+    public Components.CustomerRepository add( Customer customer ) {
+        if( customer != null && customer.getId() != null ) {
+            final Entry e = new Entry( customer );
+            if( customers.putIfAbsent( customer.getId(), e ) == null ) {
+                byLastName.put( e.lastNameKey, customer );
+                byFirstName.put( e.firstNameKey, customer );
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Components.CustomerRepository remove( Customer customer ) {
+        if( customer != null && customer.getId() != null ) {
+            final Entry e = customers.get( customer.getId() );
+            if( e != null && e.customer == customer && customers.remove( customer.getId(), e ) ) {
+                byLastName.remove( e.lastNameKey, customer );
+                byFirstName.remove( e.firstNameKey, customer );
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void clear() {
+        customers.clear();
+        byLastName.clear();
+        byFirstName.clear();
+    }
+
+    private static List<Customer> findByPrefix( ConcurrentSkipListMap<String, Customer> index, String prefix, int limit ) {
+        final List<Customer> result = new ArrayList<Customer>();
+        if( prefix != null && limit > 0 ) {
+            final String from = normalize( prefix );
+            for( Customer c : index.subMap( from, true, from + MAX_CHAR, false ).values() ) {
+                result.add( c );
+                if( result.size() >= limit ) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String key( String name, String id ) {
+        return normalize( name ) + SEPARATOR + id;
+    }
+
+    private static String normalize( String name ) {
+        return name == null? "" : name.trim().toLowerCase( Locale.ROOT );
+    }
+}
@@ -1,12 +1,17 @@
 package system;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import datamodel.Article;
 import datamodel.Customer;
 import datamodel.Order;
 import datamodel.OrderItem;
 import datamodel.RawDataFactory;
+import datamodel.TaxClass;
 
 
 /**
@@ -26,10 +31,16 @@ final class DataFactory implements Components.DataFactory {
 
     private final Components.InventoryManager inventoryMgr;
 
+    private final Components.CustomerRepository customerRepository;
+
     private final Components.OutputProcessor outputProcessor;
 
+    private final OrderJournal journal;         // null without journal
+
+    private final DescriptionDictionary descriptions;
+
     /*
-     * Inner dependencies.
+     * Inner dependencies, generators of unique ids, see IDGenerator.
      */
     private final IDGenerator customerIdGenerator;
 
@@ -43,18 +54,29 @@ final class DataFactory implements Components.DataFactory {
      *
      * @param objectRawFactory injected dependency to the objectRawFactory
      * @param inventoryMgr injected dependency to the inventoryMgr
-     * @param customerNameMapper injected dependency to the customerNameMapper
+     * @param customerRepository injected dependency to the customerRepository
+     * @param outputProcessor injected dependency to the outputProcessor
+     * @param journal order journal in which created objects are recorded, null for none
+     * @param descriptions dictionary that deduplicates descriptions of articles and order items
      */
     DataFactory( RawDataFactory.RawDataFactoryIntf objectRawFactory,
                  Components.InventoryManager inventoryMgr,
-                 Components.OutputProcessor outputProcessor
+                 Components.CustomerRepository customerRepository,
+                 Components.OutputProcessor outputProcessor,
+                 OrderJournal journal,
+                 DescriptionDictionary descriptions
     ) {
         this.objectRawFactory = objectRawFactory;
         this.inventoryMgr = inventoryMgr;
+        this.customerRepository = customerRepository;
         this.outputProcessor = outputProcessor;
-        this.customerIdGenerator = new IDGenerator( "C", IDTYPE.NUM, 5 );
-        this.articleIdGenerator = new IDGenerator( "SKU-", IDTYPE.NUM, 6 );
-        this.orderIdGenerator = new IDGenerator( IDTYPE.NUM, 10 );
+        this.journal = journal;
+        this.descriptions = descriptions;
+        // journaled ids are replayed and reserved in the permutation of the journal's key
+        final long key = journal != null? journal.idKey() : IDGenerator.newKey();
+        this.customerIdGenerator = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 5, false, 0, key );
+        this.articleIdGenerator = new IDGenerator( "SKU-", IDGenerator.IDTYPE.NUM, 6, false, 0, key );
+        this.orderIdGenerator = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true, 0, key );
     }
 
 
@@ -70,12 +92,27 @@ final class DataFactory implements Components.DataFactory {
         String id = customerIdGenerator.nextId();
         Customer customer = objectRawFactory.createCustomer( id, name, contact );
         outputProcessor.splitName( customer, name );
+        if( journal != null ) {
+            final long lsn;
+            journal.gate().enter();     // added and recorded on the same side of a snapshot cut
+            try {
+                customerRepository.add( customer );
+                lsn = journal.customerCreated( customer, name );
+            } finally {
+                journal.gate().exit();
+            }
+            journal.commit( lsn );
+        } else {
+            customerRepository.add( customer );     // indexed by split names
+        }
         return customer;
     }
 
 
     /**
-     * Create new Article object.
+     * Create new Article object, which the inventory creates in its own form, see
+     * Components.InventoryManager.createArticle(). The description is deduplicated,
+     * see DescriptionDictionary.
      *
      * @param descr article description
      * @param price article price
@@ -84,14 +121,26 @@ final class DataFactory implements Components.DataFactory {
      */
     @Override
     public Article createArticle( String descr, long price, int units ) {
-        String id = "";
-        for( id = articleIdGenerator.nextId(); inventoryMgr.containsArticle( id ); ) { }
+        String id = articleIdGenerator.nextId();     // unique, no check against inventory needed
 
         price = price < 0? 0 : price;
         units = units < 0? 0 : units;
-        Article article = objectRawFactory.createArticle( id, descr, price, units );
-
-        inventoryMgr.add( article );
+        Article article = inventoryMgr.createArticle( id, descriptions.intern( descr ), price, units );
+
+        if( journal != null ) {
+            final long lsn;
+            journal.gate().enter();     // added and recorded on the same side of a snapshot cut
+            try {
+                journal.gate().articleCreated( article );
+                lsn = journal.articleCreated( article );      // units before orders can take any
+                inventoryMgr.add( article );
+            } finally {
+                journal.gate().exit();
+            }
+            journal.commit( lsn );
+        } else {
+            inventoryMgr.add( article );
+        }
 
         return article;
     }
@@ -116,7 +165,8 @@ final class DataFactory implements Components.DataFactory {
 
 
     /**
-     * Create new OrderItem object.
+     * Create new OrderItem object. The description is deduplicated, such that
+     * equal descriptions of many items share one String instance.
      *
      * @param descr description of ordered item, usually article description
      * @param article article that is referred to in orderItem
@@ -127,103 +177,182 @@ final class DataFactory implements Components.DataFactory {
     public OrderItem createOrderItem( String descr, Article article, int units ) {
         OrderItem orderItem = null;
         if( article != null && units > 0 ) {
-            orderItem = objectRawFactory.createOrderItem( descr, article, units );
+            orderItem = objectRawFactory.createOrderItem( descriptions.intern( descr ), article, units );
         }
         return orderItem;
     }
 
 
     /**
-     * Private ID-Generator using random numbers and supporting a variety of formats
-     * such as ALPHANUM, AIRLINE, NUM, HEX, BIN.
-     *
-     * Examples are:
-     *  - "C.ED84DX" using prefix "C." followed by a random number of type AIRLINE-code
-     *  - "3450629369" as simple 10-digit decimal number
-     *  - "A8C86ED4D8" as 10-digit hex number.
-     *
-     * @author sgra64
+     * Rebuild state from a snapshot written by the Snapshotter: articles, customers
+     * and orders are re-created with their ids and added to the given components.
+     * Ids are reserved in the id generators, see replay().
      *
+     * @param snapshot snapshot file
+     * @param inventory inventory to which articles are added
+     * @param customers repository to which customers are added
+     * @param orders repository to which orders are added
+     * @return LSN of the snapshot from which the journal is replayed
+     * @throws IOException when the snapshot cannot be read
      */
-
-    enum IDTYPE { ALPHANUM, AIRLINE, NUM, HEX, BIN };
-
-    private class IDGenerator {
-        private final String prefix;
-        private final int len;
-        private final String alphabet;
-
-        private final String[] alphabets = new String[] {
-                "0123456789" + "ABCDEGFHIJKLMNOPQRSTUVWXYZ" + "abcdefghijklmnopqrstuwvxyz",
-                "0123456789" + "ABCDEGFHIJKLMNOPQRSTUVWXYZ",
-                "0123456789",
-                "0123456789ABCDEF",
-                "01"
-        };
-
-
-        /**
-         * Public constructor.
-         * @param _prefix prefix followed by random number.
-         * @param type one of the IDTYPE's.
-         * @param len total number of digits.
-         */
-        public IDGenerator( final IDTYPE type, final int len ) {
-            this( "", type, len );
-        }
-
-        public IDGenerator( final String prefix, final IDTYPE type, final int len ) {
-            this.prefix = prefix;
-            this.len = len;
-            this.alphabet = alphabets[ type.ordinal() ];
-        }
-
-        /**
-         * Generate next id.
-         * @return next id according to the format specified in the constructor.
-         */
-        public String nextId() {
-            final int alphaLen = alphabet.length();
-            final int chunkSize = 10;	// generate + append chunks of up to 10 digits (long limit)
-            StringBuffer sb = new StringBuffer();
-            if( prefix != null ) {
-                sb.append( prefix );
+    long restore( Path snapshot,
+                  Components.InventoryManager inventory,
+                  Components.CustomerRepository customers,
+                  Components.OrderRepository orders
+    ) throws IOException {
+        final TaxClass[] taxClasses = TaxClass.values();
+        return Snapshotter.load( snapshot, new Snapshotter.Loader() {
+
+            @Override
+            public void articles( String[] ids, String[] descrs, long[] prices, int[] units, byte[] taxClass ) {
+                for( int i=0; i < ids.length; i++ ) {
+                    articleIdGenerator.reserve( ids[ i ] );
+                    Article article = inventory.createArticle( ids[ i ], descriptions.intern( descrs[ i ] ), prices[ i ], units[ i ] );
+                    article.setTaxClass( taxClasses[ taxClass[ i ] ] );
+                    inventory.add( article );
+                }
             }
-            for( int l1 = len; l1 > 0; l1 -= chunkSize ) {
-                int l2 = Math.min( chunkSize, l1 );
-                long rnd = (long)( Math.random() * Math.pow( alphaLen, l2 ) );
-                for( int i=0; i++ < l2; rnd /= alphaLen ) {
-                    int k1 = (int)( rnd % alphaLen );
-                    sb.append( alphabet.charAt( (int)k1 ) );
+
+            @Override
+            public void customers( String[] ids, String[] firstNames, String[] lastNames, String[] contacts ) {
+                for( int i=0; i < ids.length; i++ ) {
+                    customerIdGenerator.reserve( ids[ i ] );
+                    Customer customer = objectRawFactory.createCustomer( ids[ i ], lastNames[ i ], contacts[ i ] );
+                    customer.setFirstName( firstNames[ i ] );
+                    customers.add( customer );
                 }
             }
-            for( int i=sb.length(); i < len; i++ ) {
-                sb.insert( 0, "0" );
+
+            @Override
+            public void orders( long[] ids, long[] dates, String[] customerIds, int[] itemCounts,
+                    String[] itemDescrs, String[] itemArticleIds, int[] itemUnits ) {
+                int item = 0;
+                for( int i=0; i < ids.length; i++ ) {
+                    orderIdGenerator.reserve( ids[ i ] );
+                    Customer customer = customers.get( customerIds[ i ] ).orElse( null );
+                    Order order = customer == null? null : objectRawFactory.createOrder( ids[ i ], new Date( dates[ i ] ), customer );
+                    for( int end = item + itemCounts[ i ]; item < end; item++ ) {
+                        Article article = order == null? null : inventory.get( itemArticleIds[ item ] ).orElse( null );
+                        if( article != null && itemUnits[ item ] > 0 ) {
+                            order.addItem( objectRawFactory.createOrderItem( descriptions.intern( itemDescrs[ item ] ), article, itemUnits[ item ] ) );
+                        }
+                    }
+                    if( order != null ) {
+                        orders.add( order );
+                    }
+                }
             }
-            return sb.toString();
-        }
+        });
+    }
 
-        public long nextIdAsLong() {
-            long n = 0L;
-            if( len >= 1 ) {
-                double lower = Math.pow( 10, len - 1 );
-                double upper = Math.pow( 10, len );
-                double d1 = 0.0;
-                for( int i=0; d1 < lower || d1 >= upper; i++ ) {
 
-                    d1 = Math.random() * upper;
+    /**
+     * Rebuild state from a journal: articles, customers and accepted orders are
+     * re-created with their recorded ids and added to the given components. Ids
+     * are reserved in the id generators such that they are not handed out again,
+     * replay must therefore precede the creation of new objects. Stock is set to
+     * units at creation plus units received minus units of accepted orders.
+     * Orders of unknown customers and items of unknown articles are skipped.
+     *
+     * @param journal journal to replay
+     * @param inventory inventory to which articles are added
+     * @param customers repository to which customers are added
+     * @param orders repository to which accepted orders are added
+     * @return number of records replayed
+     * @throws IOException when the journal cannot be read
+     */
+    long replay( OrderJournal journal,
+                 Components.InventoryManager inventory,
+                 Components.CustomerRepository customers,
+                 Components.OrderRepository orders
+    ) throws IOException {
+        return replay( journal, 0L, inventory, customers, orders );
+    }
 
-                    if( d1 < lower || d1 >= upper ) {
-                        d1 += lower;
-                    }
 
-                    if( i > 0 ) {
-                        System.out.print( " * " );
+    /**
+     * Replay journal records behind a snapshot restored before, see restore().
+     * Objects that were already restored are skipped and stock continues from
+     * restored units.
+     *
+     * @param journal journal to replay
+     * @param from LSN from which to replay, e.g. returned by restore()
+     * @param inventory inventory to which articles are added
+     * @param customers repository to which customers are added
+     * @param orders repository to which accepted orders are added
+     * @return number of records replayed
+     * @throws IOException when the journal cannot be read
+     */
+    long replay( OrderJournal journal, long from,
+                 Components.InventoryManager inventory,
+                 Components.CustomerRepository customers,
+                 Components.OrderRepository orders
+    ) throws IOException {
+        // stock per article: units at creation and changes thereafter, applied at the
+        // end such that the order of records of concurrent changes does not matter
+        final Map<Article, long[]> stock = new IdentityHashMap<Article, long[]>();
+        final long records = journal.replay( from, new OrderJournal.Replayer() {
+
+            @Override
+            public void articleCreated( String id, String descr, long price, int units, TaxClass taxClass ) {
+                articleIdGenerator.reserve( id );
+                if( inventory.containsArticle( id ) ) {
+                    return;
+                }
+                Article article = inventory.createArticle( id, descriptions.intern( descr ), price, units );
+                article.setTaxClass( taxClass );
+                inventory.add( article );
+                stock.put( article, new long[] { units } );
+            }
+
+            @Override
+            public void customerCreated( String id, String name, String contact ) {
+                customerIdGenerator.reserve( id );
+                if( customers.contains( id ) ) {
+                    return;
+                }
+                Customer customer = objectRawFactory.createCustomer( id, name, contact );
+                outputProcessor.splitName( customer, name );
+                customers.add( customer );
+            }
+
+            @Override
+            public void orderAccepted( long id, long date, String customerId, String[] descrs, String[] articleIds, int[] units ) {
+                orderIdGenerator.reserve( id );
+                Customer customer = customers.get( customerId ).orElse( null );
+                if( customer != null && ! orders.contains( id ) ) {
+                    Order order = objectRawFactory.createOrder( id, new Date( date ), customer );
+                    for( int i=0; i < articleIds.length; i++ ) {
+                        Article article = inventory.get( articleIds[ i ] ).orElse( null );
+                        if( article != null ) {
+                            order.addItem( objectRawFactory.createOrderItem( descriptions.intern( descrs[ i ] ), article, units[ i ] ) );
+                            stock.computeIfAbsent( article, a -> new long[] { a.getUnitsInStore() } )[ 0 ] -= units[ i ];
+                        }
                     }
+                    orders.add( order );
                 }
-                n = (long)d1;
             }
-            return n;
+
+            @Override
+            public void stockReceived( String articleId, int units ) {
+                inventory.get( articleId ).ifPresent( article ->
+                    stock.computeIfAbsent( article, a -> new long[] { a.getUnitsInStore() } )[ 0 ] += units );
+            }
+        });
+        for( Map.Entry<Article, long[]> e : stock.entrySet() ) {
+            e.getKey().setUnitsInStore( (int)Math.max( 0L, Math.min( e.getValue()[ 0 ], Integer.MAX_VALUE - 1 ) ) );
         }
+        return records;
+    }
+
+
+    /**
+     * Return ids pre-allocated for the calling thread by the id generators.
+     */
+    @Override
+    public void releaseIds() {
+        customerIdGenerator.release();
+        articleIdGenerator.release();
+        orderIdGenerator.release();
     }
 }
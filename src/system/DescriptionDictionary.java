@@ -0,0 +1,82 @@
+package system;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Bounded, concurrent dictionary that deduplicates descriptions of articles and
+ * order items into shared String instances. Descriptions of order items are
+ * mostly built anew from article descriptions (e.g. "Kanne aus Porzellan"),
+ * such that many equal strings would otherwise be retained with the orders.
+ *
+ * The dictionary is a fixed-size, two-way set-associative hash table of string
+ * references: a description is looked up in two adjacent entries and, if it is
+ * not found, stored in an empty entry or in place of one of both. Lookups and
+ * stores are single reads and writes of array elements without locks. Memory is
+ * bounded by the capacity and by MAX_LENGTH, longer descriptions are not kept.
+ * Entries may be replaced by other descriptions, which only makes later equal
+ * descriptions new instances again, never changes a description.
+ *
+ */
+final class DescriptionDictionary {
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    static final int MAX_LENGTH = 256;         // chars of descriptions kept
+
+    // Attribute:
+    private final AtomicReferenceArray<String> entries;    // null for capacity 0
+
+    private final int mask;
+
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of descriptions kept, rounded up to a power of two,
+     * 0 to not deduplicate
+     */
+    DescriptionDictionary( int capacity ) {
+        if( capacity < 0 ) {
+            throw new IllegalArgumentException( "illegal capacity: " + capacity );
+        }
+        final int size = capacity == 0? 0 : Math.max( 2, Integer.highestOneBit( Math.min( capacity, 1 << 30 ) - 1 ) << 1 );
+        this.entries = size == 0? null : new AtomicReferenceArray<String>( size );
+        this.mask = size - 1;
+    }
+
+    /**
+     * Return the shared instance of a description equal to descr, descr itself
+     * if there is none, which then becomes the shared instance.
+     *
+     * @param descr description, may be null
+     * @return shared instance equal to descr
+     */
+    String intern( String descr ) {
+        if( descr == null || entries == null || descr.length() > MAX_LENGTH ) {
+            return descr;
+        }
+        final int h = descr.hashCode();
+        final int i = ( h ^ ( h >>> 16 ) ) & mask & ~1;     // first of two adjacent entries
+        final String first = entries.getAcquire( i );
+        if( first != null && first.hashCode() == h && first.equals( descr ) ) {
+            return first;
+        }
+        final String second = entries.getAcquire( i + 1 );
+        if( second != null && second.hashCode() == h && second.equals( descr ) ) {
+            return second;
+        }
+        final int victim = first == null? i : second == null? i + 1 : i + ( ( h >>> 31 ) ^ ( h & 1 ) );
+        entries.setRelease( victim, descr );
+        return descr;
+    }
+
+    /**
+     * Return the number of descriptions that can be kept.
+     *
+     * @return capacity
+     */
+    int capacity() {
+        return entries == null? 0 : entries.length();
+    }
+}
@@ -0,0 +1,460 @@
+package system;
+
+import java.lang.ref.Cleaner;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * ID-Generator producing unique ids of a fixed format such as ALPHANUM, AIRLINE,
+ * NUM, HEX, BIN with an optional prefix.
+ *
+ * Examples are:
+ *  - "C.ED84DX" using prefix "C." followed by a 6-digit AIRLINE-code
+ *  - "3450629369" as simple 10-digit decimal number
+ *  - "A8C86ED4D8" as 10-digit hex number.
+ *
+ * Ids are derived from sequence numbers x in [0, N) of an id space of size N
+ * (e.g. 10^6 for 6 decimal digits). Sequence numbers are handed out by STRIPES
+ * lock-free counters, counter s handing out x = c * STRIPES + s for c = 0, 1, 2...
+ * Threads are spread over counters such that they rarely contend on the same
+ * cache line. Each x is handed out exactly once.
+ *
+ * Threads lease blocks of blockSize sequence numbers (up to MAX_BLOCK_SIZE) from
+ * the counters and hand them out from a thread-local block without synchronization.
+ * release() returns the unused rest of a thread's block, which is then leased
+ * by the next thread that needs a block. Threads that end without release() do
+ * not lose their block: the thread-local holder of the block is registered with
+ * a Cleaner that returns the rest when the holder is garbage collected after the
+ * thread has ended. By default a block is at most 2^-20 of the id space. Small id spaces (below 2^21 ids, e.g. 5-digit customer ids) use no
+ * thread-local blocks, each id is taken from the counters directly.
+ *
+ * Sequence numbers are mapped to ids by a keyed Feistel network, a bijective
+ * permutation of [0, 2^k) with 2^k >= N, restricted to [0, N) by cycle-walking
+ * (applying the permutation again while the result is outside the id space).
+ * Ids therefore look random, yet never collide and no collision check against
+ * existing objects is needed. IllegalStateException is thrown when the id space
+ * is exhausted.
+ *
+ * The permutation is keyed by a key drawn from SecureRandom for each generator,
+ * ids of different runs are therefore not predictable from one another. Ids
+ * restored from persistent storage are reserved with reserve() such that they
+ * are not handed out again, which requires the key under which they were
+ * generated: state that is persisted keeps the key (see OrderJournal.idKey())
+ * and passes it to the generators created after a restart.
+ *
+ */
+final class IDGenerator {
+
+    enum IDTYPE { ALPHANUM, AIRLINE, NUM, HEX, BIN };
+
+    private static final String[] ALPHABETS = new String[] {
+        "0123456789" + "ABCDEGFHIJKLMNOPQRSTUVWXYZ" + "abcdefghijklmnopqrstuwvxyz",
+        "0123456789" + "ABCDEGFHIJKLMNOPQRSTUVWXYZ",
+        "0123456789",
+        "0123456789ABCDEF",
+        "01"
+    };
+
+    /*
+     * Number of sequence counters (power of 2). Counters are PAD longs apart
+     * in the counter array to place them on separate cache lines.
+     */
+    static final int STRIPES = 16;
+
+    private static final int PAD = 8;
+
+    private static final int ROUNDS = 4;
+
+    static final int MAX_BLOCK_SIZE = 4096;
+
+    private static final int BLOCK_SHARE_BITS = 20;    // default block is at most 2^-20 of the id space
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Attribute:
+    private final String prefix;
+
+    private final int len;
+
+    private final char[] alphabet;
+
+    private final long lower;       // smallest id as number, e.g. 10^9 for 10 digits without leading 0
+
+    private final long size;        // number of ids N
+
+    private final int halfBits;     // Feistel network permutes [0, 2^(2*halfBits))
+
+    private final long halfMask;
+
+    private final long[] keys = new long[ ROUNDS ];
+
+    private final AtomicLongArray counters = new AtomicLongArray( STRIPES * PAD );
+
+    private final int blockSize;
+
+    private final ConcurrentLinkedQueue<long[]> free = new ConcurrentLinkedQueue<long[]>();
+
+    private final ThreadLocal<Holder> local = ThreadLocal.withInitial( () -> new Holder( free ) );
+
+    /*
+     * Block of sequence numbers c in [next, end) of a stripe leased by a thread,
+     * handing out x = c * STRIPES + stripe.
+     */
+    private static final class Block {
+        int stripe;
+        long next;
+        long end;
+    }
+
+    /*
+     * Thread-local holder of a thread's block. The Cleaner action refers to the
+     * block, not to the holder, such that the holder becomes unreachable when
+     * its thread ends.
+     */
+    private static final class Holder {
+        final Block block = new Block();
+        final Cleaner.Cleanable cleanable;
+
+        Holder( final ConcurrentLinkedQueue<long[]> free ) {
+            this.cleanable = CLEANER.register( this, new Return( block, free ) );
+        }
+    }
+
+    /*
+     * Cleaner action that returns the unused rest of a block, run by release()
+     * or after the holder of the block has been garbage collected.
+     */
+    private static final class Return implements Runnable {
+        private final Block block;
+        private final ConcurrentLinkedQueue<long[]> free;
+
+        Return( final Block block, final ConcurrentLinkedQueue<long[]> free ) {
+            this.block = block;
+            this.free = free;
+        }
+
+        @Override
+        public void run() {
+            if( block.next < block.end ) {
+                free.offer( new long[] { block.stripe, block.next, block.end } );
+            }
+        }
+    }
+
+
+    /**
+     * Constructor for ids without prefix that may start with alphabet's first
+     * char ('0'), e.g. "0045".
+     *
+     * @param type one of the IDTYPE's
+     * @param len total number of digits
+     */
+    IDGenerator( final IDTYPE type, final int len ) {
+        this( "", type, len, false );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefix prefix followed by digits, e.g. "SKU-"
+     * @param type one of the IDTYPE's
+     * @param len total number of digits
+     */
+    IDGenerator( final String prefix, final IDTYPE type, final int len ) {
+        this( prefix, type, len, false );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefix prefix followed by digits, e.g. "SKU-"
+     * @param type one of the IDTYPE's
+     * @param len total number of digits
+     * @param noLeadingZero when true, ids never start with alphabet's first
+     * char such that numeric ids have exactly len digits, e.g. 10-digit order ids
+     * @throws IllegalArgumentException when len is not positive or the id space
+     * exceeds 2^62 ids
+     */
+    IDGenerator( final String prefix, final IDTYPE type, final int len, final boolean noLeadingZero ) {
+        this( prefix, type, len, noLeadingZero, 0 );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefix prefix followed by digits, e.g. "SKU-"
+     * @param type one of the IDTYPE's
+     * @param len total number of digits
+     * @param noLeadingZero when true, ids never start with alphabet's first char
+     * @param blockSize number of ids leased by a thread at once, 0 for 2^-20 of
+     * the id space up to MAX_BLOCK_SIZE, 1 for no thread-local blocks
+     * @throws IllegalArgumentException when len is not positive or the id space
+     * exceeds 2^62 ids
+     */
+    IDGenerator( final String prefix, final IDTYPE type, final int len, final boolean noLeadingZero, final int blockSize ) {
+        this( prefix, type, len, noLeadingZero, blockSize, newKey() );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param prefix prefix followed by digits, e.g. "SKU-"
+     * @param type one of the IDTYPE's
+     * @param len total number of digits
+     * @param noLeadingZero when true, ids never start with alphabet's first char
+     * @param blockSize number of ids leased by a thread at once, 0 for 2^-20 of
+     * the id space up to MAX_BLOCK_SIZE, 1 for no thread-local blocks
+     * @param key key of the permutation of ids, the same key produces the same
+     * permutation, see newKey()
+     * @throws IllegalArgumentException when len is not positive or the id space
+     * exceeds 2^62 ids
+     */
+    IDGenerator( final String prefix, final IDTYPE type, final int len, final boolean noLeadingZero, final int blockSize, final long key ) {
+        this.prefix = prefix == null? "" : prefix;
+        this.len = len;
+        this.alphabet = ALPHABETS[ type.ordinal() ].toCharArray();
+        if( len < 1 ) {
+            throw new IllegalArgumentException( "illegal id length: " + len );
+        }
+        long upper = 1L;
+        try {
+            for( int i=0; i < len; i++ ) {
+                upper = Math.multiplyExact( upper, alphabet.length );
+            }
+        } catch( ArithmeticException e ) {
+            throw new IllegalArgumentException( "id space exceeds long: " + type + ", " + len );
+        }
+        if( upper > ( 1L << 62 ) ) {
+            throw new IllegalArgumentException( "id space exceeds long: " + type + ", " + len );
+        }
+        this.lower = noLeadingZero? upper / alphabet.length : 0L;
+        this.size = upper - lower;
+        int bits = 64 - Long.numberOfLeadingZeros( size - 1 );
+        this.halfBits = Math.max( 1, ( bits + 1 ) >> 1 );
+        this.halfMask = ( 1L << halfBits ) - 1;
+        this.blockSize = blockSize > 0? blockSize : (int)Math.max( 1L, Math.min( MAX_BLOCK_SIZE, size >> BLOCK_SHARE_BITS ) );
+        long seed = key;
+        for( int r=0; r < ROUNDS; r++ ) {
+            seed = mix( seed + 0x9E3779B97F4A7C15L );
+            keys[ r ] = seed;
+        }
+    }
+
+    /**
+     * Draw a random permutation key from SecureRandom.
+     *
+     * @return new key
+     */
+    static long newKey() {
+        return RANDOM.nextLong();
+    }
+
+    /**
+     * Generate next id.
+     *
+     * @return next id according to the format specified in the constructor
+     * @throws IllegalStateException when the id space is exhausted
+     */
+    String nextId() {
+        return format( nextIdAsLong() );
+    }
+
+    /**
+     * Generate next id as number. Numeric ids of generators created with noLeadingZero
+     * have exactly len digits.
+     *
+     * @return next id as number
+     * @throws IllegalStateException when the id space is exhausted
+     */
+    long nextIdAsLong() {
+        return lower + permute( nextSequence() );
+    }
+
+    /**
+     * Reserve an id that was generated before, e.g. restored from persistent
+     * storage, such that it is not handed out again. Ids not in the format of
+     * this generator are ignored. Ids must be reserved before new ids are
+     * generated, blocks leased before are not affected.
+     *
+     * @param id id to reserve
+     * @return true if id has the format of this generator and is reserved
+     */
+    boolean reserve( String id ) {
+        if( id == null || id.length() != prefix.length() + len || ! id.startsWith( prefix ) ) {
+            return false;
+        }
+        long v = 0L;
+        for( int i=prefix.length(); i < id.length(); i++ ) {
+            int d = digit( id.charAt( i ) );
+            if( d < 0 ) {
+                return false;
+            }
+            v = v * alphabet.length + d;
+        }
+        return reserve( v );
+    }
+
+    /**
+     * Reserve an id generated before as number, see reserve( String ).
+     *
+     * @param id id to reserve
+     * @return true if id is in the id space of this generator and is reserved
+     */
+    boolean reserve( long id ) {
+        long y = id - lower;
+        if( id < lower || y >= size ) {
+            return false;
+        }
+        long x = unpermute( y );
+        int i = (int)( x & ( STRIPES - 1 ) ) * PAD;
+        long c = x / STRIPES + 1;
+        for( long cur = counters.get( i ); cur < c; cur = counters.get( i ) ) {
+            if( counters.weakCompareAndSetVolatile( i, cur, c ) ) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of ids in the id space.
+     *
+     * @return number of ids this generator can produce
+     */
+    long capacity() {
+        return size;
+    }
+
+    /**
+     * Return the calling thread's unused pre-allocated ids such that other threads
+     * can hand them out. Without release(), they are returned after the thread
+     * has ended and its block holder is garbage collected.
+     */
+    void release() {
+        if( blockSize == 1 ) {
+            return;
+        }
+        local.get().cleanable.clean();      // runs Return once
+        local.remove();
+    }
+
+    /*
+     * Take next sequence number from the calling thread's block, lease a new
+     * block when it is used up. Without thread-local blocks, a block of one
+     * sequence number is leased for each call.
+     */
+    private long nextSequence() {
+        final Block b = blockSize == 1? new Block() : local.get().block;
+        if( b.next >= b.end ) {
+            lease( b );
+        }
+        return b.next++ * STRIPES + b.stripe;
+    }
+
+    /*
+     * Lease a block of sequence numbers, preferably a range released by another
+     * thread, otherwise from the counter of the calling thread's stripe. Exhausted
+     * stripes are skipped, the id space is exhausted when all are.
+     */
+    private void lease( Block b ) {
+        final long[] released = free.poll();
+        if( released != null ) {
+            b.stripe = (int)released[ 0 ];
+            b.next = released[ 1 ];
+            b.end = released[ 2 ];
+            return;
+        }
+        final int home = stripe();
+        for( int k=0; k < STRIPES; k++ ) {
+            final int s = ( home + k ) & ( STRIPES - 1 );
+            final long limit = ( size - s + STRIPES - 1 ) / STRIPES;    // number of x = c * STRIPES + s < size
+            final int i = s * PAD;
+            if( counters.get( i ) < limit ) {
+                long c = counters.getAndAdd( i, blockSize );
+                if( c < limit ) {
+                    b.stripe = s;
+                    b.next = c;
+                    b.end = Math.min( c + blockSize, limit );
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException( "id space exhausted: " + prefix + ", " + len + " digits" );
+    }
+
+    private static int stripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int)( h >>> 60 ) & ( STRIPES - 1 );
+    }
+
+    /*
+     * Bijective mapping of [0, size) by cycle-walking the Feistel permutation.
+     */
+    long permute( long x ) {
+        long y = feistel( x );
+        while( y >= size ) {
+            y = feistel( y );
+        }
+        return y;
+    }
+
+    long unpermute( long y ) {
+        long x = inverseFeistel( y );
+        while( x >= size ) {
+            x = inverseFeistel( x );
+        }
+        return x;
+    }
+
+    private long feistel( long x ) {
+        long l = x >>> halfBits;
+        long r = x & halfMask;
+        for( int i=0; i < ROUNDS; i++ ) {
+            long t = r;
+            r = l ^ ( mix( r + keys[ i ] ) & halfMask );
+            l = t;
+        }
+        return ( l << halfBits ) | r;
+    }
+
+    private long inverseFeistel( long y ) {
+        long l = y >>> halfBits;
+        long r = y & halfMask;
+        for( int i=ROUNDS - 1; i >= 0; i-- ) {
+            long t = l;
+            l = r ^ ( mix( l + keys[ i ] ) & halfMask );
+            r = t;
+        }
+        return ( l << halfBits ) | r;
+    }
+
+    private static long mix( long z ) {
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+        return z ^ ( z >>> 31 );
+    }
+
+    private String format( long v ) {
+        final int p = prefix.length();
+        final char[] buf = new char[ p + len ];
+        prefix.getChars( 0, p, buf, 0 );
+        for( int i=buf.length - 1; i >= p; i-- ) {
+            buf[ i ] = alphabet[ (int)( v % alphabet.length ) ];
+            v /= alphabet.length;
+        }
+        return new String( buf );
+    }
+
+    private int digit( char c ) {
+        for( int d=0; d < alphabet.length; d++ ) {
+            if( alphabet[ d ] == c ) {
+                return d;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,46 +1,136 @@
 package system;
 
-import datamodel.Article;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import datamodel.Article;
+import datamodel.HeapArticle;
 
+
+/**
+ * Implementation class of the InventoryManager interface. Articles are kept in
+ * a ConcurrentHashMap indexed by article id, which allows lookups by id in O(1)
+ * without blocking readers and only locks a single bin on updates.
+ *
+ * getInventory() returns a read-only view on the map's values. The view is
+ * weakly consistent: iteration never throws ConcurrentModificationException and
+ * reflects the inventory at some point at or since the creation of the iterator.
+ *
+ */
 final class InventoryManager implements Components.InventoryManager {
 
+    // Attribute:
+    private final ConcurrentHashMap<String, Article> inventory;
+
+    private final Collection<Article> inventoryView;
+
+    private final OrderJournal journal;         // null without journal
+
     // Konstruktor in den Komponenten‐Klasse InventoryManager:
     public InventoryManager() {
+        this( null );
+    }
+
+    /**
+     * Constructor with journal in which stock received is recorded.
+     *
+     * @param journal order journal, null for none
+     */
+    InventoryManager( OrderJournal journal ) {
+        this.inventory = new ConcurrentHashMap<String, Article>();
+        this.inventoryView = Collections.unmodifiableCollection( inventory.values() );
+        this.journal = journal;
     }
 
     @Override
     public boolean containsArticle(String id) {
-        return false;
+        return id != null && inventory.containsKey( id );
     }
 
     @Override
     public Iterable<Article> getInventory() {
-        return null;
+        return inventoryView;
     }
 
     @Override
     public Optional<Article> get(String id) {
-        return Optional.empty();
+        return id == null? Optional.empty() : Optional.ofNullable( inventory.get( id ) );
     }
 
     @Override
     public long count() {
-        return 0;
+        return inventory.mappingCount();
+    }
+
+    @Override
+    public Article createArticle(String id, String descr, long price, int units) {
+        return new HeapArticle( id, descr, price, units );
     }
 
     @Override
     public Components.InventoryManager add(Article article) {
-        return null;
+        if( article != null && article.getId() != null ) {
+            inventory.putIfAbsent( article.getId(), article );
+        }
+        return this;
     }
 
     @Override
     public Components.InventoryManager remove(Article article) {
-        return null;
+        if( article != null && article.getId() != null ) {
+            inventory.remove( article.getId(), article );
+        }
+        return this;
     }
 
     @Override
-    public void clear() {
+    public Components.InventoryManager restock(Article article, int units) {
+        if( units <= 0 ) {
+            throw new IllegalArgumentException( "illegal units: " + units );
+        }
+        if( article != null && article.getId() != null && inventory.get( article.getId() ) == article ) {
+            if( journal != null ) {
+                final long lsn;
+                journal.gate().enter();
+                try {
+                    journal.gate().beforeStockChange( article );
+                    article.release( units );       // atomic add, see Article.tryReserve()
+                    lsn = journal.stockReceived( article, units );
+                } finally {
+                    journal.gate().exit();
+                }
+                journal.commit( lsn );
+            } else {
+                article.release( units );
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public long stockValue() {
+        long value = 0L;
+        for( Article article : inventory.values() ) {
+            value += article.getUnitPrice() * article.getUnitsInStore();
+        }
+        return value;
+    }
 
+    @Override
+    public long countBelow(int threshold) {
+        long count = 0L;
+        for( Article article : inventory.values() ) {
+            if( article.getUnitsInStore() < threshold ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        inventory.clear();
     }
 }
@@ -0,0 +1,208 @@
+package system;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import datamodel.Article;
+import datamodel.Order;
+
+
+/**
+ * Gate that separates state changes recorded in the OrderJournal into those
+ * before and those after a snapshot cut at a journal LSN, without stopping
+ * threads that change state while the snapshot is written.
+ *
+ * Threads enter the gate before they change state and leave it after they have
+ * appended the change to the journal, such that change and record are on the
+ * same side of a cut. Threads in the gate are counted in padded stripes, entering
+ * is one atomic increment on the thread's stripe. cut() waits until no thread is
+ * in the gate (threads arriving meanwhile wait for the cut), takes the LSN and
+ * opens the gate again, which only takes as long as the longest state change.
+ *
+ * While the snapshot is written from live objects, threads record the units in
+ * store of an article before they change it for the first time after the cut
+ * (copy-on-write of changed values only, see beforeStockChange()). Articles
+ * created and orders accepted after the cut are marked as excluded. The snapshot
+ * reads units of an article at the cut with Cut.unitsOf() and skips orders for
+ * which Cut.includes() is false.
+ *
+ */
+final class JournalGate {
+
+    private static final int STRIPES = 32;
+
+    private static final int PAD = 16;          // longs per stripe (128 bytes), no false sharing
+
+    private static final int SPINS = 128;
+
+    static final int EXCLUDED = -1;
+
+    // Attribute:
+    private final AtomicLongArray active = new AtomicLongArray( STRIPES * PAD );
+
+    private volatile boolean cutting = false;
+
+    private volatile Cut cut = null;
+
+
+    /**
+     * View of units in store of articles and of accepted orders at a cut.
+     */
+    static final class Cut {
+        private final long lsn;
+        private final ConcurrentHashMap<Article, Integer> images = new ConcurrentHashMap<Article, Integer>();
+        private final Set<Order> excludedOrders = ConcurrentHashMap.newKeySet();
+
+        private Cut( long lsn ) {
+            this.lsn = lsn;
+        }
+
+        /**
+         * Return the journal LSN of the cut, changes recorded up to lsn are
+         * before the cut.
+         *
+         * @return LSN of the cut
+         */
+        long lsn() {
+            return lsn;
+        }
+
+        /**
+         * Return units in store of an article at the cut.
+         *
+         * @param article article
+         * @return units in store at the cut, EXCLUDED for articles created after the cut
+         */
+        int unitsOf( Article article ) {
+            final int units = article.getUnitsInStore();    // read before image, see beforeStockChange()
+            final Integer image = images.get( article );
+            return image != null? image : units;
+        }
+
+        /**
+         * Indicate whether an accepted order was accepted before the cut.
+         *
+         * @param order accepted order
+         * @return true, if order was accepted before the cut
+         */
+        boolean includes( Order order ) {
+            return ! excludedOrders.contains( order );
+        }
+    }
+
+
+    /**
+     * Enter gate before changing state, waits while a cut is taken.
+     */
+    void enter() {
+        final int i = stripe();
+        while( true ) {
+            active.getAndIncrement( i );
+            if( ! cutting ) {
+                return;
+            }
+            active.getAndDecrement( i );
+            for( int spins=0; cutting; spins++ ) {
+                if( spins < SPINS ) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * Leave gate after the state change is appended to the journal. Must be
+     * called by the thread that entered.
+     */
+    void exit() {
+        active.getAndDecrement( stripe() );
+    }
+
+    /**
+     * Record units in store of an article before it is changed for the first
+     * time after the cut. Must be called in the gate before each change.
+     *
+     * @param article article whose units in store are about to change
+     */
+    void beforeStockChange( Article article ) {
+        final Cut c = cut;
+        if( c != null ) {
+            c.images.putIfAbsent( article, article.getUnitsInStore() );
+        }
+    }
+
+    /**
+     * Mark an article created in the gate as excluded from the current cut.
+     * Must be called before the article is added to inventory.
+     *
+     * @param article article created
+     */
+    void articleCreated( Article article ) {
+        final Cut c = cut;
+        if( c != null ) {
+            c.images.put( article, EXCLUDED );
+        }
+    }
+
+    /**
+     * Mark an order accepted in the gate as excluded from the current cut.
+     * Must be called before the order is added to the order repository.
+     *
+     * @param order order accepted
+     */
+    void orderAccepted( Order order ) {
+        final Cut c = cut;
+        if( c != null ) {
+            c.excludedOrders.add( order );
+        }
+    }
+
+    /**
+     * Take a cut: wait until no thread is in the gate, then take the LSN.
+     * Only one cut can be open at a time.
+     *
+     * @param lsn supplier of the journal LSN at the cut
+     * @return cut, to be released after the snapshot is written
+     */
+    synchronized Cut cut( LongSupplier lsn ) {
+        if( cut != null ) {
+            throw new IllegalStateException( "cut already open" );
+        }
+        cutting = true;
+        try {
+            for( int s=0; s < STRIPES; s++ ) {
+                for( int spins=0; active.get( s * PAD ) != 0; spins++ ) {
+                    if( spins < SPINS ) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+            cut = new Cut( lsn.getAsLong() );
+            return cut;
+        } finally {
+            cutting = false;
+        }
+    }
+
+    /**
+     * Release a cut after the snapshot is written, ends recording of images.
+     *
+     * @param c cut returned by cut()
+     */
+    synchronized void release( Cut c ) {
+        if( cut == c ) {
+            cut = null;
+        }
+    }
+
+    private static int stripe() {
+        final long id = Thread.currentThread().getId();
+        return (int)( ( id * 0x9E3779B97F4A7C15L ) >>> 59 ) * PAD;
+    }
+}
@@ -0,0 +1,253 @@
+package system;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+
+/**
+ * Layout engine for report lines of fixed width that consist of a left-aligned
+ * part followed by a right-aligned part, see OutputProcessor.fmtLine(). Both
+ * parts are collected in reusable char[] buffers and laid out into a reusable
+ * char[] line buffer, no Strings or StringBuffers are created per line.
+ *
+ * Layout rules are those of fmtLine():
+ *  - when the left part is too long, leading spaces of the right part (after
+ *    its first char) are consumed first (right column shifts to the right),
+ *  - then the left part is truncated by 1 char, or ends with ".." when 2 chars
+ *    are missing, or ends with "..." when more chars are missing.
+ *
+ * Only the first width chars of the left part are stored, since chars beyond
+ * can never appear in a line. The logical length of the left part is tracked
+ * to apply the truncation rules.
+ *
+ * A LineLayout instance is not thread-safe.
+ *
+ */
+final class LineLayout implements CharSequence {
+
+    // Attribute:
+    private final int width;
+
+    private final char[] left;
+
+    private int leftLen = 0;    // logical length, may exceed left.length
+
+    private char[] right;
+
+    private int rightLen = 0;
+
+    private char[] line;
+
+    private int lineLen = 0;
+
+    private final char[] digits = new char[ 20 ];
+
+
+    /**
+     * Constructor.
+     *
+     * @param width minimum width of laid out lines
+     */
+    LineLayout( int width ) {
+        this.width = width;
+        this.left = new char[ width ];
+        this.right = new char[ width ];
+        this.line = new char[ width ];
+    }
+
+    /**
+     * Clear left and right parts to start a new line.
+     *
+     * @return self-reference to allow method chaining
+     */
+    LineLayout clear() {
+        leftLen = 0;
+        rightLen = 0;
+        lineLen = 0;
+        return this;
+    }
+
+    LineLayout left( CharSequence str ) {
+        final int n = str.length();
+        final int stored = Math.min( n, Math.max( 0, left.length - leftLen ) );
+        for( int i=0; i < stored; i++ ) {
+            left[ leftLen + i ] = str.charAt( i );
+        }
+        leftLen += n;
+        return this;
+    }
+
+    LineLayout left( char c ) {
+        if( leftLen < left.length ) {
+            left[ leftLen ] = c;
+        }
+        leftLen++;
+        return this;
+    }
+
+    LineLayout left( long number ) {
+        long v = number < 0? number : -number;      // negative magnitude covers Long.MIN_VALUE
+        int i = digits.length;
+        do {
+            digits[ --i ] = (char)( '0' - v % 10 );
+            v /= 10;
+        } while( v != 0 );
+        if( number < 0 ) {
+            digits[ --i ] = '-';
+        }
+        for( ; i < digits.length; i++ ) {
+            left( digits[ i ] );
+        }
+        return this;
+    }
+
+    LineLayout right( CharSequence str ) {
+        final int n = str.length();
+        ensureRight( rightLen + n );
+        for( int i=0; i < n; i++ ) {
+            right[ rightLen++ ] = str.charAt( i );
+        }
+        return this;
+    }
+
+    /**
+     * Append a price column to the right part: price with " " and currency,
+     * right-aligned to columnWidth, e.g. 299, "EUR", 12 -> "    2,99 EUR".
+     *
+     * @param price price as long in 1/100 (cents)
+     * @param currency currency, e.g. "EUR"
+     * @param columnWidth minimum width of the column
+     * @return self-reference to allow method chaining
+     */
+    LineLayout rightPrice( long price, String currency, int columnWidth ) {
+        final int priceLen = PriceFormatter.length( price );
+        final int len = priceLen + 1 + currency.length();
+        final int fill = Math.max( 0, columnWidth - len );
+        ensureRight( rightLen + fill + len );
+        for( int i=0; i < fill; i++ ) {
+            right[ rightLen++ ] = ' ';
+        }
+        rightLen += priceLen;
+        PriceFormatter.format( price, right, rightLen );
+        right[ rightLen++ ] = ' ';
+        for( int i=0; i < currency.length(); i++ ) {
+            right[ rightLen++ ] = currency.charAt( i );
+        }
+        return this;
+    }
+
+    /**
+     * Lay out left and right parts into the line buffer.
+     *
+     * @return self-reference to allow method chaining
+     */
+    LineLayout layout() {
+        int shiftable = 0;      // spaces after the first char of right part
+        for( int i=1; i < rightLen && right[ i ] == ' '; i++ ) {
+            shiftable++;
+        }
+        final int leftWidth = width - rightLen;     // left part is padded to this width
+        int excess = leftLen - leftWidth;
+        int shift = excess - Math.max( 0, excess - shiftable );
+        int rightOffset = 0;
+        if( shift > 0 ) {
+            rightOffset = shift;
+            excess -= shift;
+        }
+        int keep = leftLen;
+        String ellipsis = "";
+        if( excess > 0 ) {
+            switch( excess ) {
+            case 1:
+                keep = leftLen - 1;
+                break;
+            case 2:
+                keep = leftLen - 4;
+                ellipsis = "..";
+                break;
+            default:
+                keep = leftLen - excess - 3;
+                ellipsis = "...";
+                break;
+            }
+            keep = Math.max( 0, keep );
+        }
+        keep = Math.min( keep, left.length );
+        int n = 0;
+        if( Math.max( leftWidth, keep + ellipsis.length() ) > line.length ) {
+            line = new char[ Math.max( leftWidth, keep + ellipsis.length() ) ];
+        }
+        System.arraycopy( left, 0, line, 0, keep );
+        n += keep;
+        for( int i=0; i < ellipsis.length(); i++ ) {
+            line[ n++ ] = ellipsis.charAt( i );
+        }
+        while( n < leftWidth ) {
+            line[ n++ ] = ' ';
+        }
+        final int rightCount = rightLen - rightOffset;
+        if( n + rightCount > line.length ) {
+            line = Arrays.copyOf( line, n + rightCount );
+        }
+        System.arraycopy( right, rightOffset, line, n, rightCount );
+        lineLen = n + rightCount;
+        return this;
+    }
+
+    /**
+     * Write laid out line to an Appendable. Writers receive the line buffer
+     * directly without conversion to a String.
+     *
+     * @param out output to which line is written
+     * @throws IOException when writing to out fails
+     */
+    void writeTo( Appendable out ) throws IOException {
+        if( out instanceof Writer ) {
+            ( (Writer) out ).write( line, 0, lineLen );
+        } else if( out instanceof StringBuilder ) {
+            ( (StringBuilder) out ).append( line, 0, lineLen );
+        } else {
+            out.append( this );
+        }
+    }
+
+    @Override
+    public int length() {
+        return lineLen;
+    }
+
+    @Override
+    public char charAt( int index ) {
+        if( index < 0 || index >= lineLen ) {
+            throw new IndexOutOfBoundsException( index );
+        }
+        return line[ index ];
+    }
+
+    @Override
+    public CharSequence subSequence( int start, int end ) {
+        return new String( line, start, end - start );
+    }
+
+    @Override
+    public String toString() {
+        return new String( line, 0, lineLen );
+    }
+
+    /**
+     * Append laid out line to a StringBuffer.
+     *
+     * @param sb StringBuffer to which the line is appended
+     * @return sb
+     */
+    StringBuffer appendTo( StringBuffer sb ) {
+        return sb.append( line, 0, lineLen );
+    }
+
+    private void ensureRight( int capacity ) {
+        if( capacity > right.length ) {
+            right = Arrays.copyOf( right, Math.max( capacity, right.length << 1 ) );
+        }
+    }
+}
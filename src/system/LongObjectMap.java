@@ -0,0 +1,225 @@
+package system;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+
+/**
+ * Map of primitive long keys to object values using open addressing with linear
+ * probing in parallel key and value arrays. Keys are neither boxed nor wrapped
+ * in entry objects, an entry costs 8 bytes for the key and one reference for the
+ * value (at a load factor of at most 3/4). Key 0 marks free slots and its value
+ * is kept in a separate field. Removal shifts following entries of the probe
+ * sequence back (no tombstones).
+ *
+ * A LongObjectMap is not thread-safe. get() tolerates concurrent modification
+ * in the sense that it neither throws nor loops endlessly, such that it can be
+ * used for optimistic reads that are validated afterwards (see OrderRepository).
+ *
+ * @param <V> type of values
+ */
+final class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Attribute:
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size = 0;           // number of entries with key != 0
+
+    private boolean hasZeroKey = false;
+
+    private Object zeroValue = null;
+
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize number of entries the map holds without resizing
+     */
+    LongObjectMap( int expectedSize ) {
+        int capacity = MIN_CAPACITY;
+        while( capacity * 3L / 4 < expectedSize ) {
+            capacity <<= 1;
+        }
+        this.keys = new long[ capacity ];
+        this.values = new Object[ capacity ];
+    }
+
+    /**
+     * Return value mapped to key.
+     *
+     * @param key key to look up
+     * @return value mapped to key or null
+     */
+    @SuppressWarnings("unchecked")
+    V get( long key ) {
+        if( key == 0L ) {
+            return hasZeroKey? (V)zeroValue : null;
+        }
+        final long[] k = keys;
+        final Object[] v = values;
+        if( k.length != v.length ) {
+            return null;        // concurrent resize
+        }
+        final int mask = k.length - 1;
+        int i = slot( key, mask );
+        for( int probes=0; probes < k.length; probes++ ) {
+            final long ki = k[ i ];
+            if( ki == key ) {
+                return (V)v[ i ];
+            }
+            if( ki == 0L ) {
+                return null;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return null;
+    }
+
+    boolean containsKey( long key ) {
+        return key == 0L? hasZeroKey : indexOf( key ) >= 0;
+    }
+
+    /**
+     * Map key to value.
+     *
+     * @param key key
+     * @param value value
+     * @return value previously mapped to key or null
+     */
+    @SuppressWarnings("unchecked")
+    V put( long key, V value ) {
+        if( key == 0L ) {
+            V prev = (V)zeroValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return prev;
+        }
+        final int mask = keys.length - 1;
+        int i = slot( key, mask );
+        while( keys[ i ] != 0L ) {
+            if( keys[ i ] == key ) {
+                V prev = (V)values[ i ];
+                values[ i ] = value;
+                return prev;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        if( ( size + 1 ) * 4L > keys.length * 3L ) {
+            resize( keys.length << 1 );
+            return put( key, value );
+        }
+        values[ i ] = value;
+        keys[ i ] = key;
+        size++;
+        return null;
+    }
+
+    /**
+     * Remove mapping of key.
+     *
+     * @param key key
+     * @return value that was mapped to key or null
+     */
+    @SuppressWarnings("unchecked")
+    V remove( long key ) {
+        if( key == 0L ) {
+            V prev = (V)zeroValue;
+            zeroValue = null;
+            hasZeroKey = false;
+            return prev;
+        }
+        int i = indexOf( key );
+        if( i < 0 ) {
+            return null;
+        }
+        V prev = (V)values[ i ];
+        final int mask = keys.length - 1;
+        // shift back following entries whose probe sequence passes the freed slot
+        int free = i;
+        for( int j = ( i + 1 ) & mask; keys[ j ] != 0L; j = ( j + 1 ) & mask ) {
+            int home = slot( keys[ j ], mask );
+            if( ( ( j - home ) & mask ) >= ( ( j - free ) & mask ) ) {
+                keys[ free ] = keys[ j ];
+                values[ free ] = values[ j ];
+                free = j;
+            }
+        }
+        keys[ free ] = 0L;
+        values[ free ] = null;
+        size--;
+        return prev;
+    }
+
+    int size() {
+        return size + ( hasZeroKey? 1 : 0 );
+    }
+
+    void clear() {
+        Arrays.fill( keys, 0L );
+        Arrays.fill( values, null );
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /**
+     * Pass all values to a consumer, in no particular order.
+     *
+     * @param action consumer of values
+     */
+    @SuppressWarnings("unchecked")
+    void forEachValue( Consumer<? super V> action ) {
+        if( hasZeroKey ) {
+            action.accept( (V)zeroValue );
+        }
+        for( int i=0; i < keys.length; i++ ) {
+            if( keys[ i ] != 0L ) {
+                action.accept( (V)values[ i ] );
+            }
+        }
+    }
+
+    private int indexOf( long key ) {
+        final int mask = keys.length - 1;
+        int i = slot( key, mask );
+        while( keys[ i ] != 0L ) {
+            if( keys[ i ] == key ) {
+                return i;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    private void resize( int capacity ) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final long[] k = new long[ capacity ];
+        final Object[] v = new Object[ capacity ];
+        final int mask = capacity - 1;
+        for( int j=0; j < oldKeys.length; j++ ) {
+            if( oldKeys[ j ] != 0L ) {
+                int i = slot( oldKeys[ j ], mask );
+                while( k[ i ] != 0L ) {
+                    i = ( i + 1 ) & mask;
+                }
+                k[ i ] = oldKeys[ j ];
+                v[ i ] = oldValues[ j ];
+            }
+        }
+        values = v;
+        keys = k;
+    }
+
+    /*
+     * Spread keys over slots, sequential or clustered ids must not form long runs.
+     */
+    static int slot( long key, int mask ) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)( h ^ ( h >>> 32 ) ) & mask;
+    }
+}
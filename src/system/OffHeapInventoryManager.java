@@ -0,0 +1,779 @@
+package system;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Cleaner;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import datamodel.Article;
+import datamodel.TaxClass;
+
+
+/**
+ * Implementation class of the InventoryManager interface that keeps article
+ * records outside the Java heap, in direct ByteBuffers, such that stock data
+ * neither adds to the heap nor is traced or copied by the garbage collector.
+ *
+ * Records are fixed-size slots of SLOT bytes:
+ *
+ *   offset  0: long   unit price
+ *   offset  8: int    units in store (atomic access)
+ *   offset 12: byte   tax class (ordinal)
+ *   offset 13: byte   live, 1 if the article is in inventory
+ *   offset 16: long   description, generation and offset of its record in the
+ *                     description area, 0 for none
+ *
+ * Descriptions are stored once per distinct description in the description
+ * area (also off-heap, see DescriptionArea). Records count the slots that refer
+ * to them; records no longer referred to are dropped and their space is reused
+ * for the next record of the same size class, such that the area holds at most
+ * one record per slot. clear() starts a new area, views detached by it keep
+ * reading the area of their chunk. Decoded descriptions are kept in a bounded
+ * cache, such that getDescription() returns the same String for equal
+ * descriptions and mostly decodes nothing.
+ *
+ * Articles are thin views on a slot that only keep the id, the slot and its
+ * chunk on the heap. Slots are accessed with VarHandles of
+ * MethodHandles.byteBufferViewVarHandle(), units in store with volatile reads and
+ * writes and compare-and-set in tryReserve() and release(), which require aligned
+ * slots in aligned buffers. Slots are allocated in chunks of CHUNK slots that never
+ * move, as in ColumnarInventoryManager; views are created by createArticle() (used by
+ * DataFactory.createArticle()), other articles are copied into a new slot when added.
+ *
+ * A removed slot stays in place as long as its view is referred to (e.g. from
+ * orders) and is masked out of scans by the live byte. Views are registered with
+ * a Cleaner when their slot is allocated. Once a view has been reclaimed by the
+ * garbage collector, its slot is put on a free list from which slots are
+ * allocated before new chunks, whether the view was removed or never added.
+ *
+ * Off-heap memory of chunks is freed when the garbage collector reclaims the
+ * chunk's buffer after clear() and after all views on it are gone.
+ *
+ */
+final class OffHeapInventoryManager implements Components.InventoryManager {
+
+    private static final int SLOT = 24;
+
+    private static final int PRICE = 0;
+
+    private static final int UNITS = 8;
+
+    private static final int TAX_CLASS = 12;
+
+    private static final int LIVE = 13;
+
+    private static final int DESCR = 16;
+
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK = 1 << CHUNK_SHIFT;      // slots per chunk
+
+    private static final int AREA_SHIFT = 16;
+
+    private static final int AREA_CHUNK = 1 << AREA_SHIFT;  // bytes per chunk of the description area
+
+    private static final int DECODED_CAPACITY = 1 << 12;    // decoded descriptions kept per area
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle( long[].class, ByteOrder.nativeOrder() );
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle( int[].class, ByteOrder.nativeOrder() );
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Attribute:
+    private final ConcurrentHashMap<String, View> index;
+
+    private final Collection<Article> inventoryView;
+
+    private final OrderJournal journal;         // null without journal
+
+    private volatile Chunk[] chunks;
+
+    private volatile int slots;                 // slots allocated in chunks
+
+    private volatile DescriptionArea area;      // replaced by clear() with the chunks
+
+    private int[] free;                         // slots of reclaimed views, guarded by this
+
+    private int freeCount;
+
+
+    /*
+     * Buffer of CHUNK slots.
+     */
+    private static final class Chunk {
+        final OffHeapInventoryManager table;
+        final DescriptionArea area;
+        final ByteBuffer buffer;
+        final int index;            // in chunks
+
+        Chunk( OffHeapInventoryManager table, DescriptionArea area, ByteBuffer buffer, int index ) {
+            this.table = table;
+            this.area = area;
+            this.buffer = buffer;
+            this.index = index;
+        }
+    }
+
+
+    /*
+     * Thin Article on one slot.
+     */
+    private static final class View extends Article {
+        private final String id;
+        private final Chunk chunk;
+        private final int slot;         // offset of slot in chunk
+
+        View( String id, Chunk chunk, int slot ) {
+            this.id = id;
+            this.chunk = chunk;
+            this.slot = slot;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getDescription() {
+            return chunk.area.decode( chunk.buffer, slot );
+        }
+
+        @Override
+        public void setDescription( String description ) {
+            chunk.area.encode( chunk.buffer, slot, validDescription( description ) );
+        }
+
+        @Override
+        public long getUnitPrice() {
+            return (long)LONGS.get( chunk.buffer, slot + PRICE );
+        }
+
+        @Override
+        public void setUnitPrice( long unitPrice ) {
+            LONGS.set( chunk.buffer, slot + PRICE, validUnitPrice( unitPrice ) );
+        }
+
+        @Override
+        public int getUnitsInStore() {
+            return (int)INTS.getVolatile( chunk.buffer, slot + UNITS );
+        }
+
+        @Override
+        public void setUnitsInStore( int unitsInStore ) {
+            INTS.setVolatile( chunk.buffer, slot + UNITS, validUnitsInStore( unitsInStore ) );
+        }
+
+        @Override
+        public TaxClass getTaxClass() {
+            return TAX_CLASSES[ chunk.buffer.get( slot + TAX_CLASS ) ];
+        }
+
+        @Override
+        public void setTaxClass( TaxClass taxClass ) {
+            chunk.buffer.put( slot + TAX_CLASS, (byte)validTaxClass( taxClass ).ordinal() );
+        }
+
+        @Override
+        public boolean tryReserve( int units ) {
+            if( units <= 0 ) {
+                return units == 0;
+            }
+            final ByteBuffer b = chunk.buffer;
+            int current;
+            do {
+                current = (int)INTS.getVolatile( b, slot + UNITS );
+                if( current < units ) {
+                    return false;
+                }
+            } while( ! INTS.weakCompareAndSet( b, slot + UNITS, current, current - units ) );
+            return true;
+        }
+
+        @Override
+        public void release( int units ) {
+            if( units <= 0 ) {
+                return;
+            }
+            final ByteBuffer b = chunk.buffer;
+            int current;
+            do {
+                current = (int)INTS.getVolatile( b, slot + UNITS );
+            } while( ! INTS.weakCompareAndSet( b, slot + UNITS, current, released( current, units ) ) );
+        }
+
+        private void live( boolean live ) {
+            chunk.buffer.put( slot + LIVE, (byte)( live? 1 : 0 ) );
+        }
+    }
+
+
+    /*
+     * Cleaner action that frees the slot of a view after the view has been
+     * reclaimed. Must not refer to the view.
+     */
+    private static final class Reclaim implements Runnable {
+        private final Chunk chunk;
+        private final int slot;
+
+        Reclaim( Chunk chunk, int slot ) {
+            this.chunk = chunk;
+            this.slot = slot;
+        }
+
+        @Override
+        public void run() {
+            chunk.table.reclaim( chunk, slot );
+        }
+    }
+
+
+    /*
+     * Description area: records of distinct descriptions in chunks of AREA_CHUNK
+     * bytes off-heap that never move. A record takes a power of two of bytes, its
+     * size class, records larger than AREA_CHUNK take a chunk of their own:
+     *
+     *   offset  0: int    generation, incremented when the space of the record is reused
+     *   offset  4: int    references, number of slots that refer to the record
+     *   offset  8: int    hash of the description
+     *   offset 12: int    length of UTF-8 bytes
+     *   offset 16: bytes  UTF-8
+     *
+     * An open-addressing table of offsets on the heap (an int per record) finds
+     * the record of a description set again. Dropped records are put on a free
+     * list of their size class. Slots refer to a record by generation and offset,
+     * readers check the generation before and after they read the record (as a
+     * seqlock) and read the slot again when the record was reused. Records are
+     * added and dropped under the lock of the area, which also guards all writes
+     * of descriptions to slots.
+     */
+    private static final class DescriptionArea {
+        static final long NONE = 0L;        // description of slots without one, generations start at 1
+
+        private static final int GENERATION = 0;
+
+        private static final int REFERENCES = 4;
+
+        private static final int HASH = 8;
+
+        private static final int LENGTH = 12;
+
+        private static final int RECORD_HEADER = 16;
+
+        private static final int MIN_CLASS = 5;         // records of at least 32 bytes
+
+        private static final int MAX_CLASS = 30;
+
+        private volatile ByteBuffer[] chunks = new ByteBuffer[ 0 ];    // appended under lock
+
+        private int end = AREA_CHUNK;       // end of records in the last chunk, first record starts a chunk
+
+        private long bytes;                 // bytes of records referred to
+
+        private int[] offsets = new int[ 64 ];  // offset + 1 of records by hash, 0 for empty
+
+        private int count;
+
+        private final int[][] free = new int[ MAX_CLASS + 1 ][];   // offsets of dropped records by size class
+
+        private final int[] freeCount = new int[ MAX_CLASS + 1 ];
+
+        private final AtomicReferenceArray<Decoded> decoded = new AtomicReferenceArray<Decoded>( DECODED_CAPACITY );
+
+        /*
+         * Description decoded from the record of a slot's description.
+         */
+        private static final class Decoded {
+            final long code;
+            final String description;
+
+            Decoded( long code, String description ) {
+                this.code = code;
+                this.description = description;
+            }
+        }
+
+        String decode( ByteBuffer slots, int slot ) {
+            while( true ) {
+                final long code = (long)LONGS.getAcquire( slots, slot + DESCR );
+                if( code == NONE ) {
+                    return "";
+                }
+                final int offset = (int)code;
+                final int generation = (int)( code >>> 32 );
+                final int i = ( offset ^ ( offset >>> AREA_SHIFT ) * 0x9E3779B1 ) & ( DECODED_CAPACITY - 1 );
+                final Decoded d = decoded.getAcquire( i );
+                if( d != null && d.code == code ) {
+                    return d.description;
+                }
+                final ByteBuffer b = chunks[ offset >>> AREA_SHIFT ];
+                final int pos = offset & ( AREA_CHUNK - 1 );
+                if( (int)INTS.getAcquire( b, pos + GENERATION ) != generation ) {
+                    continue;       // record reused, the slot was written since
+                }
+                final int length = b.getInt( pos + LENGTH );
+                if( length < 0 || length > b.capacity() - pos - RECORD_HEADER ) {
+                    continue;
+                }
+                final byte[] utf8 = new byte[ length ];
+                b.get( pos + RECORD_HEADER, utf8 );
+                VarHandle.loadLoadFence();
+                if( (int)INTS.get( b, pos + GENERATION ) != generation ) {
+                    continue;
+                }
+                final String description = new String( utf8, StandardCharsets.UTF_8 );
+                decoded.setRelease( i, new Decoded( code, description ) );
+                return description;
+            }
+        }
+
+        synchronized void encode( ByteBuffer slots, int slot, String description ) {
+            final byte[] utf8 = description.getBytes( StandardCharsets.UTF_8 );
+            final int hash = description.hashCode();
+            int offset = find( hash, utf8 );
+            if( offset < 0 ) {
+                offset = add( hash, utf8 );
+            }
+            final ByteBuffer b = chunks[ offset >>> AREA_SHIFT ];
+            final int pos = offset & ( AREA_CHUNK - 1 );
+            b.putInt( pos + REFERENCES, b.getInt( pos + REFERENCES ) + 1 );
+            final long old = (long)LONGS.get( slots, slot + DESCR );
+            LONGS.setRelease( slots, slot + DESCR, (long)b.getInt( pos + GENERATION ) << 32 | offset );  // publishes the record
+            drop( old );
+        }
+
+        synchronized void clear( ByteBuffer slots, int slot ) {
+            final long old = (long)LONGS.get( slots, slot + DESCR );
+            LONGS.setRelease( slots, slot + DESCR, NONE );
+            drop( old );
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized int size() {
+            return count;
+        }
+
+        private int find( int hash, byte[] utf8 ) {
+            final int mask = offsets.length - 1;
+            for( int i = home( hash, mask ), o; ( o = offsets[ i ] ) != 0; i = ( i + 1 ) & mask ) {
+                if( matches( o - 1, hash, utf8 ) ) {
+                    return o - 1;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches( int offset, int hash, byte[] utf8 ) {
+            final ByteBuffer b = chunks[ offset >>> AREA_SHIFT ];
+            final int pos = offset & ( AREA_CHUNK - 1 );
+            if( b.getInt( pos + HASH ) != hash || b.getInt( pos + LENGTH ) != utf8.length ) {
+                return false;
+            }
+            for( int k=0; k < utf8.length; k++ ) {
+                if( b.get( pos + RECORD_HEADER + k ) != utf8[ k ] ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * Write a record into the space of a dropped record of its size class or
+         * into new space. The generation is incremented before the bytes are
+         * written, such that readers of the dropped record detect the reuse.
+         */
+        private int add( int hash, byte[] utf8 ) {
+            if( utf8.length > ( 1 << MAX_CLASS ) - RECORD_HEADER ) {
+                throw new IllegalStateException( "description too long: " + utf8.length + " bytes" );
+            }
+            final int k = sizeClass( RECORD_HEADER + utf8.length );
+            final int offset = freeCount[ k ] > 0? free[ k ][ --freeCount[ k ] ] : append( 1 << k );
+            final ByteBuffer b = chunks[ offset >>> AREA_SHIFT ];
+            final int pos = offset & ( AREA_CHUNK - 1 );
+            final int generation = b.getInt( pos + GENERATION ) + 1;
+            INTS.set( b, pos + GENERATION, generation == 0? 1 : generation );
+            VarHandle.storeStoreFence();
+            b.putInt( pos + REFERENCES, 0 );
+            b.putInt( pos + HASH, hash );
+            b.putInt( pos + LENGTH, utf8.length );
+            b.put( pos + RECORD_HEADER, utf8 );
+            link( offset, hash );
+            bytes += 1 << k;
+            return offset;
+        }
+
+        /*
+         * Take new space at the end of the area, in a new chunk if it does not fit
+         * into the last one. Chunks are published by writing chunks before a
+         * record's offset is written to a slot.
+         */
+        private int append( int size ) {
+            ByteBuffer[] a = chunks;
+            if( end + size > AREA_CHUNK ) {
+                if( a.length == Integer.MAX_VALUE >>> AREA_SHIFT ) {     // offset + 1 fits into an int
+                    throw new IllegalStateException( "description area full" );
+                }
+                a = Arrays.copyOf( a, a.length + 1 );
+                a[ a.length - 1 ] = allocateDirect( Math.max( size, AREA_CHUNK ) );
+                chunks = a;
+                end = 0;
+            }
+            final int pos = end;
+            end = size > AREA_CHUNK? AREA_CHUNK : pos + size;     // a large record fills its chunk
+            return ( ( a.length - 1 ) << AREA_SHIFT ) | pos;
+        }
+
+        private void drop( long code ) {
+            if( code == NONE ) {
+                return;
+            }
+            final int offset = (int)code;
+            final ByteBuffer b = chunks[ offset >>> AREA_SHIFT ];
+            final int pos = offset & ( AREA_CHUNK - 1 );
+            final int references = b.getInt( pos + REFERENCES ) - 1;
+            b.putInt( pos + REFERENCES, references );
+            if( references == 0 ) {
+                unlink( offset, b.getInt( pos + HASH ) );
+                final int k = sizeClass( RECORD_HEADER + b.getInt( pos + LENGTH ) );
+                if( free[ k ] == null ) {
+                    free[ k ] = new int[ 16 ];
+                } else if( freeCount[ k ] == free[ k ].length ) {
+                    free[ k ] = Arrays.copyOf( free[ k ], freeCount[ k ] * 2 );
+                }
+                free[ k ][ freeCount[ k ]++ ] = offset;
+                bytes -= 1 << k;
+            }
+        }
+
+        private void link( int offset, int hash ) {
+            final int mask = offsets.length - 1;
+            int i = home( hash, mask );
+            while( offsets[ i ] != 0 ) {
+                i = ( i + 1 ) & mask;
+            }
+            offsets[ i ] = offset + 1;
+            if( ++count > offsets.length / 2 ) {
+                rehash();
+            }
+        }
+
+        /*
+         * Remove the offset of a record from the table and shift entries behind
+         * it back that would not be found across the gap otherwise.
+         */
+        private void unlink( int offset, int hash ) {
+            final int mask = offsets.length - 1;
+            int i = home( hash, mask );
+            while( offsets[ i ] != offset + 1 ) {
+                i = ( i + 1 ) & mask;
+            }
+            for( int j = ( i + 1 ) & mask, o; ( o = offsets[ j ] ) != 0; j = ( j + 1 ) & mask ) {
+                final int h = home( hashAt( o - 1 ), mask );
+                if( j > i? ( h <= i || h > j ) : ( h <= i && h > j ) ) {
+                    offsets[ i ] = o;
+                    i = j;
+                }
+            }
+            offsets[ i ] = 0;
+            count--;
+        }
+
+        private void rehash() {
+            final int[] grown = new int[ offsets.length * 2 ];
+            final int mask = grown.length - 1;
+            for( int o : offsets ) {
+                if( o != 0 ) {
+                    int i = home( hashAt( o - 1 ), mask );
+                    while( grown[ i ] != 0 ) {
+                        i = ( i + 1 ) & mask;
+                    }
+                    grown[ i ] = o;
+                }
+            }
+            offsets = grown;
+        }
+
+        private int hashAt( int offset ) {
+            return chunks[ offset >>> AREA_SHIFT ].getInt( ( offset & ( AREA_CHUNK - 1 ) ) + HASH );
+        }
+
+        private static int home( int hash, int mask ) {
+            return ( hash ^ ( hash >>> 16 ) ) & mask;
+        }
+
+        private static int sizeClass( int size ) {
+            return Math.max( MIN_CLASS, 32 - Integer.numberOfLeadingZeros( size - 1 ) );
+        }
+    }
+
+
+    // Konstruktor in den Komponenten‐Klasse OffHeapInventoryManager:
+    public OffHeapInventoryManager() {
+        this( null );
+    }
+
+    /**
+     * Constructor with journal in which stock received is recorded.
+     *
+     * @param journal order journal, null for none
+     */
+    OffHeapInventoryManager( OrderJournal journal ) {
+        this.index = new ConcurrentHashMap<String, View>();
+        this.inventoryView = Collections.unmodifiableCollection( index.values() );
+        this.journal = journal;
+        this.chunks = new Chunk[ 0 ];
+        this.slots = 0;
+        this.area = new DescriptionArea();
+        this.free = new int[ 16 ];
+        this.freeCount = 0;
+    }
+
+    @Override
+    public Article createArticle(String id, String descr, long price, int units) {
+        final View view = allocate( id );
+        view.setDescription( descr );
+        view.setUnitPrice( price );
+        view.setUnitsInStore( units );
+        return view;
+    }
+
+    @Override
+    public boolean containsArticle(String id) {
+        return id != null && index.containsKey( id );
+    }
+
+    @Override
+    public Iterable<Article> getInventory() {
+        return inventoryView;
+    }
+
+    @Override
+    public Optional<Article> get(String id) {
+        return id == null? Optional.empty() : Optional.ofNullable( index.get( id ) );
+    }
+
+    @Override
+    public long count() {
+        return index.mappingCount();
+    }
+
+    @Override
+    public Components.InventoryManager add(Article article) {
+        if( article != null && article.getId() != null ) {
+            index.compute( article.getId(), ( id, present ) -> {
+                if( present != null ) {
+                    return present;
+                }
+                final View view = own( article )? (View)article : copy( article );
+                view.live( true );
+                return view;
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public Components.InventoryManager remove(Article article) {
+        if( article != null && article.getId() != null ) {
+            index.computeIfPresent( article.getId(), ( id, present ) -> {
+                if( present != article ) {
+                    return present;
+                }
+                present.live( false );
+                return null;
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public Components.InventoryManager restock(Article article, int units) {
+        if( units <= 0 ) {
+            throw new IllegalArgumentException( "illegal units: " + units );
+        }
+        if( article != null && article.getId() != null && index.get( article.getId() ) == article ) {
+            if( journal != null ) {
+                final long lsn;
+                journal.gate().enter();
+                try {
+                    journal.gate().beforeStockChange( article );
+                    article.release( units );       // atomic add, see View.tryReserve()
+                    lsn = journal.stockReceived( article, units );
+                } finally {
+                    journal.gate().exit();
+                }
+                journal.commit( lsn );
+            } else {
+                article.release( units );
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Scan slots for the value of all stock.
+     *
+     * @return sum of units in store times unit price over all articles in inventory
+     */
+    @Override
+    public long stockValue() {
+        final int n = slots;            // read before chunks, see allocate()
+        final Chunk[] c = chunks;       // fewer than n slots after a concurrent clear()
+        long value = 0L;
+        for( int chunk=0, base=0; base < n && chunk < c.length; chunk++, base += CHUNK ) {
+            final ByteBuffer b = c[ chunk ].buffer;
+            final int end = Math.min( CHUNK, n - base ) * SLOT;
+            for( int slot=0; slot < end; slot += SLOT ) {
+                value += (long)LONGS.get( b, slot + PRICE ) * (int)INTS.get( b, slot + UNITS ) * b.get( slot + LIVE );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Scan slots for articles with fewer units in store than threshold.
+     *
+     * @param threshold units in store below which articles are counted
+     * @return number of articles in inventory with less than threshold units in store
+     */
+    @Override
+    public long countBelow(int threshold) {
+        if( threshold <= 0 ) {
+            return 0L;
+        }
+        final int n = slots;
+        final Chunk[] c = chunks;
+        long count = 0L;
+        for( int chunk=0, base=0; base < n && chunk < c.length; chunk++, base += CHUNK ) {
+            final ByteBuffer b = c[ chunk ].buffer;
+            final int end = Math.min( CHUNK, n - base ) * SLOT;
+            for( int slot=0; slot < end; slot += SLOT ) {
+                count += ( ( (int)INTS.get( b, slot + UNITS ) - threshold ) >>> 31 ) & b.get( slot + LIVE );
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        synchronized( this ) {
+            slots = 0;
+            chunks = new Chunk[ 0 ];        // views created before are detached
+            area = new DescriptionArea();
+            freeCount = 0;
+        }
+        index.clear();      // not holding the lock, add() allocates slots in index.compute()
+    }
+
+    /**
+     * Return the number of slots of reclaimed views that are free for reuse.
+     *
+     * @return number of free slots
+     */
+    synchronized int freeSlots() {
+        return freeCount;
+    }
+
+    /**
+     * Return the number of distinct descriptions in the description area.
+     *
+     * @return number of descriptions
+     */
+    int descriptions() {
+        return area.size();
+    }
+
+    /**
+     * Return the number of bytes of records in the description area.
+     *
+     * @return bytes of descriptions
+     */
+    long descriptionBytes() {
+        return area.bytes();
+    }
+
+    /*
+     * Allocate a slot, a free slot if there is one, and return a view on it,
+     * registered with the Cleaner to reclaim the slot after the view is gone.
+     * A new slot is published to scans by writing slots after chunks. clear()
+     * writes slots before chunks, scans that read slots before clear() and
+     * chunks after it therefore bound their loop by the chunks they read.
+     */
+    private synchronized View allocate( String id ) {
+        final View view;
+        if( freeCount > 0 ) {
+            final int s = free[ --freeCount ];
+            view = new View( id, chunks[ s >>> CHUNK_SHIFT ], ( s & ( CHUNK - 1 ) ) * SLOT );
+        } else {
+            final int n = slots;
+            if( n == Integer.MAX_VALUE ) {
+                throw new IllegalStateException( "inventory full" );
+            }
+            Chunk[] c = chunks;
+            final int chunk = n >>> CHUNK_SHIFT;
+            if( chunk == c.length ) {
+                c = Arrays.copyOf( c, chunk + 1 );
+                c[ chunk ] = new Chunk( this, area, allocateDirect( CHUNK * SLOT ), chunk );
+                chunks = c;
+            }
+            view = new View( id, c[ chunk ], ( n & ( CHUNK - 1 ) ) * SLOT );
+            slots = n + 1;
+        }
+        CLEANER.register( view, new Reclaim( view.chunk, view.slot ) );
+        return view;
+    }
+
+    /*
+     * Reset the slot of a reclaimed view and put it on the free list, unless
+     * the chunk was dropped by clear().
+     */
+    private synchronized void reclaim( Chunk chunk, int slot ) {
+        final ByteBuffer b = chunk.buffer;
+        if( current( chunk ) && b.get( slot + LIVE ) == 0 ) {
+            chunk.area.clear( b, slot );
+            LONGS.set( b, slot + PRICE, 0L );
+            INTS.setVolatile( b, slot + UNITS, 0 );
+            b.put( slot + TAX_CLASS, (byte)0 );
+            if( freeCount == free.length ) {
+                free = Arrays.copyOf( free, freeCount * 2 );
+            }
+            free[ freeCount++ ] = ( chunk.index << CHUNK_SHIFT ) | slot / SLOT;
+        }
+    }
+
+    private boolean current( Chunk chunk ) {
+        final Chunk[] c = chunks;
+        return chunk.table == this && chunk.index < c.length && c[ chunk.index ] == chunk;
+    }
+
+    private boolean own( Article article ) {
+        return article instanceof View && current( ((View)article).chunk );
+    }
+
+    private View copy( Article article ) {
+        final View view = allocate( article.getId() );
+        view.setDescription( article.getDescription() );
+        view.setUnitPrice( article.getUnitPrice() );
+        view.setUnitsInStore( article.getUnitsInStore() );
+        view.setTaxClass( article.getTaxClass() );
+        return view;
+    }
+
+    private static ByteBuffer allocateDirect( int size ) {
+        return ByteBuffer.allocateDirect( size + Long.BYTES - 1 ).alignedSlice( Long.BYTES ).order( ByteOrder.nativeOrder() );
+    }
+}
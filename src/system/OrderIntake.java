@@ -0,0 +1,150 @@
+package system;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import datamodel.Order;
+import datamodel.OrderItem;
+
+
+/**
+ * Implementation class of the OrderIntake interface. Each submitted order is
+ * accepted by OrderProcessor.accept() in its own task. A Semaphore with
+ * maxInFlight permits provides backpressure: submit() blocks the producer until
+ * an order in flight completes.
+ *
+ * Tasks run on virtual threads (one per order) when the runtime provides them
+ * (Java 21+, Executors.newVirtualThreadPerTaskExecutor() is looked up at run
+ * time). On older runtimes tasks run in a fixed pool of daemon platform threads,
+ * one per available processor, since accepting orders does not block on I/O.
+ *
+ */
+final class OrderIntake implements Components.OrderIntake {
+
+    static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    // Attribute:
+    private final Components.OrderProcessor orderProcessor;
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    private final int maxInFlight;
+
+    private final Semaphore permits;
+
+    private volatile boolean closed = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param orderProcessor injected dependency to the orderProcessor
+     * @param maxInFlight maximum number of orders submitted, but not yet processed
+     */
+    OrderIntake( Components.OrderProcessor orderProcessor, int maxInFlight ) {
+        if( maxInFlight < 1 ) {
+            throw new IllegalArgumentException( "illegal maxInFlight: " + maxInFlight );
+        }
+        this.orderProcessor = orderProcessor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore( maxInFlight );
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null? virtual : Executors.newFixedThreadPool(
+            Math.min( maxInFlight, Runtime.getRuntime().availableProcessors() ), daemonThreadFactory() );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> submit( Order order ) throws InterruptedException {
+        return submit( order, null, null, null );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> submit( Order order,
+            Consumer<Order> acceptCode,
+            Consumer<Order> rejectCode,
+            Consumer<OrderItem> rejectedOrderItemCode
+    ) throws InterruptedException {
+        if( closed ) {
+            throw new RejectedExecutionException( "order intake is closed" );
+        }
+        permits.acquire();
+        final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+        try {
+            executor.execute( () -> {
+                try {
+                    result.complete( orderProcessor.accept( order, acceptCode, rejectCode, rejectedOrderItemCode ) );
+                } catch( Throwable t ) {
+                    result.completeExceptionally( t );
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch( RejectedExecutionException e ) {
+            permits.release();
+            throw e;
+        }
+        return result;
+    }
+
+    @Override
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        boolean interrupted = false;
+        while( ! executor.isTerminated() ) {
+            try {
+                executor.awaitTermination( 1, TimeUnit.SECONDS );
+            } catch( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indicate whether orders are accepted on virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /*
+     * Return Executors.newVirtualThreadPerTaskExecutor() if the runtime has it,
+     * null otherwise.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch( ReflectiveOperationException | RuntimeException e ) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread( r, "order-intake-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        };
+    }
+}
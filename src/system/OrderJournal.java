@@ -0,0 +1,772 @@
+package system;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+import datamodel.TaxClass;
+
+
+/**
+ * Append-only journal of events that change system state: articles and customers
+ * created, orders accepted and stock received. Records are appended to segment
+ * files of fixed size that are memory-mapped, an append is a copy into the mapped
+ * buffer under a short lock without a system call.
+ *
+ * Segment files are named journal-<base>.seg with base the log sequence number
+ * (LSN, byte address in the journal) of the segment's first byte. A segment
+ * starts with a header (magic, version, base, id key) followed by records:
+ *
+ *  | length (int) | crc (int) | type (byte) | payload ... |
+ *
+ * with length the number of bytes of type and payload and crc the CRC32C of
+ * those bytes. Length 0 marks the end of records in a segment (mapped files are
+ * zero-filled), records never span segments. A record that does not pass its
+ * checksum marks the end of the journal after a crash (torn write), it and all
+ * bytes behind it are discarded when the journal is opened.
+ *
+ * Group commit: a flusher thread forces appended bytes to disk with one msync
+ * for all records appended since its last flush. commit( lsn ) waits until the
+ * record ending at lsn is durable when the journal syncs commits, callers that
+ * commit concurrently share one flush. Otherwise commit( lsn ) only requests a
+ * flush, which the flusher performs FLUSH_INTERVAL_MILLIS later together with
+ * records of further commits. The flusher sleeps while no flush is requested.
+ * Every appended record must therefore be committed.
+ *
+ * The id key is drawn at random when the journal is created and copied into the
+ * header of every segment. It keys the permutation of ids (see IDGenerator) such
+ * that ids replayed after a restart are reserved in the same permutation in
+ * which new ids are generated.
+ *
+ * Replay decodes records in order and passes events to a Replayer, see
+ * DataFactory.replay(). Replay starts behind the LSN of the last snapshot
+ * (see Snapshotter), segments before it are deleted with truncate().
+ *
+ * Threads that change state enter the journal's gate() before the change and
+ * leave it after the change is appended, see JournalGate.
+ *
+ */
+final class OrderJournal implements AutoCloseable {
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    static final long FLUSH_INTERVAL_MILLIS = 10L;
+
+    static final int SEGMENT_HEADER_SIZE = 24;
+
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int MAGIC = 0x5345314A;     // "SE1J"
+
+    private static final int VERSION = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /*
+     * Record types.
+     */
+    static final byte ARTICLE_CREATED = 1;
+
+    static final byte CUSTOMER_CREATED = 2;
+
+    static final byte ORDER_ACCEPTED = 3;
+
+    static final byte STOCK_RECEIVED = 4;
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
+
+    /**
+     * Receiver of events decoded from the journal in replay().
+     */
+    interface Replayer {
+
+        void articleCreated( String id, String descr, long price, int units, TaxClass taxClass );
+
+        void customerCreated( String id, String name, String contact );
+
+        /**
+         * Order accepted with items given by parallel arrays.
+         */
+        void orderAccepted( long id, long date, String customerId, String[] descrs, String[] articleIds, int[] units );
+
+        void stockReceived( String articleId, int units );
+
+    }
+
+    // Attribute:
+    private final Path dir;
+
+    private final int segmentSize;
+
+    private final boolean syncCommits;
+
+    private final long idKey;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private MappedByteBuffer segment;      // guarded by appendLock
+
+    private long segmentBase;              // guarded by appendLock
+
+    private int position;                  // guarded by appendLock
+
+    private int forced;                    // position in segment up to which bytes are forced, guarded by appendLock
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private final Condition flushRequested = syncLock.newCondition();
+
+    private final Condition flushed = syncLock.newCondition();
+
+    private long requested = 0L;           // guarded by syncLock
+
+    private volatile long durable = 0L;
+
+    private volatile boolean closed = false;
+
+    private final Thread flusher;
+
+    private final JournalGate gate = new JournalGate();
+
+
+    /**
+     * Open journal in a directory with default segment size, commits wait until
+     * records are durable.
+     *
+     * @param dir directory of segment files, created if it does not exist
+     * @throws IOException when segment files cannot be created or read
+     */
+    OrderJournal( Path dir ) throws IOException {
+        this( dir, DEFAULT_SEGMENT_SIZE, true );
+    }
+
+    /**
+     * Open journal in a directory. New records are appended behind the last
+     * valid record of the last segment, new segments have segmentSize bytes.
+     *
+     * @param dir directory of segment files, created if it does not exist
+     * @param segmentSize size of segment files in bytes
+     * @param syncCommits true if commit() waits until records are durable
+     * @throws IOException when segment files cannot be created or read
+     */
+    OrderJournal( Path dir, int segmentSize, boolean syncCommits ) throws IOException {
+        if( segmentSize < 1024 ) {
+            throw new IllegalArgumentException( "illegal segmentSize: " + segmentSize );
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.syncCommits = syncCommits;
+        Files.createDirectories( dir );
+        final List<Path> segments = segments();
+        if( segments.isEmpty() ) {
+            this.idKey = new SecureRandom().nextLong();
+            openSegment( 0L );
+        } else {
+            final Path last = segments.get( segments.size() - 1 );
+            final long base = baseOf( last );
+            this.segment = map( last, FileChannel.MapMode.READ_WRITE, 0 );
+            checkHeader( segment, base, last );
+            this.idKey = segment.getLong( 16 );
+            this.segmentBase = base;
+            this.position = endOfRecords( segment );
+            // discard torn record and bytes behind it, which must not be taken
+            // for records once new records are appended up to them
+            for( int i = position; i < segment.limit(); i++ ) {
+                if( segment.get( i ) != 0 ) {
+                    segment.put( i, (byte)0 );
+                }
+            }
+            segment.force();
+            this.forced = position;
+        }
+        this.durable = segmentBase + position;
+        this.flusher = new Thread( this::runFlusher, "order-journal-flusher" );
+        this.flusher.setDaemon( true );
+        this.flusher.start();
+    }
+
+    /**
+     * Append a record of an article that was created.
+     *
+     * @param article article created
+     * @return LSN at the end of the record
+     */
+    long articleCreated( Article article ) {
+        final Encoder e = new Encoder( ARTICLE_CREATED );
+        e.putString( article.getId() );
+        e.putString( article.getDescription() );
+        e.putLong( article.getUnitPrice() );
+        e.putInt( article.getUnitsInStore() );
+        e.putByte( article.getTaxClass().ordinal() );
+        return append( e );
+    }
+
+    /**
+     * Append a record of a customer that was created.
+     *
+     * @param customer customer created
+     * @param name single-String name the customer was created with
+     * @return LSN at the end of the record
+     */
+    long customerCreated( Customer customer, String name ) {
+        final Encoder e = new Encoder( CUSTOMER_CREATED );
+        e.putString( customer.getId() );
+        e.putString( name );
+        e.putString( customer.getContact() );
+        return append( e );
+    }
+
+    /**
+     * Append a record of an order that was accepted, which also records the
+     * units of articles taken from stock.
+     *
+     * @param order order accepted
+     * @return LSN at the end of the record
+     */
+    long orderAccepted( Order order ) {
+        final Encoder e = new Encoder( ORDER_ACCEPTED );
+        e.putLong( order.getId() );
+        e.putLong( order.getDate().getTime() );
+        e.putString( order.getCustomer().getId() );
+        e.putInt( order.count() );
+        for( OrderItem item : order.getItems() ) {
+            e.putString( item.getDescription() );
+            e.putString( item.getArticle().getId() );
+            e.putInt( item.getUnitsOrdered() );
+        }
+        return append( e );
+    }
+
+    /**
+     * Append a record of units of an article received into stock.
+     *
+     * @param article article received
+     * @param units units added to stock
+     * @return LSN at the end of the record
+     */
+    long stockReceived( Article article, int units ) {
+        final Encoder e = new Encoder( STOCK_RECEIVED );
+        e.putString( article.getId() );
+        e.putInt( units );
+        return append( e );
+    }
+
+    /**
+     * Commit records up to lsn. If the journal syncs commits, wait until the
+     * flusher has forced them to disk, otherwise request the flush and return
+     * immediately.
+     *
+     * @param lsn LSN returned by an append method
+     */
+    void commit( long lsn ) {
+        if( syncCommits ) {
+            awaitDurable( lsn );
+        } else if( durable < lsn ) {
+            syncLock.lock();
+            try {
+                request( lsn );
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wait until records up to lsn are forced to disk. Concurrent callers
+     * are served by the same flush.
+     *
+     * @param lsn LSN returned by an append method
+     */
+    void awaitDurable( long lsn ) {
+        if( durable >= lsn ) {
+            return;
+        }
+        boolean interrupted = false;
+        syncLock.lock();
+        try {
+            request( lsn );
+            while( durable < lsn ) {
+                if( closed && ! flusher.isAlive() ) {
+                    throw new IllegalStateException( "order journal is closed" );
+                }
+                try {
+                    flushed.await( FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS );
+                } catch( InterruptedException e ) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+        if( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the LSN up to which records are forced to disk.
+     *
+     * @return durable LSN
+     */
+    long durable() {
+        return durable;
+    }
+
+    /**
+     * Return the LSN at the end of the last record appended.
+     *
+     * @return end LSN of appended records
+     */
+    long end() {
+        appendLock.lock();
+        try {
+            return segmentBase + position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Return the key of the permutation of ids of objects recorded in this
+     * journal, see IDGenerator. The key is the same after the journal is opened
+     * again.
+     *
+     * @return id key
+     */
+    long idKey() {
+        return idKey;
+    }
+
+    /**
+     * Return the directory of segment files.
+     *
+     * @return journal directory
+     */
+    Path directory() {
+        return dir;
+    }
+
+    /**
+     * Return the gate that state changes pass to be consistent with snapshots.
+     *
+     * @return gate of the journal
+     */
+    JournalGate gate() {
+        return gate;
+    }
+
+    /**
+     * Decode all records of the journal in order and pass them to a replayer.
+     * Replay stops at the first invalid record of the last segment.
+     *
+     * @param replayer receiver of decoded events
+     * @return number of records replayed
+     * @throws IOException when segment files cannot be read
+     * @throws IllegalStateException when a segment other than the last is corrupt
+     */
+    long replay( Replayer replayer ) throws IOException {
+        return replay( 0L, replayer );
+    }
+
+    /**
+     * Decode records behind an LSN in order and pass them to a replayer.
+     *
+     * @param from LSN from which to replay, records ending at or before are skipped
+     * @param replayer receiver of decoded events
+     * @return number of records replayed
+     * @throws IOException when segment files cannot be read
+     * @throws IllegalStateException when a segment other than the last is corrupt
+     */
+    long replay( long from, Replayer replayer ) throws IOException {
+        final List<Path> segments = segments();
+        long records = 0L;
+        for( int s=0; s < segments.size(); s++ ) {
+            final Path path = segments.get( s );
+            final boolean last = s == segments.size() - 1;
+            final long base = baseOf( path );
+            if( ! last && base + Files.size( path ) <= from ) {
+                continue;
+            }
+            final ByteBuffer buf = map( path, FileChannel.MapMode.READ_ONLY, 0 );
+            checkHeader( buf, base, path );
+            final int end = endOfRecords( buf );
+            if( ! last && end < buf.limit() - RECORD_HEADER_SIZE && buf.getInt( end ) != 0 ) {
+                throw new IllegalStateException( "corrupt journal record in " + path + " at " + end );
+            }
+            for( int pos = SEGMENT_HEADER_SIZE; pos < end; ) {
+                final int length = buf.getInt( pos );
+                final int next = pos + RECORD_HEADER_SIZE + length;
+                if( base + next > from ) {
+                    decode( buf.slice( pos + RECORD_HEADER_SIZE, length ), replayer );
+                    records++;
+                }
+                pos = next;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Delete segments that only contain records ending at or before an LSN,
+     * e.g. the LSN of a snapshot. The segment appended to is never deleted.
+     *
+     * @param lsn LSN up to which records are no longer needed
+     * @return number of segments deleted
+     * @throws IOException when segment files cannot be deleted
+     */
+    int truncate( long lsn ) throws IOException {
+        final long current;
+        appendLock.lock();
+        try {
+            current = segmentBase;
+        } finally {
+            appendLock.unlock();
+        }
+        int deleted = 0;
+        for( Path path : segments() ) {
+            final long base = baseOf( path );
+            if( base < current && base + Files.size( path ) <= lsn ) {
+                Files.delete( path );
+                deleted++;
+            }
+        }
+        if( deleted > 0 ) {
+            syncDirectory();
+        }
+        return deleted;
+    }
+
+    /**
+     * Force appended records to disk, stop the flusher thread and reject
+     * further appends.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        syncLock.lock();
+        try {
+            flushRequested.signal();
+        } finally {
+            syncLock.unlock();
+        }
+        boolean interrupted = false;
+        while( flusher.isAlive() ) {
+            try {
+                flusher.join();
+            } catch( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Copy record into the mapped segment, roll over to a new segment when the
+     * record does not fit.
+     */
+    private long append( Encoder e ) {
+        final int length = e.length();
+        if( RECORD_HEADER_SIZE + length > segmentSize - SEGMENT_HEADER_SIZE ) {
+            throw new IllegalArgumentException( "journal record too large: " + length );
+        }
+        final CRC32C crc = new CRC32C();
+        crc.update( e.bytes, 0, length );
+        appendLock.lock();
+        try {
+            if( closed ) {
+                throw new IllegalStateException( "order journal is closed" );
+            }
+            if( position + RECORD_HEADER_SIZE + length > segment.limit() ) {
+                segment.force();
+                openSegment( segmentBase + segment.limit() );
+            }
+            segment.put( position + RECORD_HEADER_SIZE, e.bytes, 0, length );
+            segment.putInt( position + 4, (int)crc.getValue() );
+            segment.putInt( position, length );
+            position += RECORD_HEADER_SIZE + length;
+            return segmentBase + position;
+        } catch( IOException ex ) {
+            throw new UncheckedIOException( ex );
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /*
+     * Create and map segment file at base, called with appendLock held or
+     * from the constructor.
+     */
+    private void openSegment( long base ) throws IOException {
+        final Path path = dir.resolve( nameOf( base ) );
+        final MappedByteBuffer buf;
+        try( FileChannel ch = FileChannel.open( path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+            buf = ch.map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        }
+        buf.putInt( 0, MAGIC );
+        buf.putInt( 4, VERSION );
+        buf.putLong( 8, base );
+        buf.putLong( 16, idKey );
+        buf.force();
+        syncDirectory();
+        this.segment = buf;
+        this.segmentBase = base;
+        this.position = SEGMENT_HEADER_SIZE;
+        this.forced = SEGMENT_HEADER_SIZE;
+    }
+
+    /*
+     * Force directory entries of files created, renamed or deleted in the
+     * journal directory, not supported on all platforms.
+     */
+    void syncDirectory() {
+        try( FileChannel ch = FileChannel.open( dir, StandardOpenOption.READ ) ) {
+            ch.force( true );
+        } catch( IOException e ) {
+            // directory cannot be opened for sync on this platform
+        }
+    }
+
+    /*
+     * Request a flush of records up to lsn, must be called with syncLock held.
+     */
+    private void request( long lsn ) {
+        if( requested < lsn ) {
+            requested = lsn;
+            flushRequested.signal();
+        }
+    }
+
+    /*
+     * Wait until a flush is requested (or the journal is closed) and flush. Without
+     * synced commits, flushes are delayed by FLUSH_INTERVAL_MILLIS to gather the
+     * records of further commits.
+     */
+    private void runFlusher() {
+        while( true ) {
+            syncLock.lock();
+            try {
+                while( ! closed && requested <= durable ) {
+                    flushRequested.await();
+                }
+                long nanos = syncCommits? 0L : TimeUnit.MILLISECONDS.toNanos( FLUSH_INTERVAL_MILLIS );
+                while( ! closed && nanos > 0L ) {
+                    nanos = flushRequested.awaitNanos( nanos );
+                }
+            } catch( InterruptedException e ) {
+                closed = true;
+            } finally {
+                syncLock.unlock();
+            }
+            final boolean stop = closed;
+            flush();
+            if( stop ) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Force bytes appended since the last flush, segments rolled over were
+     * forced by append().
+     */
+    private void flush() {
+        final MappedByteBuffer buf;
+        final int from, to;
+        final long lsn;
+        appendLock.lock();
+        try {
+            buf = segment;
+            from = forced;
+            to = position;
+            lsn = segmentBase + position;
+            forced = position;
+        } finally {
+            appendLock.unlock();
+        }
+        if( to > from ) {
+            buf.force( from, to - from );
+        }
+        if( lsn > durable ) {
+            syncLock.lock();
+            try {
+                durable = lsn;
+                flushed.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        final List<Path> segments = new ArrayList<Path>();
+        try( DirectoryStream<Path> ds = Files.newDirectoryStream( dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX ) ) {
+            for( Path p : ds ) {
+                segments.add( p );
+            }
+        }
+        segments.sort( null );      // fixed-width hex names sort by base
+        return segments;
+    }
+
+    static String nameOf( long base ) {
+        return String.format( "%s%016x%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX );
+    }
+
+    static long baseOf( Path segment ) {
+        final String name = segment.getFileName().toString();
+        return Long.parseUnsignedLong( name.substring( SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length() ), 16 );
+    }
+
+    /*
+     * Map segment file, size 0 maps the file with its current size.
+     */
+    private static MappedByteBuffer map( Path path, FileChannel.MapMode mode, int size ) throws IOException {
+        final StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY?
+            new StandardOpenOption[] { StandardOpenOption.READ } :
+            new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+        try( FileChannel ch = FileChannel.open( path, options ) ) {
+            return ch.map( mode, 0, size > 0? size : ch.size() );
+        }
+    }
+
+    private static void checkHeader( ByteBuffer buf, long base, Path path ) {
+        if( buf.limit() < SEGMENT_HEADER_SIZE || buf.getInt( 0 ) != MAGIC
+                || buf.getInt( 4 ) != VERSION || buf.getLong( 8 ) != base ) {
+            throw new IllegalStateException( "not a journal segment: " + path );
+        }
+    }
+
+    /*
+     * Return position behind the last record of a segment that passes its checksum.
+     */
+    private static int endOfRecords( ByteBuffer buf ) {
+        final CRC32C crc = new CRC32C();
+        int pos = SEGMENT_HEADER_SIZE;
+        while( pos + RECORD_HEADER_SIZE <= buf.limit() ) {
+            final int length = buf.getInt( pos );
+            if( length <= 0 || length > buf.limit() - pos - RECORD_HEADER_SIZE ) {
+                break;
+            }
+            crc.reset();
+            crc.update( buf.slice( pos + RECORD_HEADER_SIZE, length ) );
+            if( (int)crc.getValue() != buf.getInt( pos + 4 ) ) {
+                break;
+            }
+            pos += RECORD_HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    private static void decode( ByteBuffer b, Replayer replayer ) {
+        final byte type = b.get();
+        switch( type ) {
+        case ARTICLE_CREATED:
+            replayer.articleCreated( getString( b ), getString( b ), b.getLong(), b.getInt(), TAX_CLASSES[ b.get() ] );
+            break;
+        case CUSTOMER_CREATED:
+            replayer.customerCreated( getString( b ), getString( b ), getString( b ) );
+            break;
+        case ORDER_ACCEPTED:
+            final long id = b.getLong();
+            final long date = b.getLong();
+            final String customerId = getString( b );
+            final int n = b.getInt();
+            final String[] descrs = new String[ n ];
+            final String[] articleIds = new String[ n ];
+            final int[] units = new int[ n ];
+            for( int i=0; i < n; i++ ) {
+                descrs[ i ] = getString( b );
+                articleIds[ i ] = getString( b );
+                units[ i ] = b.getInt();
+            }
+            replayer.orderAccepted( id, date, customerId, descrs, articleIds, units );
+            break;
+        case STOCK_RECEIVED:
+            replayer.stockReceived( getString( b ), b.getInt() );
+            break;
+        default:
+            throw new IllegalStateException( "unknown journal record type: " + type );
+        }
+    }
+
+    private static String getString( ByteBuffer b ) {
+        final int length = b.getInt();
+        if( length < 0 ) {
+            return null;
+        }
+        final byte[] bytes = new byte[ length ];
+        b.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /*
+     * Growable buffer in which a record (type and payload) is encoded.
+     */
+    private static final class Encoder {
+        private byte[] bytes = new byte[ 128 ];
+        private ByteBuffer buf = ByteBuffer.wrap( bytes );
+
+        Encoder( byte type ) {
+            buf.put( type );
+        }
+
+        int length() {
+            return buf.position();
+        }
+
+        void putByte( int v ) {
+            ensure( 1 ).put( (byte)v );
+        }
+
+        void putInt( int v ) {
+            ensure( 4 ).putInt( v );
+        }
+
+        void putLong( long v ) {
+            ensure( 8 ).putLong( v );
+        }
+
+        void putString( String s ) {
+            if( s == null ) {
+                putInt( -1 );
+            } else {
+                final byte[] b = s.getBytes( StandardCharsets.UTF_8 );
+                ensure( 4 + b.length ).putInt( b.length ).put( b );
+            }
+        }
+
+        private ByteBuffer ensure( int n ) {
+            if( buf.remaining() < n ) {
+                final int pos = buf.position();
+                bytes = Arrays.copyOf( bytes, Math.max( bytes.length << 1, pos + n ) );
+                buf = ByteBuffer.wrap( bytes ).position( pos );
+            }
+            return buf;
+        }
+    }
+}
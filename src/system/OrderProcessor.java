@@ -3,33 +3,662 @@ package system;
 import datamodel.Article;
 import datamodel.Order;
 import datamodel.OrderItem;
+import datamodel.TaxClass;
 
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 final class OrderProcessor implements Components.OrderProcessor, Components.InventoryManager {
 
+    /*
+     * Number of lock stripes guarding Article.unitsInStore (power of two).
+     * Articles are mapped to stripes by identity hash, orders for different
+     * articles therefore only contend on the rare stripe collision.
+     */
+    private static final int STOCK_LOCK_STRIPES = 1024;
+
+    /**
+     * Concurrency modes to update Article.unitsInStore when orders are accepted.
+     *
+     *  - LOCKING		; lock stripes of all articles in ascending order, then check and update
+     *  - OPTIMISTIC	; reserve units with compare-and-set, roll back if a later item fails
+     *  - RING		; publish demand to a ring buffer, a single writer thread checks and updates stock
+     */
+    enum StockMode { LOCKING, OPTIMISTIC, RING };
+
+    /*
+     * Maximum number of orders of a batch published to the ring buffer before
+     * their results are awaited (RING mode).
+     */
+    private static final int RING_BATCH_WINDOW = 64;
+
+    /*
+     * Fixed VAT tax rates in basis points indexed by rateIndex of
+     * vat( grossValue, rateIndex ): 1=19%, 2=7%.
+     */
+    private static final long[] RATE_INDEX_RATES = { 0L, 1900L, 700L };
+
+    private static final long BASIS_POINTS = 10000L;
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
     // Attribute:
-    private final InventoryManager inventoryManager;
+    private final Components.InventoryManager inventoryManager;
+
+    private final VatRateTable vatRateTable;
+
+    private final StockMode stockMode;
+
+    private final RoundingMode vatRounding;
+
+    private final ReentrantLock[] stockLocks;
+
+    private final StockRingBuffer stockRing;       // only in RING mode
+
+    private final OrderJournal journal;            // null without journal
+
+    private final Components.OrderRepository orderRepository;     // null without repository
 
     // Konstruktor in den Komponenten‐Klasse OrderProcessor:
-    public OrderProcessor(InventoryManager inventoryManager) {
-        this.inventoryManager = new InventoryManager();
+    public OrderProcessor(Components.InventoryManager inventoryManager) {
+        this(inventoryManager, StockMode.LOCKING);
+    }
+
+    public OrderProcessor(Components.InventoryManager inventoryManager, StockMode stockMode) {
+        this(inventoryManager, new VatRateTable(), stockMode, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Constructor with all options.
+     *
+     * @param inventoryManager inventory against which orders are accepted
+     * @param vatRateTable table to resolve VAT rates of tax classes
+     * @param stockMode concurrency mode to update stock
+     * @param vatRounding rounding of included VAT to cents, either HALF_UP
+     * (commercial rounding) or HALF_EVEN (banker's rounding)
+     */
+    public OrderProcessor(Components.InventoryManager inventoryManager, VatRateTable vatRateTable, StockMode stockMode, RoundingMode vatRounding) {
+        this(inventoryManager, vatRateTable, stockMode, vatRounding, null, null);
+    }
+
+    /**
+     * Constructor with journal in which accepted orders are recorded and repository
+     * in which they are stored. Consumers of accepted orders are invoked after the
+     * orders are committed to the journal. Rejected orders are not stored.
+     *
+     * @param inventoryManager inventory against which orders are accepted
+     * @param vatRateTable table to resolve VAT rates of tax classes
+     * @param stockMode concurrency mode to update stock
+     * @param vatRounding rounding of included VAT to cents
+     * @param journal order journal, null for none
+     * @param orderRepository repository to which accepted orders are added, null for none
+     */
+    OrderProcessor(Components.InventoryManager inventoryManager, VatRateTable vatRateTable, StockMode stockMode, RoundingMode vatRounding,
+            OrderJournal journal, Components.OrderRepository orderRepository) {
+        if (vatRounding != RoundingMode.HALF_UP && vatRounding != RoundingMode.HALF_EVEN) {
+            throw new IllegalArgumentException("unsupported VAT rounding: " + vatRounding);
+        }
+        this.inventoryManager = inventoryManager;
+        this.vatRateTable = vatRateTable;
+        this.stockMode = stockMode;
+        this.vatRounding = vatRounding;
+        this.stockLocks = new ReentrantLock[ STOCK_LOCK_STRIPES ];
+        for( int i=0; i < stockLocks.length; i++ ) {
+            stockLocks[ i ] = new ReentrantLock();
+        }
+        this.stockRing = stockMode == StockMode.RING?
+                new StockRingBuffer(StockRingBuffer.DEFAULT_CAPACITY, this::reserveSingleWriter) : null;
+        this.journal = journal;
+        this.orderRepository = orderRepository;
     }
 
     @Override
     public boolean accept(Order order) {
-        return false;
+        return accept(order, null, null, null);
     }
 
+    /**
+     * Accept order only if all(!) its OrderItems can be fulfilled. Units ordered
+     * of the same article in several items are added up before being checked
+     * against the article's unitsInStore. Stock is updated according to the
+     * StockMode of this OrderProcessor. Consumers are invoked after stock has
+     * been updated (and all locks have been released) and, with a journal, after
+     * the accepted order has been committed to the journal.
+     */
     @Override
     public boolean accept(Order order, Consumer<Order> acceptCode, Consumer<Order> rejectCode, Consumer<OrderItem> rejectedOrderItemCode) {
+        if (order == null) {
+            return false;
+        }
+        final Map<Article, long[]> demand = demandOf(order);
+        final Map<Article, Boolean> shortage;
+        long lsn = -1L;
+        enterGate();
+        try {
+            switch (stockMode) {
+            case OPTIMISTIC:
+                shortage = reserveOptimistic(demand);
+                break;
+            case RING:
+                shortage = stockRing.await(stockRing.publish(demand));
+                break;
+            default:
+                shortage = reserveLocking(demand);
+                break;
+            }
+            if (shortage == null) {
+                lsn = accepted(order);
+            }
+        } finally {
+            exitGate();
+        }
+        commit(lsn);
+        return notify(order, shortage, acceptCode, rejectCode, rejectedOrderItemCode);
+    }
+
+    /**
+     * Accept a batch of orders with one inventory pass. Units ordered are grouped
+     * per article over the whole batch and each order is validated against a
+     * snapshot of the batch's articles, reduced by orders accepted earlier in the
+     * batch. Stock of each article is then updated once.
+     *
+     * In LOCKING mode, the lock stripes of all articles of the batch are acquired
+     * once (in ascending order) for snapshot, validation and update. In both modes,
+     * the units taken by the batch are reserved per article with tryReserve(); if
+     * stock has changed concurrently (in LOCKING mode, outside the lock stripes) so
+     * that an article cannot be reserved, all batch reservations are released and
+     * orders are accepted one-by-one instead.
+     * In RING mode, orders are published to the ring buffer in windows of up to
+     * RING_BATCH_WINDOW orders, the writer thread processes them in batch order.
+     */
+    @Override
+    public int acceptAll(Collection<Order> orders, Consumer<Order> acceptCode, Consumer<Order> rejectCode, Consumer<OrderItem> rejectedOrderItemCode) {
+        if (orders == null || orders.isEmpty()) {
+            return 0;
+        }
+        if (stockMode == StockMode.RING) {
+            return acceptAllSingleWriter(orders, acceptCode, rejectCode, rejectedOrderItemCode);
+        }
+        final List<Order> batch = new ArrayList<Order>(orders.size());
+        final List<Map<Article, long[]>> demands = new ArrayList<Map<Article, long[]>>(orders.size());
+        // stock per article of the batch: [0] units in store at snapshot (-1 if not in inventory), [1] units taken
+        final Map<Article, long[]> stock = new IdentityHashMap<Article, long[]>();
+        for (Order order : orders) {
+            if (order != null) {
+                Map<Article, long[]> demand = demandOf(order);
+                batch.add(order);
+                demands.add(demand);
+                for (Article article : demand.keySet()) {
+                    stock.computeIfAbsent(article, a -> new long[2]);
+                }
+            }
+        }
+        final List<Map<Article, Boolean>> shortages;
+        long lsn = -1L;
+        enterGate();
+        try {
+            shortages = reserveBatch(demands, stock);
+            lsn = accepted(batch, shortages);
+        } finally {
+            exitGate();
+        }
+        commit(lsn);
+        int accepted = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (notify(batch.get(i), shortages.get(i), acceptCode, rejectCode, rejectedOrderItemCode)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Validate orders of a batch against stock and update stock of each article
+     * once, according to the StockMode (LOCKING or OPTIMISTIC).
+     *
+     * @param demands units ordered per article for each order of the batch
+     * @param stock per article of the batch: snapshot and units taken
+     * @return per order, null if accepted or articles that are short
+     */
+    private List<Map<Article, Boolean>> reserveBatch(List<Map<Article, long[]>> demands, Map<Article, long[]> stock) {
+        List<Map<Article, Boolean>> shortages;
+        boolean reserved;
+        if (stockMode == StockMode.OPTIMISTIC) {
+            snapshot(stock);
+            shortages = allocate(demands, stock);
+            reserved = reserveAll(stock);
+        } else {
+            final int[] stripes = stripesOf(stock.keySet());
+            for (int i = 0; i < stripes.length; i++) {
+                stockLocks[stripes[i]].lock();
+            }
+            try {
+                snapshot(stock);
+                shortages = allocate(demands, stock);
+                reserved = reserveAll(stock);     // fails only if stock was changed outside the lock stripes
+            } finally {
+                for (int i = stripes.length; --i >= 0; ) {
+                    stockLocks[stripes[i]].unlock();
+                }
+            }
+        }
+        if (!reserved) {
+            shortages.clear();
+            for (Map<Article, long[]> demand : demands) {
+                shortages.add(stockMode == StockMode.OPTIMISTIC? reserveOptimistic(demand) : reserveLocking(demand));
+            }
+        }
+        return shortages;
+    }
+
+    private int acceptAllSingleWriter(Collection<Order> orders, Consumer<Order> acceptCode, Consumer<Order> rejectCode, Consumer<OrderItem> rejectedOrderItemCode) {
+        final Order[] window = new Order[RING_BATCH_WINDOW];
+        final StockRingBuffer.Request[] requests = new StockRingBuffer.Request[RING_BATCH_WINDOW];
+        final List<Map<Article, Boolean>> shortages = new ArrayList<Map<Article, Boolean>>(RING_BATCH_WINDOW);
+        int accepted = 0;
+        for (Iterator<Order> it = orders.iterator(); it.hasNext(); ) {
+            int n = 0;
+            long lsn = -1L;
+            enterGate();
+            try {
+                while (n < window.length && it.hasNext()) {
+                    Order order = it.next();
+                    if (order != null) {
+                        window[n] = order;
+                        requests[n++] = stockRing.publish(demandOf(order));
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    shortages.add(stockRing.await(requests[i]));
+                    requests[i] = null;
+                }
+                lsn = accepted(Arrays.asList(window).subList(0, n), shortages);
+            } finally {
+                exitGate();
+            }
+            commit(lsn);
+            for (int i = 0; i < n; i++) {
+                if (notify(window[i], shortages.get(i), acceptCode, rejectCode, rejectedOrderItemCode)) {
+                    accepted++;
+                }
+                window[i] = null;
+            }
+            shortages.clear();
+        }
+        return accepted;
+    }
+
+    /**
+     * Add accepted orders of a batch to the repository and append them to the
+     * journal, where they are then committed at once (one group commit for the batch).
+     *
+     * @param batch orders of a batch
+     * @param shortages per order, null if accepted
+     * @return LSN at the end of the last order appended, -1 if none
+     */
+    private long accepted(List<Order> batch, List<Map<Article, Boolean>> shortages) {
+        long lsn = -1L;
+        for (int i = 0; i < batch.size(); i++) {
+            if (shortages.get(i) == null) {
+                lsn = accepted(batch.get(i));
+            }
+        }
+        return lsn;
+    }
+
+    /**
+     * Add an accepted order to the repository and append it to the journal. Called
+     * inside the journal's gate, together with the stock changes of the order.
+     *
+     * @param order accepted order
+     * @return LSN at the end of the order's record, -1 without journal
+     */
+    private long accepted(Order order) {
+        if (journal != null) {
+            journal.gate().orderAccepted(order);
+        }
+        if (orderRepository != null) {
+            orderRepository.add(order);
+        }
+        return journal == null? -1L : journal.orderAccepted(order);
+    }
+
+    /**
+     * Commit journal records up to lsn, see OrderJournal.commit().
+     */
+    private void commit(long lsn) {
+        if (lsn >= 0L) {
+            journal.commit(lsn);
+        }
+    }
+
+    /**
+     * Enter the journal's gate before stock is changed, such that changes and
+     * their journal records are on the same side of a snapshot cut.
+     */
+    private void enterGate() {
+        if (journal != null) {
+            journal.gate().enter();
+        }
+    }
+
+    private void exitGate() {
+        if (journal != null) {
+            journal.gate().exit();
+        }
+    }
+
+    /**
+     * Preserve units in store of an article for a snapshot in progress before
+     * they are changed, see JournalGate.beforeStockChange().
+     */
+    private void beforeStockChange(Article article) {
+        if (journal != null) {
+            journal.gate().beforeStockChange(article);
+        }
+    }
+
+    /**
+     * Record units in store of all articles of a batch, -1 for articles not in inventory.
+     */
+    private void snapshot(Map<Article, long[]> stock) {
+        for (Map.Entry<Article, long[]> e : stock.entrySet()) {
+            Article article = e.getKey();
+            e.getValue()[0] = inventoryManager.containsArticle(article.getId())? article.getUnitsInStore() : -1;
+        }
+    }
+
+    /**
+     * Validate orders of a batch in order against the stock snapshot and add
+     * units of accepted orders to units taken.
+     *
+     * @param demands units ordered per article for each order of the batch
+     * @param stock snapshot and units taken per article
+     * @return per order, null if accepted or articles that are short
+     */
+    private List<Map<Article, Boolean>> allocate(List<Map<Article, long[]>> demands, Map<Article, long[]> stock) {
+        final List<Map<Article, Boolean>> shortages = new ArrayList<Map<Article, Boolean>>(demands.size());
+        for (Map<Article, long[]> demand : demands) {
+            Map<Article, Boolean> shortage = null;
+            for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+                long[] units = stock.get(e.getKey());
+                if (units[0] < 0 || e.getValue()[0] > units[0] - units[1]) {
+                    if (shortage == null) {
+                        shortage = new IdentityHashMap<Article, Boolean>();
+                    }
+                    shortage.put(e.getKey(), Boolean.TRUE);
+                }
+            }
+            if (shortage == null) {
+                for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+                    stock.get(e.getKey())[1] += e.getValue()[0];
+                }
+            }
+            shortages.add(shortage);
+        }
+        return shortages;
+    }
+
+    /**
+     * Reserve units taken by a batch per article with tryReserve(). Either all
+     * or no units are reserved.
+     *
+     * @param stock snapshot and units taken per article
+     * @return true, if units taken of all articles were reserved
+     */
+    private boolean reserveAll(Map<Article, long[]> stock) {
+        final Article[] reserved = new Article[stock.size()];
+        int n = 0;
+        for (Map.Entry<Article, long[]> e : stock.entrySet()) {
+            long taken = e.getValue()[1];
+            if (taken > 0) {
+                beforeStockChange(e.getKey());
+                if (!e.getKey().tryReserve((int) taken)) {
+                    while (--n >= 0) {
+                        reserved[n].release((int) stock.get(reserved[n])[1]);
+                    }
+                    return false;
+                }
+                reserved[n++] = e.getKey();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invoke consumers for an order that was accepted (shortage is null) or rejected.
+     *
+     * @return true, if order was accepted
+     */
+    private boolean notify(Order order, Map<Article, Boolean> shortage,
+            Consumer<Order> acceptCode, Consumer<Order> rejectCode, Consumer<OrderItem> rejectedOrderItemCode) {
+        if (shortage == null) {
+            if (acceptCode != null) {
+                acceptCode.accept(order);
+            }
+            return true;
+        }
+        if (rejectedOrderItemCode != null) {
+            for (OrderItem item : order.getItems()) {
+                if (shortage.containsKey(item.getArticle())) {
+                    rejectedOrderItemCode.accept(item);
+                }
+            }
+        }
+        if (rejectCode != null) {
+            rejectCode.accept(order);
+        }
         return false;
     }
 
+    /**
+     * Reserve demand under lock stripes. The lock stripes of all articles are
+     * acquired in ascending stripe order, which rules out deadlocks between orders
+     * that share articles without resorting to a global lock.
+     *
+     * @param demand units ordered per article
+     * @return null, if all units were reserved, articles that are short otherwise
+     */
+    private Map<Article, Boolean> reserveLocking(Map<Article, long[]> demand) {
+        final int[] stripes = stripesOf(demand.keySet());
+        boolean accepted = true;
+        Map<Article, Boolean> shortage = null;
+
+        for (int i = 0; i < stripes.length; i++) {
+            stockLocks[stripes[i]].lock();
+        }
+        try {
+            for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+                if (!canFulfill(e.getKey(), e.getValue()[0])) {
+                    if (shortage == null) {
+                        shortage = new IdentityHashMap<Article, Boolean>();
+                    }
+                    shortage.put(e.getKey(), Boolean.TRUE);
+                    accepted = false;
+                }
+            }
+            if (accepted) {
+                shortage = reserveChecked(demand);
+            }
+        } finally {
+            for (int i = stripes.length; --i >= 0; ) {
+                stockLocks[stripes[i]].unlock();
+            }
+        }
+        return shortage;
+    }
+
+    /**
+     * Check and update stock of demand in the writer thread of the ring buffer
+     * (RING mode), which is the only thread updating stock. No locks are needed.
+     *
+     * @param demand units ordered per article
+     * @return null, if all units were reserved, articles that are short otherwise
+     */
+    private Map<Article, Boolean> reserveSingleWriter(Map<Article, long[]> demand) {
+        Map<Article, Boolean> shortage = null;
+        for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+            if (!canFulfill(e.getKey(), e.getValue()[0])) {
+                if (shortage == null) {
+                    shortage = new IdentityHashMap<Article, Boolean>();
+                }
+                shortage.put(e.getKey(), Boolean.TRUE);
+            }
+        }
+        if (shortage == null) {
+            shortage = reserveChecked(demand);
+        }
+        return shortage;
+    }
+
+    /**
+     * Reserve demand that has been checked with canFulfill(). Reservations are
+     * atomic with restock(), but stock may still have been changed outside the
+     * lock stripes (or the writer thread) since the check, e.g. by
+     * setUnitsInStore(). If an article can no longer be reserved, reservations
+     * made so far are released and the article is reported short.
+     *
+     * @param demand units ordered per article, checked against stock
+     * @return null, if all units were reserved, the article that is short otherwise
+     */
+    private Map<Article, Boolean> reserveChecked(Map<Article, long[]> demand) {
+        final Article[] reserved = new Article[demand.size()];
+        int n = 0;
+        for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+            beforeStockChange(e.getKey());
+            if (!e.getKey().tryReserve((int) e.getValue()[0])) {
+                while (--n >= 0) {
+                    reserved[n].release((int) demand.get(reserved[n])[0]);
+                }
+                final Map<Article, Boolean> shortage = new IdentityHashMap<Article, Boolean>();
+                shortage.put(e.getKey(), Boolean.TRUE);
+                return shortage;
+            }
+            reserved[n++] = e.getKey();
+        }
+        return null;
+    }
+
+    /**
+     * Stop the writer thread of the ring buffer in RING mode.
+     */
+    void close() {
+        if (stockRing != null) {
+            stockRing.close();
+        }
+    }
+
+    /**
+     * Reserve demand lock-free with Article.tryReserve(), which retries a
+     * compare-and-set until it succeeds or the article runs short. When an
+     * article cannot be reserved, all reservations made so far for the order
+     * are released again. Remaining articles are only checked (not reserved)
+     * to report all articles that are short.
+     *
+     * @param demand units ordered per article
+     * @return null, if all units were reserved, articles that are short otherwise
+     */
+    private Map<Article, Boolean> reserveOptimistic(Map<Article, long[]> demand) {
+        final Article[] reserved = new Article[demand.size()];
+        int n = 0;
+        Map<Article, Boolean> shortage = null;
+        for (Map.Entry<Article, long[]> e : demand.entrySet()) {
+            Article article = e.getKey();
+            long units = e.getValue()[0];
+            boolean available = inventoryManager.containsArticle(article.getId()) && units <= Integer.MAX_VALUE;
+            if (shortage == null) {
+                beforeStockChange(article);
+                if (available && article.tryReserve((int) units)) {
+                    reserved[n++] = article;
+                    continue;
+                }
+            } else if (available && units <= article.getUnitsInStore()) {
+                continue;
+            }
+            if (shortage == null) {
+                shortage = new IdentityHashMap<Article, Boolean>();
+            }
+            shortage.put(article, Boolean.TRUE);
+        }
+        if (shortage != null) {
+            while (--n >= 0) {
+                reserved[n].release((int) demand.get(reserved[n])[0]);
+            }
+        }
+        return shortage;
+    }
+
+    /**
+     * Add up units ordered per article over all items of an order.
+     *
+     * @param order order whose items are grouped
+     * @return units ordered per article (identity-keyed)
+     */
+    private Map<Article, long[]> demandOf(Order order) {
+        final Map<Article, long[]> demand = new IdentityHashMap<Article, long[]>();
+        for (OrderItem item : order.getItems()) {
+            Article article = item.getArticle();
+            if (article != null) {
+                demand.computeIfAbsent(article, a -> new long[1])[0] += item.getUnitsOrdered();
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Return the distinct lock stripes of articles in ascending order, which is
+     * the order in which stripes must be locked.
+     *
+     * @param articles articles to map to lock stripes
+     * @return sorted, distinct stripe indexes
+     */
+    private int[] stripesOf(Iterable<Article> articles) {
+        int[] stripes = new int[8];
+        int n = 0;
+        for (Article article : articles) {
+            if (n == stripes.length) {
+                stripes = Arrays.copyOf(stripes, n << 1);
+            }
+            stripes[n++] = stripeOf(article);
+        }
+        Arrays.sort(stripes, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+                stripes[distinct++] = stripes[i];
+            }
+        }
+        return Arrays.copyOf(stripes, distinct);
+    }
+
+    private static int stripeOf(Article article) {
+        int h = System.identityHashCode(article);
+        return (h ^ (h >>> 16)) & (STOCK_LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Test whether article is in inventory and has enough units in store. Must
+     * be called with the article's lock stripe held (or by the ring buffer's
+     * writer thread).
+     */
+    private boolean canFulfill(Article article, long units) {
+        return inventoryManager.containsArticle(article.getId())
+                && units <= article.getUnitsInStore();
+    }
+
     @Override
     public long orderValue(Order order) {
-        return 0;
+        return order == null? 0L : order.getValue();    // running total maintained by Order
     }
 
     @Override
@@ -37,50 +666,146 @@ final class OrderProcessor implements Components.OrderProcessor, Components.Inve
         return vat(grossValue, 1);
     }
 
+    /**
+     * Calculate VAT included in grossValue exactly in integer arithmetic as
+     * grossValue * rate / (100% + rate), rounded to cents according to the
+     * configured vatRounding. rateIndex 1 refers to the fixed rate of 19%, 2 to
+     * 7%, independent of the date and of the VatRateTable (use vat( grossValue,
+     * taxClass, date ) for rates effective at a date). Unknown rateIndexes yield 0.
+     */
     @Override
     public long vat(long grossValue, int rateIndex) {
-        double steuern = 0;
-        if (rateIndex==1) { // rateIndex: 1 as default (19% MwSt)
-            steuern = 1.19;
-        } else if (rateIndex==2){
-            steuern = 1.07;
+        if (rateIndex < 1 || rateIndex >= RATE_INDEX_RATES.length) {
+            return 0L;
+        }
+        return includedVat(grossValue, RATE_INDEX_RATES[rateIndex], vatRounding);
+    }
+
+    @Override
+    public long vat(long grossValue, TaxClass taxClass, Date date) {
+        return vat(grossValue, taxClass, date == null? System.currentTimeMillis() : date.getTime());
+    }
+
+    /**
+     * Calculate included VAT of an order from its value per tax class (maintained
+     * by Order), O(number of tax classes) regardless of the number of items.
+     */
+    @Override
+    public long vat(Order order) {
+        long vat = 0L;
+        if (order != null) {
+            final long time = order.getDate().getTime();
+            for (TaxClass taxClass : TAX_CLASSES) {
+                final long value = order.getValue(taxClass);
+                if (value != 0L) {
+                    vat += vat(value, taxClass, time);
+                }
+            }
+        }
+        return vat;
+    }
+
+    /**
+     * Calculate included VAT at the rate of a tax class effective at a time in
+     * milliseconds.
+     */
+    long vat(long grossValue, TaxClass taxClass, long time) {
+        return includedVat(grossValue, vatRateTable.rate(taxClass, time), vatRounding);
+    }
+
+    /**
+     * Return the VatRateTable used to resolve tax rates.
+     */
+    VatRateTable getVatRateTable() {
+        return vatRateTable;
+    }
+
+    /**
+     * Return the rounding of included VAT to cents.
+     */
+    RoundingMode getVatRounding() {
+        return vatRounding;
+    }
+
+    /**
+     * Calculate VAT included in a gross value without allocation or floating point.
+     * grossValue is split into grossValue = a * d + b with d = 100% + rate such that
+     * grossValue * rate / d = a * rate + b * rate / d, which cannot overflow.
+     *
+     * @param grossValue value in cents of which included VAT is calculated
+     * @param rate VAT tax rate in basis points, e.g. 1900 for 19%
+     * @param rounding HALF_UP or HALF_EVEN
+     * @return included VAT in cents
+     */
+    static long includedVat(long grossValue, long rate, RoundingMode rounding) {
+        final long d = BASIS_POINTS + rate;
+        final long b = grossValue % d;      // same sign as grossValue
+        long vat = (grossValue / d) * rate + (b * rate) / d;
+        final long rem = Math.abs((b * rate) % d);
+        if (rem > 0) {
+            long twice = rem << 1;
+            if (twice > d || (twice == d && (rounding == RoundingMode.HALF_UP || (vat & 1L) != 0))) {
+                vat += grossValue < 0? -1 : 1;
+            }
         }
-        System.out.println((grossValue - grossValue / steuern));
-        return Math.round(grossValue - grossValue / steuern);
+        return vat;
     }
 
     @Override
     public boolean containsArticle(String id) {
-        return false;
+        return inventoryManager.containsArticle(id);
     }
 
     @Override
     public Iterable<Article> getInventory() {
-        return null;
+        return inventoryManager.getInventory();
     }
 
     @Override
     public Optional<Article> get(String id) {
-        return Optional.empty();
+        return inventoryManager.get(id);
     }
 
     @Override
     public long count() {
-        return 0;
+        return inventoryManager.count();
+    }
+
+    @Override
+    public Article createArticle(String id, String descr, long price, int units) {
+        return inventoryManager.createArticle(id, descr, price, units);
     }
 
     @Override
     public Components.InventoryManager add(Article article) {
-        return null;
+        inventoryManager.add(article);
+        return this;
     }
 
     @Override
     public Components.InventoryManager remove(Article article) {
-        return null;
+        inventoryManager.remove(article);
+        return this;
     }
 
     @Override
-    public void clear() {
+    public Components.InventoryManager restock(Article article, int units) {
+        inventoryManager.restock(article, units);
+        return this;
+    }
 
+    @Override
+    public long stockValue() {
+        return inventoryManager.stockValue();
+    }
+
+    @Override
+    public long countBelow(int threshold) {
+        return inventoryManager.countBelow(threshold);
+    }
+
+    @Override
+    public void clear() {
+        inventoryManager.clear();
     }
 }
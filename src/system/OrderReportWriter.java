@@ -0,0 +1,336 @@
+package system;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+import datamodel.TaxClass;
+
+
+/**
+ * Streaming writer of the order report produced by OutputProcessor.printOrders().
+ * Each order is laid out by a reusable LineLayout with fixed column widths and
+ * written to the output before the next order is formatted. Only totals are kept
+ * across orders such that memory use is constant regardless of the number of orders.
+ *
+ * A writer instance is not thread-safe, it is intended to be used for one report.
+ * writeParallel() formats chunks of orders concurrently by separate writers.
+ *
+ */
+final class OrderReportWriter {
+
+    /*
+     * Width of report lines.
+     */
+    static final int PRINT_LINE_WIDTH = 84;
+
+    /*
+     * Width of price columns.
+     */
+    static final int PRICE_WIDTH = 14;
+
+    /*
+     * Number of orders formatted by one task of writeParallel().
+     */
+    static final int CHUNK_SIZE = 512;
+
+    private static final TaxClass[] TAX_CLASSES = TaxClass.values();
+
+    // Attribute:
+    private final OutputProcessor outputProcessor;
+
+    private final OrderProcessor orderProcessor;
+
+    private final boolean printVAT;
+
+    private final LineLayout line = new LineLayout( PRINT_LINE_WIDTH );
+
+    private long total = 0L;
+
+    // included VAT summed up per tax rate (in basis points), in order of appearance
+    private int[] vatRates = new int[ 2 ];
+
+    private long[] vats = new long[ 2 ];
+
+    private int vatRatesCount = 0;
+
+
+    OrderReportWriter( OutputProcessor outputProcessor, OrderProcessor orderProcessor, boolean printVAT ) {
+        this.outputProcessor = outputProcessor;
+        this.orderProcessor = orderProcessor;
+        this.printVAT = printVAT;
+    }
+
+    /**
+     * Write complete report with header line, one line per order and totals.
+     *
+     * @param orders orders to report, iterated once
+     * @param out output to which report lines are written
+     * @throws IOException when writing to out fails
+     */
+    void write( Iterable<Order> orders, Appendable out ) throws IOException {
+        writeHeader( out );
+        for( Order order : orders ) {
+            writeOrder( order, out );
+        }
+        writeTotals( out );
+    }
+
+    /**
+     * Write complete report like write() with orders formatted in parallel. The
+     * list is split into chunks of CHUNK_SIZE orders, each formatted by its own
+     * writer into a StringBuilder in a fork/join pool. Chunks are written to out
+     * and their totals are merged in list order, such that output and (exact long)
+     * totals equal those of write(). At most two chunks per pool thread are in
+     * flight, which bounds memory use regardless of the number of orders.
+     *
+     * @param orders orders to report
+     * @param out output to which report lines are written
+     * @param pool fork/join pool in which chunks are formatted
+     * @throws IOException when writing to out fails
+     */
+    void writeParallel( List<Order> orders, Appendable out, ForkJoinPool pool ) throws IOException {
+        final Order[] all = orders.toArray( new Order[ orders.size() ] );
+        final int maxInFlight = Math.max( 2, pool.getParallelism() * 2 );
+        final ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<ForkJoinTask<Chunk>>( maxInFlight );
+        final char[] scratch = new char[ 1 << 13 ];
+        writeHeader( out );
+        try {
+            int next = 0;
+            while( next < all.length || ! inFlight.isEmpty() ) {
+                while( next < all.length && inFlight.size() < maxInFlight ) {
+                    final int from = next;
+                    final int to = Math.min( all.length, from + CHUNK_SIZE );
+                    inFlight.add( pool.submit( () -> formatChunk( all, from, to ) ) );
+                    next = to;
+                }
+                final Chunk chunk = inFlight.poll().join();
+                chunk.writeTo( out, scratch );
+                merge( chunk.writer );
+            }
+        } finally {
+            for( ForkJoinTask<Chunk> task : inFlight ) {
+                task.cancel( false );
+            }
+        }
+        writeTotals( out );
+    }
+
+    void writeHeader( Appendable out ) throws IOException {
+        out.append( "-------------" ).append( '\n' );
+    }
+
+    /**
+     * Format one order to a report line, write it to out and add its value and
+     * included VAT to the totals. VAT is calculated from the order's values per
+     * tax class, items are only visited to format their descriptions.
+     *
+     * @param order order to report
+     * @param out output to which the line is written
+     * @throws IOException when writing to out fails
+     */
+    void writeOrder( Order order, Appendable out ) throws IOException {
+        final long value = order.getValue();        // running totals maintained by Order
+        Customer customer = order.getCustomer();
+        line.clear().left( '#' ).left( order.getId() ).left( ", " )
+            .left( customer.getLastName() ).left( ", " ).left( customer.getFirstName() ).left( "'s Bestellung:" );
+
+        for( OrderItem item : order.getItems() ) {
+            line.left( ' ' ).left( item.getUnitsOrdered() ).left( "x " ).left( item.getDescription() );
+        }
+        total += value;
+        line.rightPrice( value, "EUR", PRICE_WIDTH ).layout().writeTo( out );
+        out.append( '\n' );
+
+        if( printVAT ) {
+            final long time = order.getDate().getTime();
+            for( TaxClass taxClass : TAX_CLASSES ) {
+                final long classValue = order.getValue( taxClass );
+                if( classValue != 0L ) {
+                    final int rate = orderProcessor.getVatRateTable().rate( taxClass, time );
+                    addVat( rate, orderProcessor.vat( classValue, taxClass, time ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Write lines with total value of all orders and included VAT per tax rate.
+     *
+     * @param out output to which lines are written
+     * @throws IOException when writing to out fails
+     */
+    void writeTotals( Appendable out ) throws IOException {
+        line.clear().left( "-------------" ).right( "------------- -------------" ).layout().writeTo( out );
+        out.append( '\n' );
+        line.clear().left( "Gesamtwert aller Bestellungen:" ).rightPrice( total, "EUR", PRICE_WIDTH ).layout().writeTo( out );
+        out.append( '\n' );
+
+        if( printVAT ) {
+            for( int r=0; r < vatRatesCount; r++ ) {
+                line.clear().left( "Im Gesamtbetrag enthaltene Mehrwertsteuer (" )
+                    .left( outputProcessor.fmtRate( vatRates[ r ] ) ).left( "):" )
+                    .rightPrice( vats[ r ], "EUR", PRICE_WIDTH ).layout().writeTo( out );
+                out.append( '\n' );
+            }
+        }
+    }
+
+    /*
+     * Format orders[from, to) by a new writer into a StringBuilder.
+     */
+    private Chunk formatChunk( Order[] orders, int from, int to ) throws IOException {
+        final Chunk chunk = new Chunk( new OrderReportWriter( outputProcessor, orderProcessor, printVAT ),
+            new StringBuilder( ( to - from ) * ( PRINT_LINE_WIDTH + 1 ) ) );
+        for( int i=from; i < to; i++ ) {
+            chunk.writer.writeOrder( orders[ i ], chunk.text );
+        }
+        return chunk;
+    }
+
+    /*
+     * Add totals of another writer, VAT rates in order of their appearance.
+     */
+    private void merge( OrderReportWriter other ) {
+        total += other.total;
+        for( int r=0; r < other.vatRatesCount; r++ ) {
+            addVat( other.vatRates[ r ], other.vats[ r ] );
+        }
+    }
+
+    private void addVat( int rate, long vat ) {
+        int r = 0;
+        while( r < vatRatesCount && vatRates[ r ] != rate ) {
+            r++;
+        }
+        if( r == vatRatesCount ) {
+            if( r == vatRates.length ) {
+                vatRates = Arrays.copyOf( vatRates, r << 1 );
+                vats = Arrays.copyOf( vats, r << 1 );
+            }
+            vatRates[ r ] = rate;
+            vatRatesCount++;
+        }
+        vats[ r ] += vat;
+    }
+
+
+    /*
+     * Formatted lines of a chunk of orders with the writer holding their totals.
+     */
+    private static final class Chunk {
+        final OrderReportWriter writer;
+        final StringBuilder text;
+
+        Chunk( OrderReportWriter writer, StringBuilder text ) {
+            this.writer = writer;
+            this.text = text;
+        }
+
+        void writeTo( Appendable out, char[] scratch ) throws IOException {
+            if( out instanceof Writer ) {
+                for( int i=0; i < text.length(); i += scratch.length ) {
+                    final int n = Math.min( scratch.length, text.length() - i );
+                    text.getChars( i, i + n, scratch, 0 );
+                    ( (Writer) out ).write( scratch, 0, n );
+                }
+            } else {
+                out.append( text );
+            }
+        }
+    }
+
+
+    /**
+     * Appendable that encodes characters to UTF-8 through reusable buffers
+     * and writes them to a WritableByteChannel. flush() must be called after
+     * the last append().
+     *
+     */
+    static final class ChannelAppendable implements Appendable, Flushable {
+
+        private final WritableByteChannel channel;
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput( CodingErrorAction.REPLACE )
+            .onUnmappableCharacter( CodingErrorAction.REPLACE );
+
+        private final CharBuffer chars;
+
+        private final ByteBuffer bytes;
+
+        ChannelAppendable( WritableByteChannel channel, int bufferSize ) {
+            this.channel = channel;
+            this.chars = CharBuffer.allocate( bufferSize );
+            this.bytes = ByteBuffer.allocateDirect( bufferSize * 3 );
+        }
+
+        @Override
+        public Appendable append( CharSequence csq ) throws IOException {
+            return append( csq, 0, csq.length() );
+        }
+
+        @Override
+        public Appendable append( CharSequence csq, int start, int end ) throws IOException {
+            for( int i=start; i < end; i++ ) {
+                if( ! chars.hasRemaining() ) {
+                    drain( false );
+                }
+                chars.put( csq.charAt( i ) );
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append( char c ) throws IOException {
+            if( ! chars.hasRemaining() ) {
+                drain( false );
+            }
+            chars.put( c );
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain( true );
+        }
+
+        /*
+         * Encode buffered chars and write encoded bytes to the channel. A trailing
+         * high surrogate is kept in the char buffer unless endOfInput is set.
+         */
+        private void drain( boolean endOfInput ) throws IOException {
+            chars.flip();
+            CoderResult cr = encoder.encode( chars, bytes, endOfInput );
+            if( endOfInput && cr.isUnderflow() ) {
+                cr = encoder.flush( bytes );
+                encoder.reset();
+            }
+            if( cr.isError() ) {
+                throw new CharacterCodingException();
+            }
+            chars.compact();
+            bytes.flip();
+            while( bytes.hasRemaining() ) {
+                channel.write( bytes );
+            }
+            bytes.clear();
+        }
+    }
+}
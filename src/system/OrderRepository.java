@@ -0,0 +1,249 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * Implementation class of the OrderRepository interface. Orders are stored in
+ * SEGMENTS primitive LongObjectMaps indexed by order id, each guarded by its own
+ * StampedLock. Lookups by id are optimistic reads that do not write shared state
+ * and only fall back to a read lock when a concurrent update was detected. Order
+ * ids are neither boxed nor wrapped in entry objects.
+ *
+ * Secondary indexes hold orders in buckets (growable arrays):
+ *  - by date in buckets of one hour in a ConcurrentSkipListMap, a date range
+ *    scan visits only buckets overlapping the range,
+ *  - by customer in a ConcurrentHashMap keyed by Customer object.
+ *
+ * Results of scans are weakly consistent, orders added or removed during a scan
+ * may or may not be included.
+ *
+ */
+final class OrderRepository implements Components.OrderRepository {
+
+    /*
+     * Number of segments of the id index (power of 2).
+     */
+    static final int SEGMENTS = 64;
+
+    /*
+     * Time span of date index buckets in milliseconds.
+     */
+    static final long DATE_BUCKET_MILLIS = 60L * 60L * 1000L;
+
+    private static final Comparator<Order> BY_DATE =
+        Comparator.comparingLong( ( Order o ) -> o.getDate().getTime() ).thenComparingLong( Order::getId );
+
+    // Attribute:
+    private final LongObjectMap<Order>[] segments;
+
+    private final StampedLock[] locks;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final ConcurrentSkipListMap<Long, Bucket> byDate = new ConcurrentSkipListMap<Long, Bucket>();
+
+    private final ConcurrentHashMap<Customer, Bucket> byCustomer = new ConcurrentHashMap<Customer, Bucket>();
+
+
+    /*
+     * Growable array of orders of a secondary index entry.
+     */
+    private static final class Bucket {
+        private Order[] orders = new Order[ 4 ];
+        private int size = 0;
+
+        synchronized void add( Order order ) {
+            if( size == orders.length ) {
+                orders = Arrays.copyOf( orders, size << 1 );
+            }
+            orders[ size++ ] = order;
+        }
+
+        synchronized void remove( Order order ) {
+            for( int i=0; i < size; i++ ) {
+                if( orders[ i ] == order ) {
+                    System.arraycopy( orders, i + 1, orders, i, size - i - 1 );
+                    orders[ --size ] = null;
+                    return;
+                }
+            }
+        }
+
+        synchronized void copyTo( List<Order> list, long from, long to ) {
+            for( int i=0; i < size; i++ ) {
+                long t = orders[ i ].getDate().getTime();
+                if( t >= from && t < to ) {
+                    list.add( orders[ i ] );
+                }
+            }
+        }
+    }
+
+
+    // Konstruktor in den Komponenten‐Klasse OrderRepository:
+    public OrderRepository() {
+        @SuppressWarnings("unchecked")
+        final LongObjectMap<Order>[] segments = (LongObjectMap<Order>[])new LongObjectMap<?>[ SEGMENTS ];
+        this.segments = segments;
+        this.locks = new StampedLock[ SEGMENTS ];
+        for( int s=0; s < SEGMENTS; s++ ) {
+            segments[ s ] = new LongObjectMap<Order>( 64 );
+            locks[ s ] = new StampedLock();
+        }
+    }
+
+    @Override
+    public boolean contains( long id ) {
+        return find( id ) != null;
+    }
+
+    @Override
+    public Optional<Order> get( long id ) {
+        return Optional.ofNullable( find( id ) );
+    }
+
+    @Override
+    public List<Order> findByDate( Date from, Date to ) {
+        final long f = from == null? Long.MIN_VALUE : from.getTime();
+        final long t = to == null? Long.MAX_VALUE : to.getTime();
+        final List<Order> result = new ArrayList<Order>();
+        if( f < t ) {
+            for( Bucket bucket : byDate.subMap( bucketOf( f ), true, bucketOf( t - 1 ), true ).values() ) {
+                bucket.copyTo( result, f, t );
+            }
+            result.sort( BY_DATE );
+        }
+        return result;
+    }
+
+    @Override
+    public List<Order> findByCustomer( Customer customer ) {
+        final List<Order> result = new ArrayList<Order>();
+        final Bucket bucket = customer == null? null : byCustomer.get( customer );
+        if( bucket != null ) {
+            bucket.copyTo( result, Long.MIN_VALUE, Long.MAX_VALUE );
+            result.sort( BY_DATE );
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return count.get();
+    }
+
+    @Override
+    public Components.OrderRepository add( Order order ) {
+        if( order != null ) {
+            final int s = segmentOf( order.getId() );
+            final long stamp = locks[ s ].writeLock();
+            boolean added = false;
+            try {
+                if( ! segments[ s ].containsKey( order.getId() ) ) {
+                    segments[ s ].put( order.getId(), order );
+                    added = true;
+                }
+            } finally {
+                locks[ s ].unlockWrite( stamp );
+            }
+            if( added ) {
+                count.incrementAndGet();
+                byDate.computeIfAbsent( bucketOf( order.getDate().getTime() ), k -> new Bucket() ).add( order );
+                if( order.getCustomer() != null ) {
+                    byCustomer.computeIfAbsent( order.getCustomer(), k -> new Bucket() ).add( order );
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Components.OrderRepository remove( Order order ) {
+        if( order != null ) {
+            final int s = segmentOf( order.getId() );
+            final long stamp = locks[ s ].writeLock();
+            boolean removed = false;
+            try {
+                if( segments[ s ].get( order.getId() ) == order ) {
+                    segments[ s ].remove( order.getId() );
+                    removed = true;
+                }
+            } finally {
+                locks[ s ].unlockWrite( stamp );
+            }
+            if( removed ) {
+                count.decrementAndGet();
+                Bucket bucket = byDate.get( bucketOf( order.getDate().getTime() ) );
+                if( bucket != null ) {
+                    bucket.remove( order );
+                }
+                bucket = order.getCustomer() == null? null : byCustomer.get( order.getCustomer() );
+                if( bucket != null ) {
+                    bucket.remove( order );
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void clear() {
+        for( int s=0; s < SEGMENTS; s++ ) {
+            final long stamp = locks[ s ].writeLock();
+            try {
+                count.addAndGet( - segments[ s ].size() );
+                segments[ s ].clear();
+            } finally {
+                locks[ s ].unlockWrite( stamp );
+            }
+        }
+        byDate.clear();
+        byCustomer.clear();
+    }
+
+    /*
+     * Look up order by id with an optimistic read, retry under read lock
+     * when the segment was modified concurrently.
+     */
+    private Order find( long id ) {
+        final int s = segmentOf( id );
+        final StampedLock lock = locks[ s ];
+        long stamp = lock.tryOptimisticRead();
+        if( stamp != 0L ) {
+            Order order = segments[ s ].get( id );
+            if( lock.validate( stamp ) ) {
+                return order;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return segments[ s ].get( id );
+        } finally {
+            lock.unlockRead( stamp );
+        }
+    }
+
+    /*
+     * Segment from high bits of the mixed id, LongObjectMap uses low bits for slots.
+     */
+    private static int segmentOf( long id ) {
+        return (int)( ( id * 0x9E3779B97F4A7C15L ) >>> 58 ) & ( SEGMENTS - 1 );
+    }
+
+    private static long bucketOf( long time ) {
+        return Math.floorDiv( time, DATE_BUCKET_MILLIS );
+    }
+}
@@ -1,16 +1,16 @@
 package system;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
-import datamodel.Article;
 import datamodel.Customer;
 import datamodel.Order;
-import datamodel.OrderItem;
 
 /*
  * Non‐public implementation class.
@@ -19,12 +19,12 @@ final class OutputProcessor implements Components.OutputProcessor {
 
     // Attribute:
     private final OrderProcessor orderProcessor;
-    private final InventoryManager inventoryManager;
+    private final Components.InventoryManager inventoryManager;
 
     // Konstruktoren in den Komponenten‐Klasse OutputProcessor:
-    public OutputProcessor(InventoryManager inventoryManager, OrderProcessor orderProcessor) {
-        this.inventoryManager = new InventoryManager();
-        this.orderProcessor = new OrderProcessor(inventoryManager);
+    public OutputProcessor(Components.InventoryManager inventoryManager, OrderProcessor orderProcessor) {
+        this.inventoryManager = inventoryManager;
+        this.orderProcessor = orderProcessor;
     }
 
     public OutputProcessor() {
@@ -36,71 +36,49 @@ final class OutputProcessor implements Components.OutputProcessor {
 
     @Override
     public void printOrders(List<Order> orders, boolean printVAT) {
-
-        // Aus Application 1:
-        final int printLineWidth = 84;
-        StringBuffer sbAllOrders = new StringBuffer("-------------");
-        StringBuffer sbLineItem = new StringBuffer();
-
-        int gesamtSumme = 0;
-        long vat = 0;
-
-        for (Order order : orders) {
-            int summe = 0;
-            String output = "";
-
-            // Per Order alle Produkte durchlaufen:
-            for (OrderItem item : order.getItems()) {
-                summe += item.getUnitsOrdered() * item.getArticle().getUnitPrice();
-                output += " " + item.getUnitsOrdered() + "x " + item.getDescription();
-
-                // Steuer berechnen:
-                if(printVAT) {
-                    vat += orderProcessor.vat(item.getUnitsOrdered() * item.getArticle().getUnitPrice(),1);
-                }
-            }
-
-            // Gesamtpreis ermitteln:
-            gesamtSumme += summe;
-
-            // Auf Konsole auswerfen:
-            Customer customer = order.getCustomer();
-            String customerName = splitName(customer, customer.getFirstName() + " " + customer.getLastName());
-            sbLineItem = fmtLine("#" + order.getId() + ", " + customerName + "'s Bestellung:" + output,
-                    fmtPrice(summe, "EUR", 14), printLineWidth);
-            sbAllOrders.append("\n");
-            sbAllOrders.append(sbLineItem);
+        // System.out is not closed, only flushed
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            printOrders(orders, printVAT, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        // convert price (long: 2345 in cent) to String of length 14, right-aligned -> "     23,45 EUR"
-        String fmtPrice1 = fmtPrice(2345, "EUR", 14);
-
-        // calculate total price
-        String fmtPriceTotal = pad(fmtPrice(gesamtSumme, "", " EUR"), 14, true);
-
-        // append final line with totals
-        sbAllOrders.append("\n")
-                .append(fmtLine("-------------", "------------- -------------", printLineWidth))
-                .append("\n")
-                .append(fmtLine("Gesamtwert aller Bestellungen:", fmtPriceTotal, printLineWidth));
-
-        // Steuersatz zum Druck hinzufügen:
-        if(printVAT) {
-            String fmtPriceVAT = pad(fmtPrice(vat, "", " EUR"), 14, true);
-            sbAllOrders
-                    .append("\n")
-                    .append(fmtLine("Im Gesamtbetrag enthaltene Mehrwertsteuer (19%):", fmtPriceVAT, printLineWidth));
-        }
+    /**
+     * Stream orders report line-by-line to an Appendable, e.g. a Writer. Memory
+     * use is constant regardless of the number of orders.
+     */
+    @Override
+    public void printOrders(Iterable<Order> orders, boolean printVAT, Appendable out) throws IOException {
+        new OrderReportWriter(this, orderProcessor, printVAT).write(orders, out);
+    }
 
-        // print sbAllOrders StringBuffer with all output to System.out
-        System.out.println(sbAllOrders.toString());
+    /**
+     * Write orders report with chunks of orders formatted in parallel, see
+     * OrderReportWriter.writeParallel().
+     */
+    @Override
+    public void printOrders(List<Order> orders, boolean printVAT, Appendable out, ForkJoinPool pool) throws IOException {
+        new OrderReportWriter(this, orderProcessor, printVAT).writeParallel(orders, out, pool);
+    }
 
+    /**
+     * Stream orders report line-by-line UTF-8 encoded to a WritableByteChannel
+     * through reusable char and byte buffers.
+     */
+    @Override
+    public void printOrders(Iterable<Order> orders, boolean printVAT, WritableByteChannel out) throws IOException {
+        OrderReportWriter.ChannelAppendable channelOut = new OrderReportWriter.ChannelAppendable(out, 1 << 14);
+        printOrders(orders, printVAT, channelOut);
+        channelOut.flush();
     }
 
     // neu verschobene Methoden:
 
     /**
-     * Format long-price in 1/100 (cents) to String using DecimalFormatter.
+     * Format long-price in 1/100 (cents) to String using PriceFormatter.
      * For example, 299 -> "2,99"
      *
      * @param sb    StringBuffer to which price is added
@@ -111,16 +89,29 @@ final class OutputProcessor implements Components.OutputProcessor {
         if (sb == null) {
             sb = new StringBuffer();
         }
-        double dblPrice = ((double) price) / 100.0;            // convert cent to Euro
-        DecimalFormat df = new DecimalFormat("#,##0.00",
-                new DecimalFormatSymbols(new Locale("de")));    // rounds double to 2 digits
-
-        String fmtPrice = df.format(dblPrice);                // convert result to String in DecimalFormat
-        sb.append(fmtPrice);
-        return sb;
+        return PriceFormatter.append(sb, price);
     }
 
 
+    /**
+     * Format tax rate in basis points (1/100 percent) to percent, e.g. 1900 -> "19%",
+     * 550 -> "5,5%".
+     *
+     * @param rate tax rate in basis points
+     * @return rate in percent
+     */
+    String fmtRate(int rate) {
+        StringBuilder sb = new StringBuilder().append(rate / 100);
+        int fraction = rate % 100;
+        if (fraction != 0) {
+            sb.append(',').append(fraction / 10);
+            if (fraction % 10 != 0) {
+                sb.append(fraction % 10);
+            }
+        }
+        return sb.append('%').toString();
+    }
+
     /**
      * Pad string to minimum width, either right-aligned or left-aligned
      *
@@ -130,13 +121,24 @@ final class OutputProcessor implements Components.OutputProcessor {
      * @return padded String
      */
     public String pad(String str, int width, boolean rightAligned) {
-        String fmtter = (rightAligned ? "%" : "%-") + width + "s";
-        String padded = String.format(fmtter, str);
-        return padded;
+        if (str == null) {
+            str = "null";
+        }
+        int fill = width - str.length();
+        if (fill <= 0) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(width);
+        if (rightAligned) {
+            PriceFormatter.appendSpaces(sb, fill).append(str);
+        } else {
+            PriceFormatter.appendSpaces(sb.append(str), fill);
+        }
+        return sb.toString();
     }
 
     /**
-     * Format long-price in 1/100 (cents) to String using DecimalFormatter.
+     * Format long-price in 1/100 (cents) to String using PriceFormatter.
      * Append currency. For example, 299, "EUR" -> "2,99 EUR"
      *
      * @param price    price as long in 1/100 (cents)
@@ -145,12 +147,11 @@ final class OutputProcessor implements Components.OutputProcessor {
      */
     @Override
     public String fmtPrice(long price, String currency) {
-        String fmtPrice = pad(fmtPrice(price, "", " " + currency), 14, true);
-        return fmtPrice;
+        return fmtPrice(price, currency, 14);
     }
 
     /**
-     * Format long-price in 1/100 (cents) to String using DecimalFormatter, add
+     * Format long-price in 1/100 (cents) to String using PriceFormatter, add
      * currency and pad to minimum width right-aligned.
      * For example, 299, "EUR", 12 -> "    2,99 EUR"
      *
@@ -161,12 +162,12 @@ final class OutputProcessor implements Components.OutputProcessor {
      */
     @Override
     public String fmtPrice(long price, String currency, int width) {
-        String fmtPrice = pad(fmtPrice(price, "", " " + currency), 14, true);
-        return fmtPrice;
+        StringBuilder sb = new StringBuilder(Math.max(width, PriceFormatter.MAX_LENGTH + 4));
+        return PriceFormatter.append(sb, price, currency, width).toString();
     }
 
     /**
-     * Format long-price in 1/100 (cents) to String using DecimalFormatter and
+     * Format long-price in 1/100 (cents) to String using PriceFormatter and
      * prepend prefix and append postfix String.
      * For example, 299, "(", ")" -> "(2,99)"
      *
@@ -176,17 +177,15 @@ final class OutputProcessor implements Components.OutputProcessor {
      * @return price as String
      */
     public String fmtPrice(long price, String prefix, String postfix) {
-        StringBuffer fmtPriceSB = new StringBuffer();
+        StringBuilder sb = new StringBuilder(PriceFormatter.MAX_LENGTH + 8);
         if (prefix != null) {
-            fmtPriceSB.append(prefix);
+            sb.append(prefix);
         }
-
-        fmtPriceSB = fmtPrice(fmtPriceSB, price);
-
+        PriceFormatter.append(sb, price);
         if (postfix != null) {
-            fmtPriceSB.append(postfix);
+            sb.append(postfix);
         }
-        return fmtPriceSB.toString();
+        return sb.toString();
     }
 
     /**
@@ -207,38 +206,8 @@ final class OutputProcessor implements Components.OutputProcessor {
      */
     @Override
     public StringBuffer fmtLine(String leftStr, String rightStr, int totalWidth) {
-        StringBuffer sb = new StringBuffer(leftStr);
-        int shiftable = 0;        // leading spaces before first digit
-        for (int i = 1; rightStr.charAt(i) == ' ' && i < rightStr.length(); i++) {
-            shiftable++;
-        }
-        final int tab1 = totalWidth - rightStr.length() + 1;    // - ( seperator? 3 : 0 );
-        int sbLen = sb.length();
-        int excess = sbLen - tab1 + 1;
-        int shift2 = excess - Math.max(0, excess - shiftable);
-        if (shift2 > 0) {
-            rightStr = rightStr.substring(shift2, rightStr.length());
-            excess -= shift2;
-        }
-        if (excess > 0) {
-            switch (excess) {
-                case 1:
-                    sb.delete(sbLen - excess, sbLen);
-                    break;
-                case 2:
-                    sb.delete(sbLen - excess - 2, sbLen);
-                    sb.append("..");
-                    break;
-                default:
-                    sb.delete(sbLen - excess - 3, sbLen);
-                    sb.append("...");
-                    break;
-            }
-        }
-        String strLineItem = String.format("%-" + (tab1 - 1) + "s%s", sb.toString(), rightStr);
-        sb.setLength(0);
-        sb.append(strLineItem);
-        return sb;
+        LineLayout line = new LineLayout(totalWidth).left(leftStr).right(rightStr).layout();
+        return line.appendTo(new StringBuffer(line.length()));
     }
 
     // Aufgabe 3:
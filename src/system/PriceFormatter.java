@@ -0,0 +1,139 @@
+package system;
+
+
+/**
+ * Formatter of long-prices in 1/100 (cents) to German notation with "." as
+ * grouping separator and "," as decimal separator, e.g. 123456789 -> "1.234.567,89".
+ *
+ * Digits are derived from the long value with integer arithmetic and written
+ * directly into a char[] or a StringBuilder, without DecimalFormat, Locale
+ * objects or floating point. The formatter is stateless except for a per-thread
+ * scratch buffer and can be used concurrently.
+ *
+ */
+final class PriceFormatter {
+
+    /*
+     * Maximum length of a formatted price: "-92.233.720.368.547.758,08".
+     */
+    static final int MAX_LENGTH = 26;
+
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial( () -> new char[ MAX_LENGTH ] );
+
+    private static final char[] SPACES = "                                ".toCharArray();
+
+
+    private PriceFormatter() { }
+
+    /**
+     * Return the number of chars of a formatted price.
+     *
+     * @param price price as long in 1/100 (cents)
+     * @return number of chars of formatted price
+     */
+    static int length( long price ) {
+        long v = price < 0? price : -price;     // negative magnitude covers Long.MIN_VALUE
+        int digits = 1;
+        while( v <= -10 ) {
+            v /= 10;
+            digits++;
+        }
+        digits = Math.max( digits, 3 );         // at least "0,00"
+        int intDigits = digits - 2;
+        return ( price < 0? 1 : 0 ) + digits + 1 + ( intDigits - 1 ) / 3;
+    }
+
+    /**
+     * Write formatted price into a char[] such that it ends right before index end.
+     *
+     * @param price price as long in 1/100 (cents)
+     * @param dst destination array
+     * @param end index after last char written
+     * @return index of first char written
+     */
+    static int format( long price, char[] dst, int end ) {
+        long v = price < 0? price : -price;
+        int i = end;
+        dst[ --i ] = (char)( '0' - v % 10 );
+        v /= 10;
+        dst[ --i ] = (char)( '0' - v % 10 );
+        v /= 10;
+        dst[ --i ] = ',';
+        int group = 0;
+        do {
+            if( group == 3 ) {
+                dst[ --i ] = '.';
+                group = 0;
+            }
+            dst[ --i ] = (char)( '0' - v % 10 );
+            v /= 10;
+            group++;
+        } while( v != 0 );
+        if( price < 0 ) {
+            dst[ --i ] = '-';
+        }
+        return i;
+    }
+
+    /**
+     * Append formatted price to a StringBuilder, e.g. 299 -> "2,99".
+     *
+     * @param sb StringBuilder to which price is appended
+     * @param price price as long in 1/100 (cents)
+     * @return sb
+     */
+    static StringBuilder append( StringBuilder sb, long price ) {
+        final char[] buf = SCRATCH.get();
+        final int start = format( price, buf, buf.length );
+        return sb.append( buf, start, buf.length - start );
+    }
+
+    /**
+     * Append formatted price to a StringBuffer, e.g. 299 -> "2,99".
+     *
+     * @param sb StringBuffer to which price is appended
+     * @param price price as long in 1/100 (cents)
+     * @return sb
+     */
+    static StringBuffer append( StringBuffer sb, long price ) {
+        final char[] buf = SCRATCH.get();
+        final int start = format( price, buf, buf.length );
+        return sb.append( buf, start, buf.length - start );
+    }
+
+    /**
+     * Append formatted price followed by " " and currency, right-aligned to a
+     * minimum width, e.g. 299, "EUR", 12 -> "    2,99 EUR".
+     *
+     * @param sb StringBuilder to which price is appended
+     * @param price price as long in 1/100 (cents)
+     * @param currency currency, e.g. "EUR", omitted when null
+     * @param width minimum width to which result is padded
+     * @return sb
+     */
+    static StringBuilder append( StringBuilder sb, long price, String currency, int width ) {
+        int len = length( price ) + ( currency == null? 0 : 1 + currency.length() );
+        appendSpaces( sb, width - len );
+        append( sb, price );
+        if( currency != null ) {
+            sb.append( ' ' ).append( currency );
+        }
+        return sb;
+    }
+
+    /**
+     * Append n spaces to a StringBuilder, nothing if n is not positive.
+     *
+     * @param sb StringBuilder to which spaces are appended
+     * @param n number of spaces
+     * @return sb
+     */
+    static StringBuilder appendSpaces( StringBuilder sb, int n ) {
+        while( n > 0 ) {
+            int k = Math.min( n, SPACES.length );
+            sb.append( SPACES, 0, k );
+            n -= k;
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,590 @@
+package system;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+
+
+/**
+ * Writes snapshots of system state next to the OrderJournal such that restart
+ * loads the snapshot and only replays journal records behind it. Journal
+ * segments before a snapshot are deleted (truncate).
+ *
+ * A snapshot is taken at a cut of the journal's gate (see JournalGate) while
+ * orders continue to be accepted: the cut's LSN marks the point from which
+ * replay starts, units in store are those at the cut and orders are those
+ * accepted before the cut (the order repository only holds accepted orders).
+ * Customers added after the cut may be included, replay skips them.
+ *
+ * Items of accepted orders are not expected to change. Their copy is checked
+ * against the order's count and running totals; an order whose items cannot
+ * be copied consistently fails the snapshot, the journal is then not truncated.
+ *
+ * Snapshot files are named snapshot-<lsn>.snap and hold columns of primitive
+ * arrays and string columns (lengths, then UTF-8 bytes), which load with bulk
+ * reads into arrays:
+ *
+ *  - header	; magic, version, lsn, number of articles, customers, orders, items
+ *  - articles	; ids, descriptions, unit prices, units in store, tax classes
+ *  - customers	; ids, first names, last names, contacts
+ *  - orders	; ids, dates, customer ids, number of items per order
+ *  - items		; descriptions, article ids, units ordered
+ *  - trailer	; CRC32C of all bytes before
+ *
+ * A snapshot is written to a temporary file, forced and renamed, a crash while
+ * writing therefore leaves the previous snapshot in place.
+ *
+ */
+final class Snapshotter implements AutoCloseable {
+
+    private static final int MAGIC = 0x53453153;     // "SE1S"
+
+    private static final int VERSION = 1;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /*
+     * Attempts to copy items of an order that is modified while the snapshot is
+     * written, before the snapshot fails.
+     */
+    private static final int COPY_ATTEMPTS = 3;
+
+
+    /**
+     * Receiver of columns loaded from a snapshot in load().
+     */
+    interface Loader {
+
+        void articles( String[] ids, String[] descrs, long[] prices, int[] units, byte[] taxClasses );
+
+        void customers( String[] ids, String[] firstNames, String[] lastNames, String[] contacts );
+
+        /**
+         * Orders with items given by itemCounts consecutive entries of the item columns.
+         */
+        void orders( long[] ids, long[] dates, String[] customerIds, int[] itemCounts,
+                String[] itemDescrs, String[] itemArticleIds, int[] itemUnits );
+
+    }
+
+    // Attribute:
+    private final OrderJournal journal;
+
+    private final Components.InventoryManager inventory;
+
+    private final Components.CustomerRepository customers;
+
+    private final Components.OrderRepository orders;
+
+    private ScheduledExecutorService scheduler = null;
+
+    private volatile Exception lastFailure = null;
+
+
+    /**
+     * Constructor.
+     *
+     * @param journal journal next to which snapshots are written
+     * @param inventory inventory of articles written to snapshots
+     * @param customers repository of customers written to snapshots
+     * @param orders repository of orders written to snapshots
+     */
+    Snapshotter( OrderJournal journal,
+                 Components.InventoryManager inventory,
+                 Components.CustomerRepository customers,
+                 Components.OrderRepository orders
+    ) {
+        this.journal = journal;
+        this.inventory = inventory;
+        this.customers = customers;
+        this.orders = orders;
+    }
+
+    /**
+     * Write snapshot periodically in a background thread.
+     *
+     * @param intervalMillis time between the end of a snapshot and the start of the next
+     */
+    synchronized void start( long intervalMillis ) {
+        if( scheduler == null ) {
+            scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+                Thread t = new Thread( r, "journal-snapshotter" );
+                t.setDaemon( true );
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay( () -> {
+                try {
+                    snapshot();
+                    lastFailure = null;
+                } catch( IOException | RuntimeException e ) {
+                    lastFailure = e;    // retried at next interval
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Return the failure of the last periodic snapshot, null if it succeeded.
+     *
+     * @return failure of last periodic snapshot or null
+     */
+    Exception lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Write snapshot, then delete older snapshots and journal segments before it.
+     *
+     * @return LSN of the snapshot from which replay starts
+     * @throws IOException when the snapshot cannot be written
+     */
+    synchronized long snapshot() throws IOException {
+        final JournalGate gate = journal.gate();
+        final JournalGate.Cut cut = gate.cut( journal::end );
+        final Path dir = journal.directory();
+        final Path tmp = dir.resolve( nameOf( cut.lsn() ) + ".tmp" );
+        try {
+            write( tmp, cut );
+        } catch( IOException | RuntimeException e ) {
+            Files.deleteIfExists( tmp );
+            throw e;
+        } finally {
+            gate.release( cut );
+        }
+        // records up to the cut must be durable before the snapshot is, otherwise
+        // records appended after a crash could reuse LSNs before the snapshot
+        journal.awaitDurable( cut.lsn() );
+        final Path file = dir.resolve( nameOf( cut.lsn() ) );
+        Files.move( tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        journal.syncDirectory();
+        for( Path older : snapshots( dir ) ) {
+            if( lsnOf( older ) < cut.lsn() ) {
+                Files.delete( older );
+            }
+        }
+        journal.truncate( cut.lsn() );
+        return cut.lsn();
+    }
+
+    /**
+     * Stop writing snapshots periodically, waits for a snapshot in progress.
+     */
+    @Override
+    public void close() {
+        final ScheduledExecutorService s;
+        synchronized( this ) {
+            s = scheduler;
+            scheduler = null;
+        }
+        if( s != null ) {
+            s.shutdown();
+            boolean interrupted = false;
+            while( ! s.isTerminated() ) {
+                try {
+                    s.awaitTermination( 1, TimeUnit.SECONDS );
+                } catch( InterruptedException e ) {
+                    interrupted = true;
+                }
+            }
+            if( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Return the snapshot with the highest LSN in a directory.
+     *
+     * @param dir directory of snapshots
+     * @return path of latest snapshot, null if there is none
+     * @throws IOException when the directory cannot be read
+     */
+    static Path latest( Path dir ) throws IOException {
+        final List<Path> snapshots = snapshots( dir );
+        return snapshots.isEmpty()? null : snapshots.get( snapshots.size() - 1 );
+    }
+
+    /**
+     * Load snapshot and pass its columns to a loader, after the checksum of the
+     * whole file was verified.
+     *
+     * @param file snapshot file
+     * @param loader receiver of columns
+     * @return LSN of the snapshot from which journal replay starts
+     * @throws IOException when the file cannot be read
+     * @throws IllegalStateException when the file is not a valid snapshot
+     */
+    static long load( Path file, Loader loader ) throws IOException {
+        try( FileChannel ch = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            final In in = new In( ch );
+            if( in.getInt() != MAGIC || in.getInt() != VERSION ) {
+                throw new IllegalStateException( "not a snapshot: " + file );
+            }
+            final long lsn = in.getLong();
+            final int nArticles = in.getInt();
+            final int nCustomers = in.getInt();
+            final int nOrders = in.getInt();
+            final int nItems = in.getInt();
+
+            final String[] articleIds = in.getStrings( nArticles );
+            final String[] descrs = in.getStrings( nArticles );
+            final long[] prices = in.getLongs( nArticles );
+            final int[] units = in.getInts( nArticles );
+            final byte[] taxClasses = in.getBytes( nArticles );
+
+            final String[] customerIds = in.getStrings( nCustomers );
+            final String[] firstNames = in.getStrings( nCustomers );
+            final String[] lastNames = in.getStrings( nCustomers );
+            final String[] contacts = in.getStrings( nCustomers );
+
+            final long[] orderIds = in.getLongs( nOrders );
+            final long[] dates = in.getLongs( nOrders );
+            final String[] orderCustomerIds = in.getStrings( nOrders );
+            final int[] itemCounts = in.getInts( nOrders );
+
+            final String[] itemDescrs = in.getStrings( nItems );
+            final String[] itemArticleIds = in.getStrings( nItems );
+            final int[] itemUnits = in.getInts( nItems );
+
+            final int crc = in.checksum();
+            if( in.getInt() != crc ) {
+                throw new IllegalStateException( "corrupt snapshot: " + file );
+            }
+            loader.articles( articleIds, descrs, prices, units, taxClasses );
+            loader.customers( customerIds, firstNames, lastNames, contacts );
+            loader.orders( orderIds, dates, orderCustomerIds, itemCounts, itemDescrs, itemArticleIds, itemUnits );
+            return lsn;
+        }
+    }
+
+    /*
+     * Collect columns from live objects and write them to file.
+     */
+    private void write( Path file, JournalGate.Cut cut ) throws IOException {
+        final List<Article> articles = new ArrayList<Article>();
+        final Ints units = new Ints();
+        for( Article article : inventory.getInventory() ) {
+            int u = cut.unitsOf( article );
+            if( u != JournalGate.EXCLUDED ) {
+                articles.add( article );
+                units.add( u );
+            }
+        }
+        final List<Customer> customerList = customers.findByLastName( "", Integer.MAX_VALUE );
+        final List<Order> orderList = new ArrayList<Order>();
+        final Ints itemCounts = new Ints();
+        final List<OrderItem> allItems = new ArrayList<OrderItem>();
+        final Ints itemUnits = new Ints();
+        for( Order order : orders.findByDate( null, null ) ) {
+            if( cut.includes( order ) ) {
+                orderList.add( order );
+                itemCounts.add( copyItems( order, allItems, itemUnits ) );
+            }
+        }
+        final int n = articles.size();
+        final int nItems = allItems.size();
+        try( FileChannel ch = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE ) ) {
+            final Out out = new Out( ch );
+            out.putInt( MAGIC ).putInt( VERSION ).putLong( cut.lsn() );
+            out.putInt( n ).putInt( customerList.size() ).putInt( orderList.size() ).putInt( nItems );
+
+            out.putStrings( articles, Article::getId );
+            out.putStrings( articles, Article::getDescription );
+            for( Article a : articles ) {
+                out.putLong( a.getUnitPrice() );
+            }
+            for( int i=0; i < n; i++ ) {
+                out.putInt( units.values[ i ] );
+            }
+            for( Article a : articles ) {
+                out.putByte( a.getTaxClass().ordinal() );
+            }
+
+            out.putStrings( customerList, Customer::getId );
+            out.putStrings( customerList, Customer::getFirstName );
+            out.putStrings( customerList, Customer::getLastName );
+            out.putStrings( customerList, Customer::getContact );
+
+            for( Order o : orderList ) {
+                out.putLong( o.getId() );
+            }
+            for( Order o : orderList ) {
+                out.putLong( o.getDate().getTime() );
+            }
+            out.putStrings( orderList, o -> o.getCustomer().getId() );
+            for( int i=0; i < orderList.size(); i++ ) {
+                out.putInt( itemCounts.values[ i ] );
+            }
+
+            out.putStrings( allItems, OrderItem::getDescription );
+            out.putStrings( allItems, i -> i.getArticle().getId() );
+            for( int i=0; i < nItems; i++ ) {
+                out.putInt( itemUnits.values[ i ] );
+            }
+            out.flush();        // crc covers bytes flushed
+            out.putInt( (int)out.crc.getValue() );
+            out.flush();
+            ch.force( true );
+        }
+    }
+
+    /*
+     * Append items of an accepted order and their units ordered to item columns.
+     * Iterating items that are modified concurrently is not guaranteed to fail,
+     * the copy is therefore checked against the order's count and running totals.
+     * Throws IllegalStateException, which fails the snapshot, when no consistent
+     * copy was taken after COPY_ATTEMPTS.
+     */
+    private static int copyItems( Order order, List<OrderItem> items, Ints units ) {
+        final int start = items.size();
+        for( int attempt=0; attempt < COPY_ATTEMPTS; attempt++ ) {
+            try {
+                final int count = order.count();
+                final long unitsOrdered = order.getUnitsOrdered();
+                final long value = order.getValue();
+                long u = 0L, v = 0L;
+                for( OrderItem item : order.getItems() ) {
+                    final int n = item.getUnitsOrdered();
+                    items.add( item );
+                    units.add( n );
+                    u += n;
+                    v += item.getValue();
+                }
+                if( items.size() - start == count && u == unitsOrdered && v == value ) {
+                    return count;
+                }
+            } catch( ConcurrentModificationException e ) {
+                // retry
+            }
+            items.subList( start, items.size() ).clear();
+            units.size = start;
+        }
+        throw new IllegalStateException( "order " + order.getId() + " changed while snapshot was written" );
+    }
+
+    /*
+     * Growable column of ints.
+     */
+    private static final class Ints {
+        int[] values = new int[ 64 ];
+        int size = 0;
+
+        void add( int v ) {
+            if( size == values.length ) {
+                values = Arrays.copyOf( values, size << 1 );
+            }
+            values[ size++ ] = v;
+        }
+    }
+
+    private static List<Path> snapshots( Path dir ) throws IOException {
+        final List<Path> snapshots = new ArrayList<Path>();
+        try( DirectoryStream<Path> ds = Files.newDirectoryStream( dir, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX ) ) {
+            for( Path p : ds ) {
+                snapshots.add( p );
+            }
+        }
+        snapshots.sort( null );     // fixed-width hex names sort by lsn
+        return snapshots;
+    }
+
+    static String nameOf( long lsn ) {
+        return String.format( "%s%016x%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX );
+    }
+
+    static long lsnOf( Path snapshot ) {
+        final String name = snapshot.getFileName().toString();
+        return Long.parseUnsignedLong( name.substring( SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length() ), 16 );
+    }
+
+    /*
+     * Buffered output to a channel that computes the CRC32C of bytes written.
+     */
+    private static final class Out {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate( BUFFER_SIZE );
+        final CRC32C crc = new CRC32C();
+
+        Out( FileChannel ch ) {
+            this.ch = ch;
+        }
+
+        Out putByte( int v ) throws IOException {
+            ensure( 1 ).put( (byte)v );
+            return this;
+        }
+
+        Out putInt( int v ) throws IOException {
+            ensure( 4 ).putInt( v );
+            return this;
+        }
+
+        Out putLong( long v ) throws IOException {
+            ensure( 8 ).putLong( v );
+            return this;
+        }
+
+        /*
+         * String column: lengths of UTF-8 encodings (-1 for null), then bytes.
+         */
+        <T> void putStrings( List<T> objects, Function<T, String> column ) throws IOException {
+            final byte[][] encoded = new byte[ objects.size() ][];
+            for( int i=0; i < encoded.length; i++ ) {
+                final String s = column.apply( objects.get( i ) );
+                encoded[ i ] = s == null? null : s.getBytes( StandardCharsets.UTF_8 );
+                putInt( s == null? -1 : encoded[ i ].length );
+            }
+            for( byte[] b : encoded ) {
+                for( int off=0; b != null && off < b.length; ) {
+                    final int len = Math.min( b.length - off, BUFFER_SIZE );
+                    ensure( len ).put( b, off, len );
+                    off += len;
+                }
+            }
+        }
+
+        private ByteBuffer ensure( int n ) throws IOException {
+            if( buf.remaining() < n ) {
+                flush();
+            }
+            return buf;
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            crc.update( buf.duplicate() );
+            while( buf.hasRemaining() ) {
+                ch.write( buf );
+            }
+            buf.clear();
+        }
+    }
+
+    /*
+     * Buffered input from a channel that computes the CRC32C of bytes read.
+     */
+    private static final class In {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate( BUFFER_SIZE );
+        private final CRC32C crc = new CRC32C();
+        private int mark = 0;       // bytes of buf before mark are covered by crc
+
+        In( FileChannel ch ) {
+            this.ch = ch;
+            buf.limit( 0 );
+        }
+
+        int getInt() throws IOException {
+            return fill( 4 ).getInt();
+        }
+
+        long getLong() throws IOException {
+            return fill( 8 ).getLong();
+        }
+
+        int[] getInts( int n ) throws IOException {
+            check( n, 4 );
+            final int[] a = new int[ n ];
+            for( int i=0; i < n; i++ ) {
+                a[ i ] = fill( 4 ).getInt();
+            }
+            return a;
+        }
+
+        long[] getLongs( int n ) throws IOException {
+            check( n, 8 );
+            final long[] a = new long[ n ];
+            for( int i=0; i < n; i++ ) {
+                a[ i ] = fill( 8 ).getLong();
+            }
+            return a;
+        }
+
+        byte[] getBytes( int n ) throws IOException {
+            check( n, 1 );
+            final byte[] a = new byte[ n ];
+            for( int off=0; off < n; ) {
+                final int len = Math.min( n - off, BUFFER_SIZE );
+                fill( len ).get( a, off, len );
+                off += len;
+            }
+            return a;
+        }
+
+        String[] getStrings( int n ) throws IOException {
+            final int[] lengths = getInts( n );
+            final String[] a = new String[ n ];
+            for( int i=0; i < n; i++ ) {
+                if( lengths[ i ] >= 0 ) {
+                    a[ i ] = new String( getBytes( lengths[ i ] ), StandardCharsets.UTF_8 );
+                }
+            }
+            return a;
+        }
+
+        /*
+         * Check that n elements of a column fit into the rest of the file before
+         * arrays are allocated, lengths are not yet verified by the checksum.
+         */
+        private void check( int n, int size ) throws IOException {
+            final long available = ch.size() - ( ch.position() - buf.remaining() );
+            if( n < 0 || (long)n * size > available ) {
+                throw new IllegalStateException( "corrupt snapshot, column exceeds file: " + n );
+            }
+        }
+
+        /*
+         * Return CRC32C of bytes consumed so far.
+         */
+        int checksum() {
+            crc.update( buf.slice( mark, buf.position() - mark ) );
+            mark = buf.position();
+            return (int)crc.getValue();
+        }
+
+        /*
+         * Make n bytes available, bytes consumed are added to the CRC before
+         * they are discarded.
+         */
+        private ByteBuffer fill( int n ) throws IOException {
+            if( buf.remaining() < n ) {
+                checksum();
+                buf.compact();
+                mark = 0;
+                while( buf.position() < n ) {
+                    if( ch.read( buf ) < 0 ) {
+                        throw new EOFException( "truncated snapshot" );
+                    }
+                }
+                buf.flip();
+            }
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package system;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import datamodel.Article;
+
+
+/**
+ * Preallocated ring buffer of stock events (units ordered per article of an
+ * order) that are processed by a single writer thread, see StockMode.RING of
+ * OrderProcessor. The writer thread is the only thread that updates stock of
+ * articles in this mode, it therefore needs no locks and never contends with
+ * other writers, e.g. when many orders hit the same few articles.
+ *
+ * Producers claim a sequence number from a shared counter and publish a Request
+ * in the slot at sequence & (capacity - 1). Each slot carries a sequence that
+ * tells its state for the lap of the ring that sequence seq belongs to:
+ *  - seq             ; free, the producer of seq may fill the slot
+ *  - seq + 1         ; published, the writer may process the request
+ *  - seq + capacity  ; processed, free for the producer of the next lap.
+ *
+ * The writer frees a slot as soon as it has processed the request and hands
+ * the result back through the Request, such that slots never wait for their
+ * producers: producers may publish any number of requests before they await
+ * the first one. A producer only waits for a slot of the previous lap, which
+ * the writer frees once all earlier sequences are published and processed.
+ *
+ * Threads wait by spinning briefly, then by parking. Producers unpark the
+ * writer only when it announced that it is about to park. The writer unparks
+ * the producer of each request it processed. A producer whose slot is still in
+ * use by the previous lap (the ring is full) parks for PARK_NANOS at a time,
+ * since the writer that frees the slot does not know which producer waits.
+ *
+ * close() lets the writer finish all sequences claimed so far; sequences can no
+ * longer be claimed once the writer has decided to stop. Should the writer stop
+ * for any other reason, waiting producers fail with IllegalStateException.
+ *
+ */
+final class StockRingBuffer {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int SPINS = 256;
+
+    private static final long PARK_NANOS = 50_000L;     // producers waiting for a full ring
+
+    private static final long STOPPED = Long.MIN_VALUE; // claimed after the writer stopped, far from wrapping
+
+    /**
+     * Demand of one order published to the ring buffer and, once processed,
+     * the result of the writer.
+     */
+    static final class Request {
+        private final Map<Article, long[]> demand;
+        private final Thread producer;
+        private Map<Article, Boolean> shortage;
+        private Throwable error;
+        private volatile boolean done;
+
+        private Request( Map<Article, long[]> demand ) {
+            this.demand = demand;
+            this.producer = Thread.currentThread();
+        }
+    }
+
+    /*
+     * Slot of the ring buffer, reused for every lap.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        Request request;
+    }
+
+    // Attribute:
+    private final Slot[] slots;
+
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final Function<Map<Article, long[]>, Map<Article, Boolean>> handler;
+
+    private final Thread writer;
+
+    private volatile boolean writerParking = false;
+
+    private volatile boolean closed = false;
+
+    private volatile boolean stopped = false;
+
+
+    /**
+     * Constructor, starts the writer thread.
+     *
+     * @param capacity number of slots, rounded up to a power of 2
+     * @param handler code executed by the writer thread for each event that
+     * checks and updates stock, returns null if the demand was fulfilled or
+     * the articles that are short
+     */
+    StockRingBuffer( int capacity, Function<Map<Article, long[]>, Map<Article, Boolean>> handler ) {
+        final int n = Integer.highestOneBit( Math.max( 2, capacity - 1 ) ) << 1;
+        this.slots = new Slot[ n ];
+        this.mask = n - 1;
+        for( int i=0; i < n; i++ ) {
+            slots[ i ] = new Slot();
+            slots[ i ].sequence = i;
+        }
+        this.handler = handler;
+        this.writer = new Thread( this::runWriter, "stock-writer" );
+        this.writer.setDaemon( true );
+        this.writer.start();
+    }
+
+    /**
+     * Publish demand of an order to the writer thread. Blocks while the slot is
+     * still in use by the previous lap.
+     *
+     * @param demand units ordered per article
+     * @return request to pass to await()
+     * @throws IllegalStateException when the ring buffer is closed
+     */
+    Request publish( Map<Article, long[]> demand ) {
+        if( closed ) {
+            throw new IllegalStateException( "stock ring buffer is closed" );
+        }
+        final long seq = claimed.getAndIncrement();
+        if( seq < 0L ) {
+            throw new IllegalStateException( "stock ring buffer is closed" );
+        }
+        final Slot slot = slots[ (int)seq & mask ];
+        for( int spins=0; slot.sequence != seq; spins++ ) {
+            if( stopped ) {
+                throw new IllegalStateException( "stock writer stopped" );
+            }
+            if( spins < SPINS ) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos( this, PARK_NANOS );
+            }
+        }
+        final Request request = new Request( demand );
+        slot.request = request;
+        slot.sequence = seq + 1;
+        if( writerParking ) {
+            LockSupport.unpark( writer );
+        }
+        return request;
+    }
+
+    /**
+     * Wait until the writer thread has processed a request and return its result.
+     * Must be called by the thread that published the request.
+     *
+     * @param request request returned by publish()
+     * @return null if demand was fulfilled, articles that are short otherwise
+     * @throws IllegalStateException when the writer stopped before the request was processed
+     */
+    Map<Article, Boolean> await( Request request ) {
+        for( int spins=0; ! request.done; spins++ ) {
+            if( stopped && ! request.done ) {
+                throw new IllegalStateException( "stock writer stopped" );
+            }
+            if( spins < SPINS ) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park( this );
+            }
+        }
+        final Throwable error = request.error;
+        if( error instanceof RuntimeException ) {
+            throw (RuntimeException)error;
+        }
+        if( error instanceof Error ) {
+            throw (Error)error;
+        }
+        if( error != null ) {
+            throw new IllegalStateException( error );
+        }
+        return request.shortage;
+    }
+
+    /**
+     * Return the number of slots.
+     *
+     * @return capacity of the ring buffer
+     */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Stop the writer thread after requests claimed so far are processed.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark( writer );
+    }
+
+    private void runWriter() {
+        try {
+            long next = 0L;
+            while( true ) {
+                final Slot slot = slots[ (int)next & mask ];
+                for( int spins=0; slot.sequence != next + 1; spins++ ) {
+                    if( closed && claimed.compareAndSet( next, STOPPED ) ) {
+                        return;     // nothing claimed is left, no more claims
+                    }
+                    if( spins < SPINS ) {
+                        Thread.onSpinWait();
+                    } else {
+                        writerParking = true;
+                        if( slot.sequence != next + 1 && ! closed ) {
+                            LockSupport.park( this );
+                        }
+                        writerParking = false;
+                    }
+                }
+                final Request request = slot.request;
+                try {
+                    request.shortage = handler.apply( request.demand );
+                } catch( Throwable t ) {
+                    request.error = t;
+                }
+                slot.request = null;
+                slot.sequence = next + slots.length;
+                request.done = true;
+                LockSupport.unpark( request.producer );
+                next++;
+            }
+        } finally {
+            stopped = true;
+            claimed.set( STOPPED );
+            for( Slot slot : slots ) {
+                final Request request = slot.request;
+                if( request != null ) {
+                    LockSupport.unpark( request.producer );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package system;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+import datamodel.TaxClass;
+
+
+/**
+ * Implementation class of the VatRateTable interface. Rates are held in an
+ * immutable Rates object with arrays indexed by TaxClass ordinal. The latest
+ * rate period of each tax class is cached separately such that resolving a
+ * rate for a date within that period (the common case) is a comparison and
+ * a single array load. Dates in earlier periods are found by binary search.
+ *
+ * define() replaces the Rates object (copy-on-write), readers never lock.
+ *
+ */
+final class VatRateTable implements Components.VatRateTable {
+
+    private static final ZoneId ZONE = ZoneId.of( "Europe/Berlin" );
+
+    /*
+     * Immutable rate periods per tax class, sorted by effective-from time.
+     */
+    private static final class Rates {
+        final long[][] from;
+        final int[][] rates;
+        final long[] currentFrom;
+        final int[] currentRate;
+
+        Rates( long[][] from, int[][] rates ) {
+            final int n = from.length;
+            this.from = from;
+            this.rates = rates;
+            this.currentFrom = new long[ n ];
+            this.currentRate = new int[ n ];
+            for( int c=0; c < n; c++ ) {
+                int last = from[ c ].length - 1;
+                currentFrom[ c ] = last < 0? Long.MIN_VALUE : from[ c ][ last ];
+                currentRate[ c ] = last < 0? 0 : rates[ c ][ last ];
+            }
+        }
+    }
+
+    // Attribute:
+    private volatile Rates rates;
+
+    /**
+     * Constructor with German VAT rates: 19% (STANDARD), 7% (REDUCED) with
+     * 16% and 5% from July to December 2020. STANDARD was 16% before 2007.
+     */
+    public VatRateTable() {
+        final int n = TaxClass.values().length;
+        this.rates = new Rates( new long[ n ][ 0 ], new int[ n ][ 0 ] );
+        define( TaxClass.STANDARD, null, 1600 );
+        define( TaxClass.STANDARD, date( 2007, 1, 1 ), 1900 );
+        define( TaxClass.STANDARD, date( 2020, 7, 1 ), 1600 );
+        define( TaxClass.STANDARD, date( 2021, 1, 1 ), 1900 );
+        define( TaxClass.REDUCED, null, 700 );
+        define( TaxClass.REDUCED, date( 2020, 7, 1 ), 500 );
+        define( TaxClass.REDUCED, date( 2021, 1, 1 ), 700 );
+    }
+
+    @Override
+    public int rate( TaxClass taxClass, Date date ) {
+        return rate( taxClass, date == null? System.currentTimeMillis() : date.getTime() );
+    }
+
+    /**
+     * Return tax rate of a tax class effective at a time in milliseconds.
+     *
+     * @param taxClass tax class, null for STANDARD
+     * @param time time in milliseconds since the epoch
+     * @return tax rate in basis points
+     */
+    int rate( TaxClass taxClass, long time ) {
+        final Rates r = rates;
+        final int c = taxClass == null? 0 : taxClass.ordinal();
+        if( time >= r.currentFrom[ c ] ) {
+            return r.currentRate[ c ];
+        }
+        int i = Arrays.binarySearch( r.from[ c ], time );
+        i = i >= 0? i : -i - 2;     // period that started last before time
+        return i < 0? 0 : r.rates[ c ][ i ];
+    }
+
+    @Override
+    public synchronized Components.VatRateTable define( TaxClass taxClass, Date effectiveFrom, int rate ) {
+        if( taxClass == null || rate < 0 ) {
+            throw new IllegalArgumentException( "illegal tax class or rate: " + taxClass + ", " + rate );
+        }
+        final Rates r = rates;
+        final int c = taxClass.ordinal();
+        final long time = effectiveFrom == null? Long.MIN_VALUE : effectiveFrom.getTime();
+        long[] from = r.from[ c ];
+        int[] rts = r.rates[ c ];
+        int i = Arrays.binarySearch( from, time );
+        if( i >= 0 ) {
+            rts = rts.clone();
+            rts[ i ] = rate;
+        } else {
+            i = -i - 1;
+            long[] from2 = new long[ from.length + 1 ];
+            int[] rts2 = new int[ rts.length + 1 ];
+            System.arraycopy( from, 0, from2, 0, i );
+            System.arraycopy( rts, 0, rts2, 0, i );
+            from2[ i ] = time;
+            rts2[ i ] = rate;
+            System.arraycopy( from, i, from2, i + 1, from.length - i );
+            System.arraycopy( rts, i, rts2, i + 1, rts.length - i );
+            from = from2;
+            rts = rts2;
+        }
+        final long[][] allFrom = r.from.clone();
+        final int[][] allRates = r.rates.clone();
+        allFrom[ c ] = from;
+        allRates[ c ] = rts;
+        rates = new Rates( allFrom, allRates );
+        return this;
+    }
+
+    private static Date date( int year, int month, int day ) {
+        return Date.from( LocalDate.of( year, month, day ).atStartOfDay( ZONE ).toInstant() );
+    }
+}
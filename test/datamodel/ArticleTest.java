@@ -3,7 +3,9 @@ package datamodel;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.FixMethodOrder;
 
@@ -27,7 +29,7 @@ public class ArticleTest {
 	private final long aToaster_unitPrice = 2499;
 	private final int aToaster_unitsInStore = 1200;
 
-	private final Article aToaster = new Article(aToaster_id, aToaster_description, aToaster_unitPrice,
+	private final Article aToaster = new HeapArticle(aToaster_id, aToaster_description, aToaster_unitPrice,
 			aToaster_unitsInStore);
 
 	/*
@@ -35,7 +37,7 @@ public class ArticleTest {
 	 */
 	@Test
 	public void test001_RegularConstructor() {
-		Article a = new Article(aToaster_id, aToaster_description, aToaster_unitPrice, aToaster_unitsInStore);
+		Article a = new HeapArticle(aToaster_id, aToaster_description, aToaster_unitPrice, aToaster_unitsInStore);
 		assertEquals(a.getId(), aToaster_id); // assert that correct id is returned
 		assertSame(a.getId(), aToaster_id); // "==" - equivalent
 		/*
@@ -61,7 +63,7 @@ public class ArticleTest {
 		 * is returned - units-in-store 0 is returned
 		 */
 
-		Article a = new Article("", "", 0, 0);
+		Article a = new HeapArticle("", "", 0, 0);
 
 		assertEquals("", a.getId());
 		assertEquals("", a.getDescription());
@@ -83,7 +85,7 @@ public class ArticleTest {
 		 * allowed)
 		 */
 		
-		Article a = new Article(null, null, -1, -1);
+		Article a = new HeapArticle(null, null, -1, -1);
 
 		assertEquals(null, a.getId());
 		assertEquals("", a.getDescription());
@@ -180,4 +182,51 @@ public class ArticleTest {
 		
 	}
 
+	@Test
+	public void test013_TryReserveAndRelease() {
+		assertTrue(aToaster.tryReserve(200));			// regular case
+		assertEquals(1000, aToaster.getUnitsInStore());
+
+		assertTrue(aToaster.tryReserve(1000));			// corner case, reserve all units
+		assertEquals(0, aToaster.getUnitsInStore());
+
+		assertFalse(aToaster.tryReserve(1));			// not enough units, unchanged
+		assertEquals(0, aToaster.getUnitsInStore());
+
+		aToaster.release(1200);
+		assertEquals(1200, aToaster.getUnitsInStore());
+
+		assertFalse(aToaster.tryReserve(-1));			// irregular case, unchanged
+		aToaster.release(-1);
+		assertEquals(1200, aToaster.getUnitsInStore());
+	}
+
+	@Test
+	public void test014_ConcurrentTryReserve() throws InterruptedException {
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					aToaster.tryReserve(1);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(0, aToaster.getUnitsInStore());	// never below zero, never lost updates
+	}
+
+	@Test
+	public void test015_SetTaxClass() {
+		assertEquals(TaxClass.STANDARD, aToaster.getTaxClass());	// default
+
+		aToaster.setTaxClass(TaxClass.REDUCED);
+		assertEquals(TaxClass.REDUCED, aToaster.getTaxClass());
+
+		aToaster.setTaxClass(null);
+		assertEquals(TaxClass.STANDARD, aToaster.getTaxClass());
+	}
+
 }
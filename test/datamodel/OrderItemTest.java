@@ -25,7 +25,7 @@ public class OrderItemTest {
 	/*
 	 * Test fixtures - objects needed to perform the tests
 	 */
-	private final Article aToaster = new Article( "SKU-868682", "Toaster", 2499, 1200 );
+	private final Article aToaster = new HeapArticle( "SKU-868682", "Toaster", 2499, 1200 );
 
 	private final OrderItem oiToaster = new OrderItem( aToaster.getDescription(), aToaster, 12 );
 
@@ -10,6 +10,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Date;
+import java.util.Iterator;
 
 import org.junit.FixMethodOrder;
 
@@ -31,8 +32,8 @@ public class OrderTest {
 	 */
 	private final Customer cEric = new Customer( "C86516", "Eric Schulz-Mueller", "eric2346@gmail.com" );
 
-	private final Article aToaster = new Article( "SKU-868682", "Toaster", 2499, 1200 );
-	private final Article aTeller = new Article( "SKU-638035", "Teller", 649, 7000 );
+	private final Article aToaster = new HeapArticle( "SKU-868682", "Toaster", 2499, 1200 );
+	private final Article aTeller = new HeapArticle( "SKU-638035", "Teller", 649, 7000 );
 
 	private final OrderItem oiToaster_3x = new OrderItem( aToaster.getDescription(), aToaster, 3 );
 	private final OrderItem oiTeller_4x = new OrderItem( aTeller.getDescription(), aTeller, 4 );
@@ -184,4 +185,75 @@ public class OrderTest {
 		assertEquals( o.count(), 0 );
 	}
 
+	@Test
+	public void test020_RunningValueAndUnits() {
+		Order o = oToaster;
+		assertEquals( 0L, o.getValue() );
+		o.addItem( oiToaster_3x ).addItem( oiTeller_4x );
+		assertEquals( 3 * 2499 + 4 * 649, o.getValue() );
+		assertEquals( 7L, o.getUnitsOrdered() );
+
+		oiTeller_4x.setUnitsOrdered( 5 );			// change of item updates order
+		assertEquals( 3 * 2499 + 5 * 649, o.getValue() );
+		assertEquals( 8L, o.getUnitsOrdered() );
+
+		o.removeItem( oiToaster_3x );
+		assertEquals( 5 * 649, o.getValue() );
+		assertEquals( 5L, o.getUnitsOrdered() );
+		assertNull( oiToaster_3x.getOrder() );
+
+		oiToaster_3x.setUnitsOrdered( 10 );			// removed item no longer affects order
+		assertEquals( 5 * 649, o.getValue() );
+
+		o.clearItems();
+		assertEquals( 0L, o.getValue() );
+		assertEquals( 0L, o.getUnitsOrdered() );
+		assertNull( oiTeller_4x.getOrder() );
+	}
+
+	@Test
+	public void test021_ItemOfOtherOrderNotAdded() {
+		Order o2 = new Order( 8592356245L, null, cEric );
+		oToaster.addItem( oiTeller_12x );
+		o2.addItem( oiTeller_12x );					// part of oToaster, o2 unchanged
+		assertEquals( 0, o2.count() );
+		assertEquals( 0L, o2.getValue() );
+		assertSame( oToaster, oiTeller_12x.getOrder() );
+
+		oToaster.removeItem( oiTeller_12x );		// removed item can be added to another order
+		o2.addItem( oiTeller_12x );
+		assertEquals( 1, o2.count() );
+		assertEquals( 12 * 649L, o2.getValue() );
+		assertSame( o2, oiTeller_12x.getOrder() );
+		assertEquals( 0, oToaster.count() );
+	}
+
+	@Test
+	public void test022_ItemsNotModifiable() {
+		oToaster.addItem( oiToaster_3x );
+		try {
+			Iterator<OrderItem> it = oToaster.getItems().iterator();
+			it.next();
+			it.remove();
+			fail( "UnsupportedOperationException expected" );
+		} catch( UnsupportedOperationException e ) { }
+		assertEquals( 1, oToaster.count() );
+	}
+
+	@Test
+	public void test023_LargeOrder() {
+		final int n = 100000;
+		OrderItem[] items = new OrderItem[ n ];
+		for( int i=0; i < n; i++ ) {
+			items[ i ] = new OrderItem( "Teller", aTeller, 1 );
+			oToaster.addItem( items[ i ] );
+			oToaster.addItem( items[ i ] );			// duplicate check in O(1)
+		}
+		assertEquals( n, oToaster.count() );
+		assertEquals( n * 649L, oToaster.getValue() );
+		int i = 0;
+		for( OrderItem oi : oToaster.getItems() ) {
+			assertSame( items[ i++ ], oi );			// insertion order
+		}
+	}
 }
@@ -0,0 +1,146 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.TaxClass;
+
+
+/**
+ *
+ * JUnit4 test code for Aggregates and AggregateKernels classes.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class AggregatesTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 20 );
+	private final Article aBrot = dataFactory.createArticle( "Brot", 349, 5 );
+
+	private final OrderProcessor orderProcessor = new OrderProcessor( new InventoryManager() );
+
+	private final List<AggregateKernels> kernels = new ArrayList<AggregateKernels>();
+
+	public AggregatesTest() {
+		aBrot.setTaxClass( TaxClass.REDUCED );
+		kernels.add( AggregateKernels.scalar() );
+		if( AggregateKernels.vector() != null ) {
+			kernels.add( AggregateKernels.vector() );
+		}
+	}
+
+
+	@Test
+	public void test001_KernelsAgreeWithPlainLoops() {
+		Random rnd = new Random( 42 );
+		for( int len : new int[] { 0, 1, 7, 8, 33, 1000, 4097 } ) {
+			long[] values = new long[ len ];
+			int[] units = new int[ len ];
+			byte[] live = new byte[ len ];
+			byte[] keys = new byte[ len ];
+			long sum = 0L, liveSum = 0L, below = 0L, liveBelow = 0L;
+			long[] sums = new long[ 4 ];
+			for( int i=0; i < len; i++ ) {
+				values[ i ] = rnd.nextInt( 100000 ) - 1000;
+				units[ i ] = rnd.nextInt( 100 );
+				live[ i ] = (byte)rnd.nextInt( 2 );
+				keys[ i ] = (byte)rnd.nextInt( 4 );
+				sum += values[ i ] * units[ i ];
+				liveSum += live[ i ] == 1? values[ i ] * units[ i ] : 0L;
+				below += units[ i ] < 10? 1 : 0;
+				liveBelow += units[ i ] < 10 && live[ i ] == 1? 1 : 0;
+				sums[ keys[ i ] ] += values[ i ];
+			}
+			for( AggregateKernels k : kernels ) {
+				String name = k.name() + ", len=" + len;
+				assertEquals( name, sum, k.sumOfProducts( values, units, null, len ) );
+				assertEquals( name, liveSum, k.sumOfProducts( values, units, live, len ) );
+				assertEquals( name, below, k.countBelow( units, null, len, 10 ) );
+				assertEquals( name, liveBelow, k.countBelow( units, live, len, 10 ) );
+				assertEquals( name, 0, k.countBelow( units, live, len, 0 ) );
+				long[] actual = new long[ 4 ];
+				k.sumByKey( values, keys, len, actual );
+				assertTrue( name, Arrays.equals( sums, actual ) );
+			}
+		}
+	}
+
+	@Test
+	public void test010_InventoryAggregates() {
+		ColumnarInventoryManager columnar = new ColumnarInventoryManager();
+		InventoryManager map = new InventoryManager();
+		columnar.add( aTasse ).add( aBrot );
+		map.add( aTasse ).add( aBrot );
+		for( AggregateKernels k : kernels ) {
+			for( Components.InventoryManager inventory : List.of( columnar, map ) ) {
+				Aggregates aggregates = new Aggregates( inventory, orderProcessor, k );
+				assertEquals( 299L * 20 + 349L * 5, aggregates.stockValue() );
+				assertEquals( 1, aggregates.countBelow( 10 ) );
+			}
+		}
+	}
+
+	@Test
+	public void test020_ItemValueAtCurrentPrices() {
+		List<Order> orders = new ArrayList<Order>();
+		for( int i=0; i < 3000; i++ ) {
+			orders.add( dataFactory.createOrder( cEric )
+				.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 2 ) )
+				.addItem( dataFactory.createOrderItem( "Brot", aBrot, 1 ) ) );
+		}
+		for( AggregateKernels k : kernels ) {
+			Aggregates aggregates = new Aggregates( new InventoryManager(), orderProcessor, k );
+			assertEquals( 3000L * ( 2 * 299 + 349 ), aggregates.itemValue( orders ) );
+		}
+		aTasse.setUnitPrice( 399 );		// booked order values unchanged, items at current price
+		for( AggregateKernels k : kernels ) {
+			Aggregates aggregates = new Aggregates( new InventoryManager(), orderProcessor, k );
+			assertEquals( 3000L * ( 2 * 399 + 349 ), aggregates.itemValue( orders ) );
+		}
+		assertEquals( 2 * 299 + 349, orders.get( 0 ).getValue() );
+	}
+
+	@Test
+	public void test030_VatByRate() {
+		List<Order> orders = new ArrayList<Order>();
+		for( int i=0; i < 5000; i++ ) {
+			Order o = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+			if( i % 2 == 0 ) {
+				o.addItem( dataFactory.createOrderItem( "Brot", aBrot, 3 ) );
+			}
+			orders.add( o );
+		}
+		final long standard = 5000L * 299;
+		final long reduced = 2500L * 3 * 349;
+		for( AggregateKernels k : kernels ) {
+			SortedMap<Integer, Long> vat = new Aggregates( new InventoryManager(), orderProcessor, k ).vatByRate( orders );
+			assertEquals( 2, vat.size() );
+			assertEquals( OrderProcessor.includedVat( standard, 1900, RoundingMode.HALF_UP ), (long)vat.get( 1900 ) );
+			assertEquals( OrderProcessor.includedVat( reduced, 700, RoundingMode.HALF_UP ), (long)vat.get( 700 ) );
+		}
+		assertEquals( 0, new Aggregates( new InventoryManager(), orderProcessor ).vatByRate( List.of() ).size() );
+	}
+
+}
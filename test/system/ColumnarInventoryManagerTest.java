@@ -0,0 +1,286 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.TaxClass;
+
+
+/**
+ *
+ * JUnit4 test code for ColumnarInventoryManager class.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class ColumnarInventoryManagerTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final ColumnarInventoryManager inventoryManager = new ColumnarInventoryManager();
+
+	private final Article aTasse = inventoryManager.createArticle( "SKU-900001", "Tasse", 299, 2000 );
+	private final Article aBecher = inventoryManager.createArticle( "SKU-900002", "Becher", 149, 8400 );
+
+
+	@Test
+	public void test001_EmptyInventory() {
+		assertEquals( 0, inventoryManager.count() );
+		assertFalse( inventoryManager.containsArticle( aTasse.getId() ) );
+		assertFalse( inventoryManager.containsArticle( null ) );
+		assertFalse( inventoryManager.getInventory().iterator().hasNext() );
+		assertEquals( 0, inventoryManager.stockValue() );	// created rows are not in inventory
+		assertEquals( 0, inventoryManager.countBelow( 10000 ) );
+	}
+
+	@Test
+	public void test010_AddCreatedArticles() {
+		inventoryManager.add( aTasse ).add( aBecher ).add( null );
+		assertEquals( 2, inventoryManager.count() );
+		assertSame( aBecher, inventoryManager.get( aBecher.getId() ).get() );
+
+		inventoryManager.add( inventoryManager.createArticle( aTasse.getId(), "Teller", 649, 1 ) );	// same id, unchanged
+		assertEquals( 2, inventoryManager.count() );
+		assertSame( aTasse, inventoryManager.get( aTasse.getId() ).get() );
+	}
+
+	@Test
+	public void test011_AddCopiesOtherArticles() {
+		Article aTeller = dataFactory.createArticle( "Teller", 649, 100 );
+		aTeller.setTaxClass( TaxClass.REDUCED );
+		inventoryManager.add( aTeller );
+		Article copy = inventoryManager.get( aTeller.getId() ).get();
+		assertNotSame( aTeller, copy );
+		assertEquals( "Teller", copy.getDescription() );
+		assertEquals( 649, copy.getUnitPrice() );
+		assertEquals( 100, copy.getUnitsInStore() );
+		assertEquals( TaxClass.REDUCED, copy.getTaxClass() );
+		copy.setUnitsInStore( 50 );
+		assertEquals( 100, aTeller.getUnitsInStore() );
+	}
+
+	@Test
+	public void test020_ViewsReadAndWriteColumns() {
+		assertEquals( "SKU-900001", aTasse.getId() );
+		assertEquals( "Tasse", aTasse.getDescription() );
+		assertEquals( TaxClass.STANDARD, aTasse.getTaxClass() );
+		aTasse.setDescription( null );
+		aTasse.setUnitPrice( -1 );
+		aTasse.setUnitsInStore( Integer.MAX_VALUE );
+		aTasse.setTaxClass( TaxClass.REDUCED );
+		assertEquals( "", aTasse.getDescription() );
+		assertEquals( 0, aTasse.getUnitPrice() );
+		assertEquals( 0, aTasse.getUnitsInStore() );
+		assertEquals( TaxClass.REDUCED, aTasse.getTaxClass() );
+		assertEquals( "Becher", aBecher.getDescription() );		// other row unchanged
+		assertEquals( 149, aBecher.getUnitPrice() );
+		assertEquals( 8400, aBecher.getUnitsInStore() );
+	}
+
+	@Test
+	public void test021_DescriptionsAreDictionaryEncoded() {
+		Article a1 = inventoryManager.createArticle( "SKU-900003", new String( "Kanne" ), 999, 1 );
+		Article a2 = inventoryManager.createArticle( "SKU-900004", new String( "Kanne" ), 1299, 1 );
+		assertEquals( "Kanne", a1.getDescription() );
+		assertSame( a1.getDescription(), a2.getDescription() );
+	}
+
+	@Test
+	public void test022_UnusedDescriptionsAreDropped() {
+		assertEquals( 2, inventoryManager.descriptions() );
+		for( int i=0; i < 1000; i++ ) {
+			aTasse.setDescription( "Tasse " + i );
+		}
+		assertEquals( 2, inventoryManager.descriptions() );
+		assertEquals( "Tasse 999", aTasse.getDescription() );
+		aTasse.setDescription( new String( "Becher" ) );
+		assertEquals( 1, inventoryManager.descriptions() );
+		assertSame( aBecher.getDescription(), aTasse.getDescription() );
+		aTasse.setDescription( "Tasse" );		// code of "Tasse 999" reused
+		assertEquals( "Tasse", aTasse.getDescription() );
+		assertEquals( "Becher", aBecher.getDescription() );
+	}
+
+	@Test
+	public void test030_RemoveAndAddAgain() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		inventoryManager.remove( aTasse );
+		assertEquals( 1, inventoryManager.count() );
+		assertFalse( inventoryManager.containsArticle( aTasse.getId() ) );
+		assertEquals( 149L * 8400, inventoryManager.stockValue() );
+		assertEquals( 2000, aTasse.getUnitsInStore() );		// removed view still readable
+
+		inventoryManager.remove( inventoryManager.createArticle( aBecher.getId(), "Becher", 149, 1 ) );	// other article, unchanged
+		assertEquals( 1, inventoryManager.count() );
+
+		inventoryManager.add( aTasse );
+		assertSame( aTasse, inventoryManager.get( aTasse.getId() ).get() );
+		assertEquals( 299L * 2000 + 149L * 8400, inventoryManager.stockValue() );
+
+		inventoryManager.clear();
+		assertEquals( 0, inventoryManager.count() );
+		assertEquals( 0, inventoryManager.stockValue() );
+	}
+
+	@Test
+	public void test031_RowsOfReclaimedViewsAreReused() throws InterruptedException {
+		inventoryManager.add( aTasse ).add( aBecher );
+		inventoryManager.remove( aTasse );		// still referred to, row is kept
+		addAndRemove( 100 );
+		for( int i=0; i < 200 && inventoryManager.freeRows() < 100; i++ ) {
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		assertEquals( 100, inventoryManager.freeRows() );
+		assertEquals( 2000, aTasse.getUnitsInStore() );
+		assertEquals( "Tasse", aTasse.getDescription() );
+		assertEquals( 2, inventoryManager.descriptions() );	// "Artikel" dropped with the rows
+
+		Article aTeller = inventoryManager.createArticle( "SKU-900006", "Teller", 649, 7 );	// reused row
+		assertEquals( 99, inventoryManager.freeRows() );
+		assertEquals( TaxClass.STANDARD, aTeller.getTaxClass() );
+		inventoryManager.add( aTeller );
+		assertEquals( 2, inventoryManager.count() );
+		assertEquals( 149L * 8400 + 649L * 7, inventoryManager.stockValue() );
+		assertEquals( 3, inventoryManager.descriptions() );
+	}
+
+	private void addAndRemove( int n ) {
+		for( int i=0; i < n; i++ ) {
+			Article a = inventoryManager.createArticle( String.format( "SKU-%06d", 920000 + i ), "Artikel", 100, 1 );
+			a.setTaxClass( TaxClass.REDUCED );
+			inventoryManager.add( a ).remove( a );
+		}
+	}
+
+	@Test
+	public void test040_ConcurrentReservationsOnColumns() throws InterruptedException {
+		final Article aTeller = inventoryManager.createArticle( "SKU-900005", "Teller", 649, 1000 );
+		inventoryManager.add( aTeller );
+		final AtomicInteger reserved = new AtomicInteger();
+		Thread[] threads = new Thread[ 4 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int i=0; i < 500; i++ ) {
+					if( aTeller.tryReserve( 1 ) ) {
+						reserved.incrementAndGet();
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		assertEquals( 1000, reserved.get() );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+		assertFalse( aTeller.tryReserve( 1 ) );
+		aTeller.release( 5 );
+		inventoryManager.restock( aTeller, 5 );
+		assertEquals( 10, aTeller.getUnitsInStore() );
+	}
+
+	@Test
+	public void test050_ScansOverManyChunks() {
+		long value = 0L;
+		long below = 0L;
+		for( int i=0; i < 10000; i++ ) {
+			Article a = inventoryManager.createArticle( String.format( "SKU-%06d", 910000 + i ), "Artikel", 100 + i % 7, i % 50 );
+			inventoryManager.add( a );
+			value += ( 100 + i % 7 ) * (long)( i % 50 );
+			below += i % 50 < 10? 1 : 0;
+		}
+		assertEquals( 10000, inventoryManager.count() );
+		assertEquals( value, inventoryManager.stockValue() );
+		assertEquals( below, inventoryManager.countBelow( 10 ) );
+		assertEquals( 10000, inventoryManager.countBelow( 50 ) );
+		assertEquals( 0, inventoryManager.countBelow( 0 ) );
+	}
+
+	@Test
+	public void test051_ScansWhileClearing() throws InterruptedException {
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread scanner = new Thread( () -> {
+			while( ! Thread.currentThread().isInterrupted() ) {
+				try {
+					inventoryManager.stockValue();
+					inventoryManager.countBelow( 10 );
+				} catch( RuntimeException e ) {
+					failures.incrementAndGet();
+				}
+			}
+		});
+		scanner.start();
+		for( int round=0; round < 20; round++ ) {
+			for( int i=0; i < 10000; i++ ) {
+				inventoryManager.add( inventoryManager.createArticle( String.format( "SKU-%06d", 930000 + i ), "Artikel", 100, 1 ) );
+			}
+			inventoryManager.clear();
+		}
+		scanner.interrupt();
+		scanner.join();
+		assertEquals( 0, failures.get() );
+		assertEquals( 0, inventoryManager.stockValue() );
+	}
+
+	@Test
+	public void test060_AcceptOrdersAgainstColumns() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+		OrderProcessor op = new OrderProcessor( inventoryManager );
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 2000 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 400 ) );
+		assertTrue( op.accept( o ) );
+		assertEquals( 0, aTasse.getUnitsInStore() );
+		assertEquals( 8000, aBecher.getUnitsInStore() );
+		assertEquals( 1, op.countBelow( 1 ) );
+		assertEquals( 149L * 8000, op.stockValue() );
+	}
+
+	@Test
+	public void test070_ReplayIntoColumnarInventory() throws IOException {
+		Path dir = Files.createTempDirectory( "journal" );
+		try {
+			Article aKanne = dataFactory.createArticle( "Kanne", 999, 30 );
+			try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+				journal.articleCreated( aKanne );
+				journal.stockReceived( aKanne, 12 );
+			}
+			try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+				assertEquals( 2, dataFactory.replay( journal, inventoryManager,
+					new CustomerRepository(), new OrderRepository() ) );
+			}
+			Article kanne = inventoryManager.get( aKanne.getId() ).get();
+			assertEquals( "Kanne", kanne.getDescription() );
+			assertEquals( 42, kanne.getUnitsInStore() );
+			assertEquals( 999L * 42, inventoryManager.stockValue() );
+		} finally {
+			try( Stream<Path> files = Files.walk( dir ) ) {
+				files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Customer;
+
+
+/**
+ * 
+ * JUnit4 test code for CustomerRepository class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class CustomerRepositoryTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final ComponentFactory componentFactory = ComponentFactory.getInstance();
+	private final Components.DataFactory dataFactory = componentFactory.getDataFactory();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Customer cAnne = dataFactory.createCustomer( "Anne Bayer", "anne24@yahoo.de" );
+	private final Customer cSandra = dataFactory.createCustomer( "Sandra Müller", "samue62@gmx.de" );
+	private final Customer cNadine = dataFactory.createCustomer( "Nadine Ulla Blumenfeld", "+4915292454" );
+	private final Customer cTimo = dataFactory.createCustomer( "Timo Werner", "tw@gmail.com" );
+	private final Customer cMuell = dataFactory.createCustomer( "Mülleimer, Sandra", "" );
+
+	private final CustomerRepository customerRepository = new CustomerRepository();
+
+
+	@Test
+	public void test001_CreatedCustomersAreStored() {
+		Components.CustomerRepository repository = componentFactory.getCustomerRepository();
+		assertTrue( repository.contains( cEric.getId() ) );
+		assertSame( cNadine, repository.get( cNadine.getId() ).get() );
+	}
+
+	@Test
+	public void test010_AddGetRemove() {
+		assertEquals( 0, customerRepository.count() );
+		customerRepository.add( cEric ).add( cAnne ).add( null );
+		assertEquals( 2, customerRepository.count() );
+		assertSame( cAnne, customerRepository.get( cAnne.getId() ).get() );
+		assertFalse( customerRepository.get( null ).isPresent() );
+		assertFalse( customerRepository.contains( cTimo.getId() ) );
+
+		customerRepository.add( cEric );		// same id, unchanged
+		assertEquals( 2, customerRepository.count() );
+
+		customerRepository.remove( cEric );
+		assertEquals( 1, customerRepository.count() );
+		assertFalse( customerRepository.contains( cEric.getId() ) );
+		assertTrue( customerRepository.findByLastName( "Schulz", 10 ).isEmpty() );
+	}
+
+	@Test
+	public void test020_FindByNamePrefix() {
+		customerRepository.add( cEric ).add( cAnne ).add( cSandra ).add( cNadine ).add( cTimo ).add( cMuell );
+		assertEquals( List.of( cMuell, cSandra ), customerRepository.findByLastName( "mül", 10 ) );
+		assertEquals( List.of( cSandra ), customerRepository.findByLastName( "Müller", 10 ) );
+		assertEquals( List.of( cMuell ), customerRepository.findByLastName( "mül", 1 ) );
+		assertEquals( List.of( cNadine ), customerRepository.findByFirstName( "NADINE", 10 ) );
+		assertEquals( 2, customerRepository.findByFirstName( "Sandra", 10 ).size() );
+		assertEquals( 6, customerRepository.findByLastName( "", 100 ).size() );
+		assertTrue( customerRepository.findByLastName( "X", 10 ).isEmpty() );
+		assertTrue( customerRepository.findByLastName( null, 10 ).isEmpty() );
+		assertTrue( customerRepository.findByLastName( "", 0 ).isEmpty() );
+
+		cAnne.setLastName( "Meyer" );		// index keeps name at add(), remove() still finds it
+		customerRepository.remove( cAnne );
+		assertTrue( customerRepository.findByLastName( "Bayer", 10 ).isEmpty() );
+		assertEquals( 5, customerRepository.count() );
+	}
+
+	@Test
+	public void test030_ConcurrentAddAndSearch() throws InterruptedException {
+		final int threads = 4, perThread = 2000;
+		final AtomicInteger misses = new AtomicInteger();
+		Thread[] workers = new Thread[ threads ];
+		for( int t=0; t < threads; t++ ) {
+			final String lastName = "Name" + t;
+			workers[ t ] = new Thread( () -> {
+				for( int i=0; i < perThread; i++ ) {
+					Customer c = dataFactory.createCustomer( "Kunde " + lastName, "" );
+					customerRepository.add( c );
+					if( customerRepository.findByLastName( lastName, perThread ).size() != i + 1 ) {
+						misses.incrementAndGet();
+					}
+				}
+				dataFactory.releaseIds();
+			});
+			workers[ t ].start();
+		}
+		for( Thread w : workers ) {
+			w.join();
+		}
+		assertEquals( 0, misses.get() );
+		assertEquals( threads * perThread, customerRepository.count() );
+		assertEquals( perThread, customerRepository.findByFirstName( "kunde", Integer.MAX_VALUE ).size() / threads );
+	}
+}
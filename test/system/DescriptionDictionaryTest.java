@@ -0,0 +1,117 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.OrderItem;
+
+
+/**
+ *
+ * JUnit4 test code for DescriptionDictionary class.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class DescriptionDictionaryTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DescriptionDictionary dictionary = new DescriptionDictionary( 1000 );
+
+
+	@Test
+	public void test001_EqualDescriptionsShareInstance() {
+		String kanne = new String( "Kanne aus Porzellan" );
+		assertSame( kanne, dictionary.intern( kanne ) );
+		assertSame( kanne, dictionary.intern( new String( "Kanne aus Porzellan" ) ) );
+		assertNull( dictionary.intern( null ) );
+		assertEquals( "", dictionary.intern( "" ) );
+	}
+
+	@Test
+	public void test002_CapacityIsRoundedToPowerOfTwo() {
+		assertEquals( 1024, dictionary.capacity() );
+		assertEquals( 2, new DescriptionDictionary( 1 ).capacity() );
+		assertEquals( 0, new DescriptionDictionary( 0 ).capacity() );
+		try {
+			new DescriptionDictionary( -1 );
+			throw new AssertionError( "capacity must not be negative" );
+		} catch( IllegalArgumentException e ) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test010_LongDescriptionsAndNoCapacityAreNotKept() {
+		StringBuilder sb = new StringBuilder();
+		for( int i=0; i <= DescriptionDictionary.MAX_LENGTH; i++ ) {
+			sb.append( 'x' );
+		}
+		String longDescr = sb.toString();
+		dictionary.intern( longDescr );
+		assertNotSame( longDescr, dictionary.intern( new String( longDescr ) ) );
+		DescriptionDictionary none = new DescriptionDictionary( 0 );
+		String tasse = new String( "Tasse" );
+		none.intern( tasse );
+		assertNotSame( tasse, none.intern( new String( "Tasse" ) ) );
+	}
+
+	@Test
+	public void test020_DictionaryIsBounded() {
+		for( int i=0; i < 100000; i++ ) {
+			String descr = "Artikel " + i;
+			assertEquals( descr, dictionary.intern( descr ) );	// replaced entries never change descriptions
+		}
+		assertEquals( 1024, dictionary.capacity() );
+		String recent = dictionary.intern( "Artikel 99999" );
+		assertSame( recent, dictionary.intern( new String( "Artikel 99999" ) ) );
+	}
+
+	@Test
+	public void test030_ConcurrentInterning() throws InterruptedException {
+		final String[][] results = new String[ 4 ][ 100 ];
+		Thread[] threads = new Thread[ results.length ];
+		for( int t=0; t < threads.length; t++ ) {
+			final String[] r = results[ t ];
+			threads[ t ] = new Thread( () -> {
+				for( int round=0; round < 100; round++ ) {
+					for( int i=0; i < r.length; i++ ) {
+						r[ i ] = dictionary.intern( "Tasse " + i );
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		for( String[] r : results ) {
+			for( int i=0; i < r.length; i++ ) {
+				assertEquals( "Tasse " + i, r[ i ] );
+				String shared = dictionary.intern( r[ i ] );
+				assertSame( shared, dictionary.intern( new String( r[ i ] ) ) );
+			}
+		}
+	}
+
+	@Test
+	public void test040_DataFactoryDeduplicatesDescriptions() {
+		DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+		Article aKanne = dataFactory.createArticle( "Kanne", 1999, 10 );
+		OrderItem i1 = dataFactory.createOrderItem( aKanne.getDescription() + " aus Porzellan", aKanne, 1 );
+		OrderItem i2 = dataFactory.createOrderItem( aKanne.getDescription() + " aus Porzellan", aKanne, 2 );
+		assertEquals( "Kanne aus Porzellan", i1.getDescription() );
+		assertSame( i1.getDescription(), i2.getDescription() );
+	}
+
+}
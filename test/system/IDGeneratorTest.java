@@ -0,0 +1,213 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+
+/**
+ * 
+ * JUnit4 test code for IDGenerator class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class IDGeneratorTest {
+
+	@Test
+	public void test001_IdFormats() {
+		String cid = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 5 ).nextId();
+		assertTrue( cid, cid.matches( "C[0-9]{5}" ) );
+		String aid = new IDGenerator( "SKU-", IDGenerator.IDTYPE.NUM, 6 ).nextId();
+		assertTrue( aid, aid.matches( "SKU-[0-9]{6}" ) );
+		String hid = new IDGenerator( IDGenerator.IDTYPE.HEX, 10 ).nextId();
+		assertTrue( hid, hid.matches( "[0-9A-F]{10}" ) );
+		IDGenerator oidGen = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true );
+		for( int i=0; i < 1000; i++ ) {
+			long oid = oidGen.nextIdAsLong();
+			assertTrue( oid >= 1000000000L && oid <= 9999999999L );
+		}
+	}
+
+	@Test
+	public void test002_IdSpaceUniqueAndExhausted() {
+		IDGenerator gen = new IDGenerator( "X", IDGenerator.IDTYPE.NUM, 3 );
+		Set<String> ids = new HashSet<String>();
+		for( int i=0; i < 1000; i++ ) {
+			assertTrue( ids.add( gen.nextId() ) );
+		}
+		try {
+			gen.nextId();
+			fail( "IllegalStateException expected" );
+		} catch( IllegalStateException e ) { }
+	}
+
+	@Test
+	public void test003_IdsLookRandom() {
+		IDGenerator gen = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true );
+		long a = gen.nextIdAsLong();
+		long b = gen.nextIdAsLong();
+		assertTrue( Math.abs( a - b ) > 1000 );
+	}
+
+	@Test
+	public void test004_Permutation() {
+		IDGenerator gen = new IDGenerator( "SKU-", IDGenerator.IDTYPE.NUM, 6 );
+		for( long x=0; x < gen.capacity(); x += 7 ) {
+			long y = gen.permute( x );
+			assertTrue( y >= 0 && y < gen.capacity() );
+			assertEquals( x, gen.unpermute( y ) );
+		}
+	}
+
+	@Test
+	public void test005_KeysAreRandom() {
+		IDGenerator gen1 = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true );
+		IDGenerator gen2 = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true );
+		boolean differ = false;
+		for( int i=0; i < 10; i++ ) {
+			differ |= gen1.permute( i ) != gen2.permute( i );
+		}
+		assertTrue( differ );
+		long key = IDGenerator.newKey();
+		IDGenerator gen3 = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true, 0, key );
+		IDGenerator gen4 = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 10, true, 0, key );
+		for( int i=0; i < 10; i++ ) {
+			assertEquals( gen3.permute( i ), gen4.permute( i ) );
+		}
+	}
+
+	@Test
+	public void test010_ConcurrentUnique() throws InterruptedException {
+		final IDGenerator gen = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 6 );
+		final Set<String> ids = ConcurrentHashMap.newKeySet();
+		final int threads = 8, perThread = 100000;
+		Thread[] workers = new Thread[ threads ];
+		for( int t=0; t < threads; t++ ) {
+			workers[ t ] = new Thread( () -> {
+				for( int i=0; i < perThread; i++ ) {
+					ids.add( gen.nextId() );
+				}
+			});
+			workers[ t ].start();
+		}
+		for( Thread w : workers ) {
+			w.join();
+		}
+		assertEquals( threads * perThread, ids.size() );
+	}
+
+	@Test
+	public void test020_Reserve() {
+		final long key = IDGenerator.newKey();
+		IDGenerator gen1 = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 4, false, 0, key );
+		Set<String> issued = new HashSet<String>();
+		for( int i=0; i < 5000; i++ ) {
+			issued.add( gen1.nextId() );
+		}
+		// same configuration and key after restart: reserve restored ids
+		IDGenerator gen2 = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 4, false, 0, key );
+		for( String id : issued ) {
+			assertTrue( gen2.reserve( id ) );
+		}
+		for( int i=0; i < 5000; i++ ) {
+			assertFalse( issued.contains( gen2.nextId() ) );
+		}
+		assertFalse( gen2.reserve( "SKU-1234" ) );
+		assertFalse( gen2.reserve( "C12A4" ) );
+		assertFalse( gen2.reserve( "C123" ) );
+	}
+
+	@Test
+	public void test030_ReleasedBlocksAreReused() throws InterruptedException {
+		final IDGenerator gen = new IDGenerator( "X", IDGenerator.IDTYPE.NUM, 3, false, 64 );
+		final Set<String> ids = ConcurrentHashMap.newKeySet();
+		Thread worker = new Thread( () -> {
+			for( int i=0; i < 10; i++ ) {
+				ids.add( gen.nextId() );
+			}
+			gen.release();
+		});
+		worker.start();
+		worker.join();
+		for( int i=10; i < 1000; i++ ) {
+			assertTrue( ids.add( gen.nextId() ) );
+		}
+		try {
+			gen.nextId();
+			fail( "IllegalStateException expected" );
+		} catch( IllegalStateException e ) { }
+	}
+
+	@Test
+	public void test031_ShortLivedThreadsWasteNoIdsOfSmallSpaces() throws InterruptedException {
+		final IDGenerator gen = new IDGenerator( "C", IDGenerator.IDTYPE.NUM, 5 );
+		final Set<String> ids = ConcurrentHashMap.newKeySet();
+		for( int t=0; t < 100; t++ ) {
+			Thread worker = new Thread( () -> ids.add( gen.nextId() ) );	// ends without release()
+			worker.start();
+			worker.join();
+		}
+		while( ids.size() < gen.capacity() ) {
+			assertTrue( ids.add( gen.nextId() ) );
+		}
+		try {
+			gen.nextId();
+			fail( "IllegalStateException expected" );
+		} catch( IllegalStateException e ) { }
+	}
+
+	@Test
+	public void test032_BlocksOfShortLivedThreadsAreReturned() throws InterruptedException {
+		// 4-digit order ids in blocks of 64: 141 blocks, far fewer than threads
+		final IDGenerator gen = new IDGenerator( "", IDGenerator.IDTYPE.NUM, 4, true, 64 );
+		final Set<Long> ids = ConcurrentHashMap.newKeySet();
+		for( int t=0; t < 2000; t++ ) {
+			Thread worker = new Thread( () -> ids.add( nextIdOrCollect( gen ) ) );	// ends without release()
+			worker.start();
+			worker.join();
+		}
+		assertEquals( 2000, ids.size() );
+		while( ids.size() < gen.capacity() ) {
+			assertTrue( ids.add( nextIdOrCollect( gen ) ) );
+		}
+		try {
+			gen.nextIdAsLong();
+			fail( "IllegalStateException expected" );
+		} catch( IllegalStateException e ) { }
+	}
+
+	/*
+	 * Take next id, collect garbage while the id space is exhausted such that
+	 * blocks of ended threads are returned.
+	 */
+	private static long nextIdOrCollect( IDGenerator gen ) {
+		final long deadline = System.currentTimeMillis() + 10_000L;
+		while( true ) {
+			try {
+				return gen.nextIdAsLong();
+			} catch( IllegalStateException e ) {
+				if( System.currentTimeMillis() > deadline ) {
+					throw e;
+				}
+				System.gc();
+				try {
+					Thread.sleep( 10 );
+				} catch( InterruptedException ie ) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+
+
+/**
+ * 
+ * JUnit4 test code for InventoryManager class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class InventoryManagerTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final Components.DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 2000 );
+	private final Article aBecher = dataFactory.createArticle( "Becher", 149, 8400 );
+
+	private final InventoryManager inventoryManager = new InventoryManager();
+
+
+	@Test
+	public void test001_EmptyInventory() {
+		assertEquals( 0, inventoryManager.count() );
+		assertFalse( inventoryManager.containsArticle( aTasse.getId() ) );
+		assertFalse( inventoryManager.containsArticle( null ) );
+		assertFalse( inventoryManager.get( aTasse.getId() ).isPresent() );
+		assertFalse( inventoryManager.getInventory().iterator().hasNext() );
+	}
+
+	@Test
+	public void test010_AddArticles() {
+		inventoryManager.add( aTasse ).add( aBecher ).add( null );
+		assertEquals( 2, inventoryManager.count() );
+		assertTrue( inventoryManager.containsArticle( aTasse.getId() ) );
+		assertSame( aBecher, inventoryManager.get( aBecher.getId() ).get() );
+
+		inventoryManager.add( aTasse );		// same id, inventory unchanged
+		assertEquals( 2, inventoryManager.count() );
+	}
+
+	@Test
+	public void test020_RemoveArticles() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		inventoryManager.remove( aTasse );
+		assertEquals( 1, inventoryManager.count() );
+		assertFalse( inventoryManager.containsArticle( aTasse.getId() ) );
+
+		inventoryManager.remove( aTasse );	// double removal, inventory unchanged
+		assertEquals( 1, inventoryManager.count() );
+
+		inventoryManager.clear();
+		assertEquals( 0, inventoryManager.count() );
+	}
+
+	@Test
+	public void test030_InventoryViewIsReadOnlyAndLive() {
+		Iterable<Article> inventory = inventoryManager.getInventory();
+		inventoryManager.add( aTasse );
+		Iterator<Article> it = inventory.iterator();
+		assertSame( aTasse, it.next() );	// view reflects later additions
+		try {
+			it.remove();
+			throw new AssertionError( "inventory view must be read-only" );
+		} catch( UnsupportedOperationException e ) {
+			// expected
+		}
+		assertEquals( 1, inventoryManager.count() );
+	}
+
+	@Test
+	public void test040_RestockAddsUnitsOfArticlesInInventory() {
+		inventoryManager.add( aTasse );
+		inventoryManager.restock( aTasse, 50 ).restock( aBecher, 50 );
+		assertEquals( 2050, aTasse.getUnitsInStore() );
+		assertEquals( 8400, aBecher.getUnitsInStore() );	// not in inventory, unchanged
+		try {
+			inventoryManager.restock( aTasse, 0 );
+			throw new AssertionError( "units must be positive" );
+		} catch( IllegalArgumentException e ) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test050_StockValueAndCountBelow() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		assertEquals( 299L * 2000 + 149L * 8400, inventoryManager.stockValue() );
+		assertEquals( 1, inventoryManager.countBelow( 8400 ) );
+		assertEquals( 2, inventoryManager.countBelow( 8401 ) );
+		assertEquals( 0, inventoryManager.countBelow( 0 ) );
+	}
+
+}
@@ -0,0 +1,304 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.TaxClass;
+
+
+/**
+ *
+ * JUnit4 test code for OffHeapInventoryManager class.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OffHeapInventoryManagerTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final OffHeapInventoryManager inventoryManager = new OffHeapInventoryManager();
+
+	private final Article aTasse = inventoryManager.createArticle( "SKU-800001", "Tasse", 299, 2000 );
+	private final Article aBecher = inventoryManager.createArticle( "SKU-800002", "Becher", 149, 8400 );
+
+
+	@Test
+	public void test001_EmptyInventory() {
+		assertEquals( 0, inventoryManager.count() );
+		assertFalse( inventoryManager.containsArticle( aTasse.getId() ) );
+		assertFalse( inventoryManager.getInventory().iterator().hasNext() );
+		assertEquals( 0, inventoryManager.stockValue() );	// created slots are not in inventory
+		assertEquals( 0, inventoryManager.countBelow( 10000 ) );
+	}
+
+	@Test
+	public void test010_AddCreatedAndOtherArticles() {
+		inventoryManager.add( aTasse ).add( aBecher ).add( null );
+		assertEquals( 2, inventoryManager.count() );
+		assertSame( aBecher, inventoryManager.get( aBecher.getId() ).get() );
+
+		Article aTeller = dataFactory.createArticle( "Teller", 649, 100 );
+		aTeller.setTaxClass( TaxClass.REDUCED );
+		inventoryManager.add( aTeller );
+		Article copy = inventoryManager.get( aTeller.getId() ).get();
+		assertNotSame( aTeller, copy );
+		assertEquals( "Teller", copy.getDescription() );
+		assertEquals( 649, copy.getUnitPrice() );
+		assertEquals( 100, copy.getUnitsInStore() );
+		assertEquals( TaxClass.REDUCED, copy.getTaxClass() );
+	}
+
+	@Test
+	public void test020_ViewsReadAndWriteSlots() {
+		aTasse.setDescription( "Kanne aus Porzellan, weiß" );
+		aTasse.setUnitPrice( Long.MAX_VALUE );
+		aTasse.setUnitsInStore( -5 );
+		aTasse.setTaxClass( null );
+		assertEquals( "SKU-800001", aTasse.getId() );
+		assertEquals( "Kanne aus Porzellan, weiß", aTasse.getDescription() );
+		assertEquals( 0, aTasse.getUnitPrice() );
+		assertEquals( 0, aTasse.getUnitsInStore() );
+		assertEquals( TaxClass.STANDARD, aTasse.getTaxClass() );
+		assertEquals( "Becher", aBecher.getDescription() );		// other slot unchanged
+		assertEquals( 149, aBecher.getUnitPrice() );
+		assertEquals( 8400, aBecher.getUnitsInStore() );
+		aBecher.setDescription( null );
+		assertEquals( "", aBecher.getDescription() );
+	}
+
+	@Test
+	public void test021_DescriptionAreaGrows() {
+		StringBuilder sb = new StringBuilder();
+		for( int i=0; i < 1000; i++ ) {
+			sb.append( "Porzellan " );
+		}
+		String descr = sb.toString();
+		for( int i=0; i < 20; i++ ) {		// 200 kB, more than the initial area
+			aTasse.setDescription( descr + i );
+		}
+		assertEquals( descr + 19, aTasse.getDescription() );
+		assertEquals( "Becher", aBecher.getDescription() );		// written before the area grew
+	}
+
+	@Test
+	public void test022_EqualDescriptionsAreStoredOnce() {
+		Article a1 = inventoryManager.createArticle( "SKU-800003", new String( "Kanne" ), 999, 1 );
+		Article a2 = inventoryManager.createArticle( "SKU-800004", new String( "Kanne" ), 1299, 1 );
+		assertEquals( "Kanne", a1.getDescription() );
+		assertSame( a1.getDescription(), a2.getDescription() );	// decoded once
+		aTasse.setDescription( "Kanne" );		// "Tasse" is dropped
+		long bytes = inventoryManager.descriptionBytes();
+		for( int i=0; i < 1000; i++ ) {
+			aTasse.setDescription( i % 2 == 0? "Becher" : "Kanne" );
+		}
+		assertEquals( bytes, inventoryManager.descriptionBytes() );
+		assertEquals( "Kanne", aTasse.getDescription() );
+		StringBuilder sb = new StringBuilder();
+		for( int i=0; i < 10000; i++ ) {
+			sb.append( "Porzellan " );		// longer than a chunk of the area
+		}
+		aBecher.setDescription( sb.toString() );
+		a1.setDescription( "Teller" );
+		assertEquals( sb.toString(), aBecher.getDescription() );
+		assertEquals( "Teller", a1.getDescription() );
+		assertEquals( "Kanne", a2.getDescription() );
+	}
+
+	@Test
+	public void test023_UnusedDescriptionsAreDropped() {
+		assertEquals( 2, inventoryManager.descriptions() );
+		long bytes = inventoryManager.descriptionBytes();
+		for( int i=0; i < 1000; i++ ) {
+			aTasse.setDescription( "Tasse " + i );
+		}
+		assertEquals( 2, inventoryManager.descriptions() );
+		assertEquals( bytes, inventoryManager.descriptionBytes() );		// space of dropped records reused
+		assertEquals( "Tasse 999", aTasse.getDescription() );
+		aTasse.setDescription( new String( "Becher" ) );
+		assertEquals( 1, inventoryManager.descriptions() );
+		assertSame( aBecher.getDescription(), aTasse.getDescription() );
+		aTasse.setDescription( "Tasse" );		// space of "Tasse 999" reused
+		assertEquals( "Tasse", aTasse.getDescription() );
+		assertEquals( "Becher", aBecher.getDescription() );
+		assertEquals( bytes, inventoryManager.descriptionBytes() );
+		inventoryManager.clear();
+		assertEquals( 0, inventoryManager.descriptions() );
+		assertEquals( "Tasse", aTasse.getDescription() );		// detached view reads its area
+	}
+
+	@Test
+	public void test024_ReadsWhileRecordsAreReused() throws InterruptedException {
+		final AtomicInteger torn = new AtomicInteger();
+		final Thread reader = new Thread( () -> {
+			while( ! Thread.currentThread().isInterrupted() ) {
+				if( ! aTasse.getDescription().matches( "Tasse [0-9]+" ) ) {
+					torn.incrementAndGet();
+				}
+			}
+		});
+		aTasse.setDescription( "Tasse 0" );
+		reader.start();
+		for( int i=1; i < 20000; i++ ) {
+			aTasse.setDescription( "Tasse " + i );		// drops the record read before and reuses its space
+		}
+		reader.interrupt();
+		reader.join();
+		assertEquals( 0, torn.get() );
+	}
+
+	@Test
+	public void test030_RemoveAddAgainAndClear() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		inventoryManager.remove( aTasse );
+		assertEquals( 1, inventoryManager.count() );
+		assertEquals( 149L * 8400, inventoryManager.stockValue() );
+		assertEquals( 2000, aTasse.getUnitsInStore() );		// removed view still readable
+
+		inventoryManager.add( aTasse );
+		assertSame( aTasse, inventoryManager.get( aTasse.getId() ).get() );
+		assertEquals( 299L * 2000 + 149L * 8400, inventoryManager.stockValue() );
+
+		inventoryManager.clear();
+		assertEquals( 0, inventoryManager.count() );
+		assertEquals( 0, inventoryManager.stockValue() );
+		inventoryManager.add( aTasse );		// detached view is copied
+		assertNotSame( aTasse, inventoryManager.get( aTasse.getId() ).get() );
+		assertEquals( 299L * 2000, inventoryManager.stockValue() );
+	}
+
+	@Test
+	public void test031_SlotsOfReclaimedViewsAreReused() throws InterruptedException {
+		inventoryManager.add( aTasse ).add( aBecher );
+		inventoryManager.remove( aTasse );		// still referred to, slot is kept
+		createAndRemove( 100, true );
+		createAndRemove( 50, false );		// created, never added
+		for( int i=0; i < 200 && inventoryManager.freeSlots() < 150; i++ ) {
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		assertEquals( 150, inventoryManager.freeSlots() );
+		assertEquals( 2000, aTasse.getUnitsInStore() );
+		assertEquals( "Tasse", aTasse.getDescription() );
+		assertEquals( 2, inventoryManager.descriptions() );	// "Artikel" dropped with the slots
+
+		Article aTeller = inventoryManager.createArticle( "SKU-800006", "Teller", 649, 7 );	// reused slot
+		assertEquals( 149, inventoryManager.freeSlots() );
+		assertEquals( TaxClass.STANDARD, aTeller.getTaxClass() );
+		inventoryManager.add( aTeller );
+		assertEquals( 2, inventoryManager.count() );
+		assertEquals( 149L * 8400 + 649L * 7, inventoryManager.stockValue() );
+		assertEquals( 3, inventoryManager.descriptions() );
+	}
+
+	private void createAndRemove( int n, boolean add ) {
+		for( int i=0; i < n; i++ ) {
+			Article a = inventoryManager.createArticle( String.format( "SKU-%06d", add? 820000 + i : 821000 + i ), "Artikel", 100, 1 );
+			a.setTaxClass( TaxClass.REDUCED );
+			if( add ) {
+				inventoryManager.add( a ).remove( a );
+			}
+		}
+	}
+
+	@Test
+	public void test040_ConcurrentReservationsOnSlots() throws InterruptedException {
+		final Article aTeller = inventoryManager.createArticle( "SKU-800005", "Teller", 649, 1000 );
+		inventoryManager.add( aTeller );
+		final AtomicInteger reserved = new AtomicInteger();
+		Thread[] threads = new Thread[ 4 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int i=0; i < 500; i++ ) {
+					if( aTeller.tryReserve( 1 ) ) {
+						reserved.incrementAndGet();
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		assertEquals( 1000, reserved.get() );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+		assertFalse( aTeller.tryReserve( 1 ) );
+		inventoryManager.restock( aTeller, 7 );
+		assertEquals( 7, aTeller.getUnitsInStore() );
+	}
+
+	@Test
+	public void test050_ScansOverManyChunks() {
+		long value = 0L;
+		long below = 0L;
+		for( int i=0; i < 10000; i++ ) {
+			Article a = inventoryManager.createArticle( String.format( "SKU-%06d", 810000 + i ), "Artikel", 100 + i % 7, i % 50 );
+			inventoryManager.add( a );
+			value += ( 100 + i % 7 ) * (long)( i % 50 );
+			below += i % 50 < 10? 1 : 0;
+		}
+		assertEquals( 10000, inventoryManager.count() );
+		assertEquals( value, inventoryManager.stockValue() );
+		assertEquals( below, inventoryManager.countBelow( 10 ) );
+		assertEquals( 0, inventoryManager.countBelow( 0 ) );
+	}
+
+	@Test
+	public void test051_ScansWhileClearing() throws InterruptedException {
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread scanner = new Thread( () -> {
+			while( ! Thread.currentThread().isInterrupted() ) {
+				try {
+					inventoryManager.stockValue();
+					inventoryManager.countBelow( 10 );
+				} catch( RuntimeException e ) {
+					failures.incrementAndGet();
+				}
+			}
+		});
+		scanner.start();
+		for( int round=0; round < 20; round++ ) {
+			for( int i=0; i < 10000; i++ ) {
+				inventoryManager.add( inventoryManager.createArticle( String.format( "SKU-%06d", 830000 + i ), "Artikel", 100, 1 ) );
+			}
+			inventoryManager.clear();
+		}
+		scanner.interrupt();
+		scanner.join();
+		assertEquals( 0, failures.get() );
+		assertEquals( 0, inventoryManager.stockValue() );
+	}
+
+	@Test
+	public void test060_AcceptOrdersAgainstSlots() {
+		inventoryManager.add( aTasse ).add( aBecher );
+		Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+		OrderProcessor op = new OrderProcessor( inventoryManager, OrderProcessor.StockMode.OPTIMISTIC );
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 2000 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 400 ) );
+		assertTrue( op.accept( o ) );
+		assertEquals( 0, aTasse.getUnitsInStore() );
+		assertEquals( 8000, aBecher.getUnitsInStore() );
+		assertFalse( op.accept( dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) ) ) );
+		assertEquals( 2000 * 299 + 400 * 149, o.getValue() );
+	}
+
+}
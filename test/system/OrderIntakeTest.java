@@ -0,0 +1,140 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * 
+ * JUnit4 test code for OrderIntake class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OrderIntakeTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final ComponentFactory componentFactory = ComponentFactory.getInstance();
+	private final Components.DataFactory dataFactory = componentFactory.getDataFactory();
+	private final OrderProcessor orderProcessor = componentFactory.getOrderProcessor();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 1000 );
+
+
+	@Test
+	public void test001_SubmitCompletesFuture() throws InterruptedException, ExecutionException {
+		try( OrderIntake intake = new OrderIntake( orderProcessor, 16 ) ) {
+			Order ok = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 10 ) );
+			Order tooMany = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 5000 ) );
+			assertTrue( intake.submit( ok ).get() );
+			List<Order> rejected = new ArrayList<Order>();
+			assertFalse( intake.submit( tooMany, null, rejected::add, null ).get() );
+			assertEquals( List.of( tooMany ), rejected );
+			assertEquals( 990, aTasse.getUnitsInStore() );
+		}
+	}
+
+	@Test
+	public void test010_ManyProducersNeverOversell() throws InterruptedException, ExecutionException {
+		final int producers = 8, perProducer = 250;
+		final List<CompletableFuture<Boolean>> futures = new ArrayList<CompletableFuture<Boolean>>();
+		try( OrderIntake intake = new OrderIntake( orderProcessor, 32 ) ) {
+			Thread[] threads = new Thread[ producers ];
+			for( int p=0; p < producers; p++ ) {
+				threads[ p ] = new Thread( () -> {
+					try {
+						for( int i=0; i < perProducer; i++ ) {
+							Order o = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+							CompletableFuture<Boolean> f = intake.submit( o );
+							synchronized( futures ) {
+								futures.add( f );
+							}
+						}
+					} catch( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+					}
+					dataFactory.releaseIds();
+				});
+				threads[ p ].start();
+			}
+			for( Thread t : threads ) {
+				t.join();
+			}
+		}
+		int accepted = 0;
+		for( CompletableFuture<Boolean> f : futures ) {
+			assertTrue( f.isDone() );		// close() waits for orders in flight
+			accepted += f.get()? 1 : 0;
+		}
+		assertEquals( producers * perProducer, futures.size() );
+		assertEquals( 1000, accepted );
+		assertEquals( 0, aTasse.getUnitsInStore() );
+	}
+
+	@Test
+	public void test020_Backpressure() throws InterruptedException {
+		final int maxInFlight = 2;
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final AtomicInteger submitted = new AtomicInteger();
+		try( OrderIntake intake = new OrderIntake( orderProcessor, maxInFlight ) ) {
+			Thread producer = new Thread( () -> {
+				try {
+					for( int i=0; i < 3; i++ ) {
+						Order o = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+						intake.submit( o, order -> {
+							try {
+								release.await();
+							} catch( InterruptedException e ) { }
+						}, null, null );
+						submitted.incrementAndGet();
+					}
+				} catch( InterruptedException e ) { }
+			});
+			producer.start();
+			long deadline = System.currentTimeMillis() + 5000;
+			while( submitted.get() < maxInFlight && System.currentTimeMillis() < deadline ) {
+				Thread.sleep( 1 );
+			}
+			Thread.sleep( 50 );
+			assertEquals( maxInFlight, submitted.get() );		// third submit blocks
+			assertEquals( maxInFlight, intake.inFlight() );
+			release.countDown();
+			producer.join( TimeUnit.SECONDS.toMillis( 5 ) );
+			assertEquals( 3, submitted.get() );
+		}
+	}
+
+	@Test
+	public void test030_SubmitAfterCloseRejected() throws InterruptedException {
+		OrderIntake intake = new OrderIntake( orderProcessor, 4 );
+		intake.close();
+		try {
+			intake.submit( dataFactory.createOrder( cEric ) );
+			fail( "RejectedExecutionException expected" );
+		} catch( RejectedExecutionException e ) { }
+		assertEquals( 0, intake.inFlight() );
+	}
+}
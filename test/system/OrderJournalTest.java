@@ -0,0 +1,273 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+
+
+/**
+ *
+ * JUnit4 test code for OrderJournal class.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OrderJournalTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 20 );
+	private final Article aBecher = dataFactory.createArticle( "Becher", 149, 10 );
+
+	private final Path dir;
+
+	public OrderJournalTest() throws IOException {
+		this.dir = Files.createTempDirectory( "journal" );
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try( Stream<Path> files = Files.walk( dir ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+		}
+	}
+
+
+	@Test
+	public void test001_ReplayRebuildsState() throws IOException {
+		final Order o;
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTasse ).add( aBecher );
+			journal.articleCreated( aTasse );
+			journal.articleCreated( aBecher );
+			journal.customerCreated( cEric, "Eric Schulz-Mueller" );
+			OrderProcessor op = new OrderProcessor( inventory, new VatRateTable(),
+				OrderProcessor.StockMode.LOCKING, RoundingMode.HALF_UP, journal, null );
+			o = dataFactory.createOrder( cEric )
+				.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+				.addItem( dataFactory.createOrderItem( "Becher", aBecher, 2 ) );
+			assertTrue( op.accept( o ) );
+			assertTrue( journal.durable() >= journal.end() );	// accept waited for commit
+			inventory.restock( aTasse, 5 );
+		}
+		InventoryManager inventory = new InventoryManager();
+		CustomerRepository customers = new CustomerRepository();
+		OrderRepository orders = new OrderRepository();
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			assertEquals( 5, dataFactory.replay( journal, inventory, customers, orders ) );
+		}
+		assertEquals( 2, inventory.count() );
+		Article tasse = inventory.get( aTasse.getId() ).get();
+		assertEquals( "Tasse", tasse.getDescription() );
+		assertEquals( 299, tasse.getUnitPrice() );
+		assertEquals( 20 - 4 + 5, tasse.getUnitsInStore() );
+		assertEquals( 10 - 2, inventory.get( aBecher.getId() ).get().getUnitsInStore() );
+		Customer eric = customers.get( cEric.getId() ).get();
+		assertEquals( "Eric", eric.getFirstName() );
+		assertEquals( "Schulz-Mueller", eric.getLastName() );
+		Order order = orders.get( o.getId() ).get();
+		assertEquals( o.getDate(), order.getDate() );
+		assertEquals( eric, order.getCustomer() );
+		assertEquals( 2, order.count() );
+		assertEquals( o.getValue(), order.getValue() );
+		for( OrderItem item : order.getItems() ) {
+			assertTrue( item.getArticle() == tasse || item.getArticle().getId().equals( aBecher.getId() ) );
+		}
+	}
+
+	@Test
+	public void test002_TornTailIsDiscarded() throws IOException {
+		final long end;
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			journal.articleCreated( aTasse );
+			journal.stockReceived( aTasse, 1 );
+			end = journal.end();
+		}
+		// record header of a record that was not completely written
+		try( FileChannel ch = FileChannel.open( segments().get( 0 ), StandardOpenOption.WRITE ) ) {
+			ch.write( ByteBuffer.allocate( 12 ).putInt( 20 ).putInt( 0xCAFE ).putInt( 0x12345678 ).flip(), end );
+		}
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			assertEquals( end, journal.end() );
+			assertEquals( 2, journal.replay( new Counter() ) );
+			journal.stockReceived( aTasse, 2 );
+			journal.commit( journal.end() );
+		}
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			Counter counter = new Counter();
+			assertEquals( 3, journal.replay( counter ) );
+			assertEquals( 3, counter.units );
+		}
+	}
+
+	@Test
+	public void test003_SegmentsRollOver() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			for( int i=0; i < 200; i++ ) {
+				journal.stockReceived( aTasse, 1 );
+			}
+		}
+		assertTrue( segments().size() > 5 );
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			Counter counter = new Counter();
+			assertEquals( 200, journal.replay( counter ) );
+			assertEquals( 200, counter.units );
+		}
+	}
+
+	@Test
+	public void test004_CorruptSegmentIsDetected() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			for( int i=0; i < 200; i++ ) {
+				journal.stockReceived( aTasse, 1 );
+			}
+		}
+		try( FileChannel ch = FileChannel.open( segments().get( 0 ), StandardOpenOption.WRITE ) ) {
+			ch.write( ByteBuffer.wrap( new byte[] { 'X' } ), OrderJournal.SEGMENT_HEADER_SIZE + 12 );
+		}
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			journal.replay( new Counter() );
+			fail( "corrupt segment not detected" );
+		} catch( IllegalStateException e ) {
+			assertTrue( e.getMessage().startsWith( "corrupt journal record" ) );
+		}
+	}
+
+	@Test
+	public void test005_ConcurrentCommitsShareFlushes() throws IOException, InterruptedException {
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 1000 );
+		final AtomicInteger accepted = new AtomicInteger();
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 20, true ) ) {
+			final InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTeller );
+			journal.articleCreated( aTeller );
+			journal.customerCreated( cEric, "Eric Schulz-Mueller" );
+			final OrderProcessor op = new OrderProcessor( inventory, new VatRateTable(),
+				OrderProcessor.StockMode.OPTIMISTIC, RoundingMode.HALF_UP, journal, null );
+			Thread[] threads = new Thread[ 8 ];
+			for( int t=0; t < threads.length; t++ ) {
+				threads[ t ] = new Thread( () -> {
+					for( int i=0; i < 200; i++ ) {
+						Order o = dataFactory.createOrder( cEric )
+							.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) );
+						if( op.accept( o ) ) {
+							accepted.incrementAndGet();
+						}
+					}
+				});
+				threads[ t ].start();
+			}
+			for( Thread t : threads ) {
+				t.join();
+			}
+		}
+		assertEquals( 1000, accepted.get() );
+		InventoryManager inventory = new InventoryManager();
+		CustomerRepository customers = new CustomerRepository();
+		OrderRepository orders = new OrderRepository();
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 20, true ) ) {
+			assertEquals( 2 + 1000, dataFactory.replay( journal, inventory, customers, orders ) );
+		}
+		assertEquals( 1000, orders.count() );
+		assertEquals( 0, inventory.get( aTeller.getId() ).get().getUnitsInStore() );
+	}
+
+	@Test
+	public void test006_CreateAndRestockAreCommitted() throws IOException, InterruptedException {
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, true ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTasse );
+			inventory.restock( aTasse, 3 );
+			assertEquals( journal.end(), journal.durable() );		// restock waited for commit
+		}
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			long durable = journal.durable();
+			long lsn = journal.stockReceived( aTasse, 1 );
+			Thread.sleep( 5 * OrderJournal.FLUSH_INTERVAL_MILLIS );
+			assertEquals( durable, journal.durable() );		// flusher waits for a request
+			journal.commit( lsn );		// requests flush, does not wait
+			for( int i=0; i < 100 && journal.durable() < lsn; i++ ) {
+				Thread.sleep( OrderJournal.FLUSH_INTERVAL_MILLIS );
+			}
+			assertEquals( lsn, journal.durable() );
+		}
+	}
+
+	@Test
+	public void test007_IdKeyIsKeptAfterTruncate() throws IOException {
+		final long key;
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			key = journal.idKey();
+			for( int i=0; i < 200; i++ ) {
+				journal.stockReceived( aTasse, 1 );
+			}
+			assertTrue( journal.truncate( journal.end() ) > 0 );
+		}
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			assertEquals( key, journal.idKey() );
+		}
+		Path other = Files.createTempDirectory( "journal" );
+		try( OrderJournal journal = new OrderJournal( other, 1024, false ) ) {
+			assertTrue( key != journal.idKey() );
+		} finally {
+			try( Stream<Path> files = Files.walk( other ) ) {
+				files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+			}
+		}
+	}
+
+	private List<Path> segments() throws IOException {
+		try( Stream<Path> files = Files.list( dir ) ) {
+			return files.sorted().toList();
+		}
+	}
+
+	/*
+	 * Replayer that adds up units received.
+	 */
+	private static final class Counter implements OrderJournal.Replayer {
+		int units = 0;
+
+		@Override
+		public void articleCreated( String id, String descr, long price, int units, datamodel.TaxClass taxClass ) { }
+
+		@Override
+		public void customerCreated( String id, String name, String contact ) { }
+
+		@Override
+		public void orderAccepted( long id, long date, String customerId, String[] descrs, String[] articleIds, int[] units ) { }
+
+		@Override
+		public void stockReceived( String articleId, int units ) {
+			this.units += units;
+		}
+	}
+}
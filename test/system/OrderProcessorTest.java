@@ -0,0 +1,438 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+import datamodel.TaxClass;
+
+
+/**
+ * 
+ * JUnit4 test code for OrderProcessor class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OrderProcessorTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final ComponentFactory componentFactory = ComponentFactory.getInstance();
+	private final Components.DataFactory dataFactory = componentFactory.getDataFactory();
+	private final Components.OrderProcessor orderProcessor = componentFactory.getOrderProcessor();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 20 );
+	private final Article aBecher = dataFactory.createArticle( "Becher", 149, 10 );
+
+
+	@Test
+	public void test001_AcceptOrder() {
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 10 ) );
+		assertTrue( orderProcessor.accept( o ) );
+		assertEquals( 16, aTasse.getUnitsInStore() );
+		assertEquals( 0, aBecher.getUnitsInStore() );
+	}
+
+	@Test
+	public void test002_RejectOrderLeavesInventoryUnchanged() {
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 11 ) );
+		List<OrderItem> rejectedItems = new ArrayList<OrderItem>();
+		List<Order> rejectedOrders = new ArrayList<Order>();
+		boolean accepted = orderProcessor.accept( o,
+			order -> { throw new AssertionError( "order must not be accepted" ); },
+			rejectedOrders::add, rejectedItems::add );
+		assertFalse( accepted );
+		assertEquals( 1, rejectedOrders.size() );
+		assertEquals( 1, rejectedItems.size() );
+		assertSame( aBecher, rejectedItems.get( 0 ).getArticle() );
+		assertEquals( 20, aTasse.getUnitsInStore() );
+		assertEquals( 10, aBecher.getUnitsInStore() );
+	}
+
+	@Test
+	public void test003_UnitsOfSameArticleAreAddedUp() {
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 12 ) )
+			.addItem( dataFactory.createOrderItem( "passende Tassen", aTasse, 12 ) );
+		assertFalse( orderProcessor.accept( o ) );
+		assertEquals( 20, aTasse.getUnitsInStore() );
+	}
+
+	@Test
+	public void test004_OrderValue() {
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 10 ) );
+		assertEquals( 4 * 299 + 10 * 149, orderProcessor.orderValue( o ) );
+		assertEquals( 0, orderProcessor.orderValue( dataFactory.createOrder( cEric ) ) );
+		assertEquals( 0, orderProcessor.orderValue( null ) );
+	}
+
+	@Test
+	public void test010_ConcurrentOrdersNeverOversell() throws InterruptedException {
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 1000 );
+		final Article aKanne = dataFactory.createArticle( "Kanne", 2000, 100000 );
+		final AtomicInteger accepted = new AtomicInteger();
+		Thread[] threads = new Thread[ 8 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int i=0; i < 500; i++ ) {
+					// alternate article order to provoke lock-order deadlocks
+					Order o = ( i % 2 == 0 )?
+						dataFactory.createOrder( cEric )
+							.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) )
+							.addItem( dataFactory.createOrderItem( "Kanne", aKanne, 1 ) ) :
+						dataFactory.createOrder( cEric )
+							.addItem( dataFactory.createOrderItem( "Kanne", aKanne, 1 ) )
+							.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) );
+					if( orderProcessor.accept( o ) ) {
+						accepted.incrementAndGet();
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		assertEquals( 1000, accepted.get() );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+		assertEquals( 100000 - 1000, aKanne.getUnitsInStore() );
+	}
+
+	@Test
+	public void test020_OptimisticModeRollsBackReservations() {
+		OrderProcessor optimistic = new OrderProcessor( componentFactory.getInventoryManager(),
+			OrderProcessor.StockMode.OPTIMISTIC );
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 11 ) );
+		List<OrderItem> rejectedItems = new ArrayList<OrderItem>();
+		assertFalse( optimistic.accept( o, null, null, rejectedItems::add ) );
+		assertEquals( 1, rejectedItems.size() );
+		assertEquals( 20, aTasse.getUnitsInStore() );	// reservation of Tasse rolled back
+		assertEquals( 10, aBecher.getUnitsInStore() );
+
+		Order o2 = dataFactory.createOrder( cEric )
+			.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+			.addItem( dataFactory.createOrderItem( "Becher", aBecher, 10 ) );
+		assertTrue( optimistic.accept( o2 ) );
+		assertEquals( 16, aTasse.getUnitsInStore() );
+		assertEquals( 0, aBecher.getUnitsInStore() );
+	}
+
+	@Test
+	public void test030_AcceptAllValidatesInBatchOrder() {
+		for( OrderProcessor.StockMode mode : OrderProcessor.StockMode.values() ) {
+			OrderProcessor op = new OrderProcessor( componentFactory.getInventoryManager(), mode );
+			Article aTeller = dataFactory.createArticle( "Teller", 649, 10 );
+			Order o1 = dataFactory.createOrder( cEric )
+				.addItem( dataFactory.createOrderItem( "Teller", aTeller, 6 ) );
+			Order o2 = dataFactory.createOrder( cEric )		// exceeds stock left by o1
+				.addItem( dataFactory.createOrderItem( "Teller", aTeller, 6 ) )
+				.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+			Order o3 = dataFactory.createOrder( cEric )
+				.addItem( dataFactory.createOrderItem( "Teller", aTeller, 4 ) )
+				.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 2 ) );
+			List<Order> accepted = new ArrayList<Order>();
+			List<Order> rejected = new ArrayList<Order>();
+			List<OrderItem> rejectedItems = new ArrayList<OrderItem>();
+			int n = op.acceptAll( List.of( o1, o2, o3 ), accepted::add, rejected::add, rejectedItems::add );
+			assertEquals( 2, n );
+			assertEquals( List.of( o1, o3 ), accepted );
+			assertEquals( List.of( o2 ), rejected );
+			assertEquals( 1, rejectedItems.size() );
+			assertSame( aTeller, rejectedItems.get( 0 ).getArticle() );
+			assertEquals( 0, aTeller.getUnitsInStore() );
+			assertEquals( 18, aTasse.getUnitsInStore() );
+			aTasse.setUnitsInStore( 20 );
+			op.close();
+		}
+	}
+
+	@Test
+	public void test031_RingModeConcurrentOrdersNeverOversell() throws InterruptedException {
+		final OrderProcessor ring = new OrderProcessor( componentFactory.getInventoryManager(),
+			OrderProcessor.StockMode.RING );
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 1000 );
+		final Article aKanne = dataFactory.createArticle( "Kanne", 2000, 100000 );
+		final AtomicInteger accepted = new AtomicInteger();
+		Thread[] threads = new Thread[ 8 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int i=0; i < 500; i++ ) {
+					Order o = dataFactory.createOrder( cEric )
+						.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) )
+						.addItem( dataFactory.createOrderItem( "Kanne", aKanne, 1 ) );
+					if( ring.accept( o ) ) {
+						accepted.incrementAndGet();
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		ring.close();
+		assertEquals( 1000, accepted.get() );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+		assertEquals( 100000 - 1000, aKanne.getUnitsInStore() );
+	}
+
+	@Test
+	public void test032_RingModeAcceptAllLargerThanWindow() {
+		final OrderProcessor ring = new OrderProcessor( componentFactory.getInventoryManager(),
+			OrderProcessor.StockMode.RING );
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 150 );
+		List<Order> orders = new ArrayList<Order>();
+		for( int i=0; i < 200; i++ ) {
+			orders.add( dataFactory.createOrder( cEric )
+				.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) ) );
+		}
+		List<Order> accepted = new ArrayList<Order>();
+		assertEquals( 150, ring.acceptAll( orders, accepted::add, null, null ) );
+		assertEquals( orders.subList( 0, 150 ), accepted );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+		ring.close();
+	}
+
+	@Test
+	public void test033_StockChangedOutsideLocksRejectsOrder() {
+		for( OrderProcessor.StockMode mode : List.of( OrderProcessor.StockMode.LOCKING, OrderProcessor.StockMode.RING ) ) {
+			for( boolean batch : new boolean[] { false, true } ) {
+				OrderProcessor op = new OrderProcessor( drainingInventory(), mode );
+				Order o = dataFactory.createOrder( cEric )
+					.addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) )
+					.addItem( dataFactory.createOrderItem( "Becher", aBecher, 4 ) );
+				String name = mode + ( batch? " batch" : "" );
+				if( batch ) {
+					assertEquals( name, 0, op.acceptAll( List.of( o ), null, null, null ) );
+				} else {
+					assertFalse( name, op.accept( o ) );
+				}
+				op.close();
+				assertTrue( name, aTasse.getUnitsInStore() == 0 && aBecher.getUnitsInStore() == 10
+					|| aTasse.getUnitsInStore() == 20 && aBecher.getUnitsInStore() == 0 );	// only drained, no units taken
+				aTasse.setUnitsInStore( 20 );
+				aBecher.setUnitsInStore( 10 );
+			}
+		}
+	}
+
+	@Test
+	public void test034_RingBufferFullBlocksProducers() throws InterruptedException {
+		final AtomicInteger handled = new AtomicInteger();
+		final StockRingBuffer ring = new StockRingBuffer( 4, demand -> {
+			handled.incrementAndGet();
+			return null;
+		});
+		Thread[] threads = new Thread[ 8 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int i=0; i < 1000; i++ ) {
+					assertEquals( null, ring.await( ring.publish( Map.of() ) ) );
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+		ring.close();
+		assertEquals( 4, ring.capacity() );
+		assertEquals( 8000, handled.get() );
+	}
+
+	@Test
+	public void test035_RingModeConcurrentAcceptAll() throws InterruptedException {
+		final OrderProcessor ring = new OrderProcessor( componentFactory.getInventoryManager(),
+			OrderProcessor.StockMode.RING );
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 6000 );
+		final AtomicInteger accepted = new AtomicInteger();
+		Thread[] threads = new Thread[ 128 ];		// more orders in flight than slots
+		for( int t=0; t < threads.length; t++ ) {
+			final List<Order> orders = new ArrayList<Order>();
+			for( int i=0; i < 64; i++ ) {
+				orders.add( dataFactory.createOrder( cEric )
+					.addItem( dataFactory.createOrderItem( "Teller", aTeller, 1 ) ) );
+			}
+			threads[ t ] = new Thread( () -> accepted.addAndGet( ring.acceptAll( orders, null, null, null ) ) );
+		}
+		for( Thread t : threads ) {
+			t.start();
+		}
+		for( Thread t : threads ) {
+			t.join( 60000 );
+			assertFalse( t.isAlive() );
+		}
+		ring.close();
+		assertEquals( 6000, accepted.get() );
+		assertEquals( 0, aTeller.getUnitsInStore() );
+	}
+
+	@Test
+	public void test036_RingBufferPublishMoreThanCapacityBeforeAwait() throws InterruptedException {
+		final StockRingBuffer ring = new StockRingBuffer( 4, demand -> null );
+		Thread[] threads = new Thread[ 8 ];
+		for( int t=0; t < threads.length; t++ ) {
+			threads[ t ] = new Thread( () -> {
+				for( int round=0; round < 100; round++ ) {
+					List<StockRingBuffer.Request> requests = new ArrayList<StockRingBuffer.Request>();
+					for( int i=0; i < 6; i++ ) {
+						requests.add( ring.publish( Map.of() ) );
+					}
+					for( StockRingBuffer.Request r : requests ) {
+						assertEquals( null, ring.await( r ) );
+					}
+				}
+			});
+			threads[ t ].start();
+		}
+		for( Thread t : threads ) {
+			t.join( 60000 );
+			assertFalse( t.isAlive() );
+		}
+		ring.close();
+	}
+
+	@Test
+	public void test037_RingBufferWriterSurvivesErrorsAndCloses() {
+		final StockRingBuffer ring = new StockRingBuffer( 4, demand -> {
+			if( demand.isEmpty() ) {
+				throw new AssertionError( "handler failed" );
+			}
+			return null;
+		});
+		try {
+			ring.await( ring.publish( Map.of() ) );
+			throw new IllegalStateException( "error of handler must be rethrown" );
+		} catch( AssertionError e ) {
+			assertEquals( "handler failed", e.getMessage() );
+		}
+		assertEquals( null, ring.await( ring.publish( Map.of( aTasse, new long[] { 1L } ) ) ) );
+		ring.close();
+		try {
+			ring.publish( Map.of() );
+			throw new AssertionError( "closed ring must reject requests" );
+		} catch( IllegalStateException e ) {
+			// expected
+		}
+	}
+
+	/*
+	 * Inventory that takes all units of the first article checked when the next
+	 * one is checked, as if stock was changed outside of OrderProcessor.
+	 */
+	private Components.InventoryManager drainingInventory() {
+		final Components.InventoryManager inventory = componentFactory.getInventoryManager();
+		final List<String> checked = new ArrayList<String>();
+		return new Components.InventoryManager() {
+			public boolean containsArticle( String id ) {
+				if( checked.size() == 1 ) {
+					inventory.get( checked.get( 0 ) ).get().setUnitsInStore( 0 );
+				}
+				checked.add( id );
+				return inventory.containsArticle( id );
+			}
+			public Iterable<Article> getInventory() { return inventory.getInventory(); }
+			public Optional<Article> get( String id ) { return inventory.get( id ); }
+			public long count() { return inventory.count(); }
+			public Article createArticle( String id, String descr, long price, int units ) { return inventory.createArticle( id, descr, price, units ); }
+			public Components.InventoryManager add( Article article ) { inventory.add( article ); return this; }
+			public Components.InventoryManager remove( Article article ) { inventory.remove( article ); return this; }
+			public Components.InventoryManager restock( Article article, int units ) { inventory.restock( article, units ); return this; }
+			public long stockValue() { return inventory.stockValue(); }
+			public long countBelow( int threshold ) { return inventory.countBelow( threshold ); }
+			public void clear() { inventory.clear(); }
+		};
+	}
+
+	@Test
+	public void test040_Vat() {
+		assertEquals( 796L, orderProcessor.vat( 4984L ) );		// 49,84 EUR include 7,96 EUR at 19%
+		assertEquals( 19L, orderProcessor.vat( 119L, 1 ) );
+		assertEquals( 7L, orderProcessor.vat( 107L, 2 ) );
+		assertEquals( -796L, orderProcessor.vat( -4984L ) );
+		assertEquals( 0L, orderProcessor.vat( 4984L, 3 ) );		// unknown rate index
+		assertEquals( 0L, orderProcessor.vat( 0L ) );
+
+		VatRateTable table = new VatRateTable();
+		table.define( TaxClass.STANDARD, new Date( System.currentTimeMillis() - 1000L ), 2500 );
+		OrderProcessor op = new OrderProcessor( new InventoryManager(), table, OrderProcessor.StockMode.LOCKING, RoundingMode.HALF_UP );
+		assertEquals( 19L, op.vat( 119L, 1 ) );		// rate indexes are fixed, independent of date and table
+		assertEquals( 25L, op.vat( 125L, TaxClass.STANDARD, null ) );
+	}
+
+	@Test
+	public void test043_VatOfOrderPerTaxClass() {
+		Article aBuch = dataFactory.createArticle( "Buch", 1070, 10 );
+		aBuch.setTaxClass( TaxClass.REDUCED );
+		OrderItem oiTasse = dataFactory.createOrderItem( "Tasse", aTasse, 4 );
+		Order o = dataFactory.createOrder( cEric )
+			.addItem( oiTasse )
+			.addItem( dataFactory.createOrderItem( "Buch", aBuch, 1 ) );
+		assertEquals( 1196L, o.getValue( TaxClass.STANDARD ) );
+		assertEquals( 1070L, o.getValue( TaxClass.REDUCED ) );
+		assertEquals( 191L + 70L, orderProcessor.vat( o ) );	// 19% of 11,96 EUR, 7% of 10,70 EUR
+
+		oiTasse.setUnitsOrdered( 2 );
+		assertEquals( 598L, o.getValue( TaxClass.STANDARD ) );
+		assertEquals( 95L + 70L, orderProcessor.vat( o ) );
+		o.clearItems();
+		assertEquals( 0L, orderProcessor.vat( o ) );
+		assertEquals( 0L, orderProcessor.vat( (Order)null ) );
+	}
+
+	@Test
+	public void test041_VatMatchesExactDecimalArithmetic() {
+		final BigDecimal[] rates = { new BigDecimal( "0.19" ), new BigDecimal( "0.07" ) };
+		for( long gross = 0; gross < 100000; gross += 7 ) {
+			for( int r = 0; r < rates.length; r++ ) {
+				BigDecimal g = BigDecimal.valueOf( gross );
+				long expected = g.multiply( rates[ r ] )
+					.divide( BigDecimal.ONE.add( rates[ r ] ), 0, RoundingMode.HALF_UP ).longValueExact();
+				assertEquals( expected, orderProcessor.vat( gross, r + 1 ) );
+			}
+		}
+		assertEquals( 1597583460L, orderProcessor.vat( 10005917458L ) );	// no overflow for large values
+	}
+
+	@Test
+	public void test042_VatRounding() {
+		// 100% rate yields ties at odd gross values: 1 -> 0.5, 3 -> 1.5
+		assertEquals( 1L, OrderProcessor.includedVat( 1L, 10000L, RoundingMode.HALF_UP ) );
+		assertEquals( 0L, OrderProcessor.includedVat( 1L, 10000L, RoundingMode.HALF_EVEN ) );
+		assertEquals( 2L, OrderProcessor.includedVat( 3L, 10000L, RoundingMode.HALF_UP ) );
+		assertEquals( 2L, OrderProcessor.includedVat( 3L, 10000L, RoundingMode.HALF_EVEN ) );
+		assertEquals( -1L, OrderProcessor.includedVat( -1L, 10000L, RoundingMode.HALF_UP ) );
+		assertEquals( 0L, OrderProcessor.includedVat( -1L, 10000L, RoundingMode.HALF_EVEN ) );
+	}
+
+}
@@ -0,0 +1,156 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * 
+ * JUnit4 test code for OrderRepository and LongObjectMap classes.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OrderRepositoryTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final ComponentFactory componentFactory = ComponentFactory.getInstance();
+	private final Components.DataFactory dataFactory = componentFactory.getDataFactory();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Customer cAnne = dataFactory.createCustomer( "Anne Bayer", "anne24@yahoo.de" );
+
+	private final OrderRepository orderRepository = new OrderRepository();
+
+
+	@Test
+	public void test001_AcceptedOrdersAreStored() {
+		Article aTasse = dataFactory.createArticle( "Tasse", 299, 5 );
+		Order o = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 5 ) );
+		Order rejected = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+		Components.OrderRepository repository = componentFactory.getOrderRepository();
+		assertFalse( repository.contains( o.getId() ) );		// created orders are not stored
+		assertTrue( componentFactory.getOrderProcessor().accept( o ) );
+		assertFalse( componentFactory.getOrderProcessor().accept( rejected ) );
+		assertTrue( repository.contains( o.getId() ) );
+		assertSame( o, repository.get( o.getId() ).get() );
+		assertFalse( repository.contains( rejected.getId() ) );
+	}
+
+	@Test
+	public void test010_AddGetRemove() {
+		Order o1 = dataFactory.createOrder( cEric );
+		Order o2 = dataFactory.createOrder( cAnne );
+		Order o3 = dataFactory.createOrder( cAnne );
+		assertEquals( 0, orderRepository.count() );
+		orderRepository.add( o1 ).add( o2 ).add( o3 ).add( null );
+		assertEquals( 3, orderRepository.count() );
+		assertSame( o1, orderRepository.get( o1.getId() ).get() );
+		assertSame( o3, orderRepository.get( o3.getId() ).get() );
+		assertFalse( orderRepository.get( 0L ).isPresent() );
+
+		orderRepository.add( o1 );		// same id, unchanged
+		assertEquals( 3, orderRepository.count() );
+
+		orderRepository.remove( o1 ).remove( o3 );
+		assertEquals( 1, orderRepository.count() );
+		assertFalse( orderRepository.contains( o1.getId() ) );
+		assertFalse( orderRepository.contains( o3.getId() ) );
+		assertTrue( orderRepository.findByCustomer( cEric ).isEmpty() );
+		assertEquals( List.of( o2 ), orderRepository.findByCustomer( cAnne ) );
+	}
+
+	@Test
+	public void test020_FindByDate() {
+		Date before = new Date( System.currentTimeMillis() - 1 );
+		for( int i=0; i < 1000; i++ ) {
+			orderRepository.add( dataFactory.createOrder( i % 3 == 0? cEric : cAnne ) );
+		}
+		Date after = new Date( System.currentTimeMillis() + 1 );
+		List<Order> range = orderRepository.findByDate( before, after );
+		assertEquals( 1000, range.size() );
+		for( int i=1; i < range.size(); i++ ) {
+			assertTrue( range.get( i - 1 ).getDate().compareTo( range.get( i ).getDate() ) <= 0 );
+		}
+		assertEquals( 1000, orderRepository.findByDate( null, null ).size() );
+		assertEquals( 0, orderRepository.findByDate( after, null ).size() );
+		assertEquals( 0, orderRepository.findByDate( null, before ).size() );
+		assertEquals( 0, orderRepository.findByDate( after, before ).size() );
+		assertEquals( 334, orderRepository.findByCustomer( cEric ).size() );
+		assertEquals( 666, orderRepository.findByCustomer( cAnne ).size() );
+		assertEquals( 0, orderRepository.findByCustomer( null ).size() );
+
+		orderRepository.clear();
+		assertEquals( 0, orderRepository.count() );
+		assertEquals( 0, orderRepository.findByDate( null, null ).size() );
+	}
+
+	@Test
+	public void test030_LongObjectMap() {
+		LongObjectMap<String> map = new LongObjectMap<String>( 4 );
+		for( long k=1; k <= 100000; k++ ) {
+			assertNull( map.put( k * 7919, "v" + k ) );
+		}
+		assertEquals( 100000, map.size() );
+		for( long k=1; k <= 100000; k += 2 ) {
+			assertEquals( "v" + k, map.remove( k * 7919 ) );
+		}
+		assertEquals( 50000, map.size() );
+		for( long k=1; k <= 100000; k++ ) {
+			assertEquals( k % 2 == 0? "v" + k : null, map.get( k * 7919 ) );
+		}
+		assertEquals( "v2", map.put( 2 * 7919, "w" ) );
+		assertEquals( "w", map.get( 2 * 7919 ) );
+		assertNull( map.put( 0L, "zero" ) );
+		assertEquals( "zero", map.get( 0L ) );
+		assertEquals( 50001, map.size() );
+		assertEquals( "zero", map.remove( 0L ) );
+		assertNull( map.get( 0L ) );
+	}
+
+	@Test
+	public void test040_ConcurrentAddAndGet() throws InterruptedException {
+		final int threads = 8, perThread = 20000;
+		final AtomicInteger misses = new AtomicInteger();
+		Thread[] workers = new Thread[ threads ];
+		for( int t=0; t < threads; t++ ) {
+			workers[ t ] = new Thread( () -> {
+				long[] ids = new long[ perThread ];
+				for( int i=0; i < perThread; i++ ) {
+					Order o = dataFactory.createOrder( cEric );
+					ids[ i ] = o.getId();
+					orderRepository.add( o );
+					if( ! orderRepository.contains( ids[ i ] ) || ! orderRepository.contains( ids[ i / 2 ] ) ) {
+						misses.incrementAndGet();
+					}
+				}
+				dataFactory.releaseIds();
+			});
+			workers[ t ].start();
+		}
+		for( Thread w : workers ) {
+			w.join();
+		}
+		assertEquals( 0, misses.get() );
+		assertEquals( threads * perThread, orderRepository.count() );
+		assertEquals( threads * perThread, orderRepository.findByCustomer( cEric ).size() );
+	}
+}
@@ -0,0 +1,172 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ * 
+ * JUnit4 test code for OutputProcessor class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class OutputProcessorTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final ComponentFactory componentFactory = ComponentFactory.getInstance();
+	private final Components.DataFactory dataFactory = componentFactory.getDataFactory();
+	private final Components.OutputProcessor outputProcessor = componentFactory.getOutputProcessor();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Customer cSandra = dataFactory.createCustomer( "Sandra Müller", "samue62@gmx.de" );
+	private final Article aTeller = dataFactory.createArticle( "Teller", 649, 7000 );
+	private final Article aBecher = dataFactory.createArticle( "Becher", 149, 8400 );
+	private final Article aTee = dataFactory.createArticle( "Teekocher", 1999, 2000 );
+
+	private final Order o8592 = dataFactory.createOrder( cEric )
+		.addItem( dataFactory.createOrderItem( "Teller", aTeller, 4 ) )
+		.addItem( dataFactory.createOrderItem( "Becher", aBecher, 8 ) );
+	private final Order o8599 = dataFactory.createOrder( cSandra )
+		.addItem( dataFactory.createOrderItem( "Teekocher", aTee, 1 ) )
+		.addItem( dataFactory.createOrderItem( "Becher", aBecher, 4 ) )
+		.addItem( dataFactory.createOrderItem( "Teller", aTeller, 4 ) );
+
+
+	@Test
+	public void test001_PrintOrdersToAppendable() throws IOException {
+		StringWriter out = new StringWriter();
+		outputProcessor.printOrders( List.of( o8592, o8599 ), true, out );
+		String[] lines = out.toString().split( "\n" );
+		assertEquals( 6, lines.length );
+		assertEquals( "-------------", lines[ 0 ] );
+		assertTrue( lines[ 1 ].startsWith( "#" + o8592.getId() + ", Schulz-Mueller, Eric's Bestellung: 4x " ) );
+		assertEquals( 84, lines[ 1 ].length() );
+		assertEquals( "     37,88 EUR", lines[ 1 ].substring( 70 ) );
+		assertEquals( "#" + o8599.getId() + ", Müller, Sandra's Bestellung: 1x Teekocher 4x Becher 4x Teller 51,91 EUR", lines[ 2 ] );
+		assertEquals( "     89,79 EUR", lines[ 4 ].substring( 70 ) );
+		assertEquals( "Im Gesamtbetrag enthaltene Mehrwertsteuer (19%):", lines[ 5 ].substring( 0, 48 ) );
+		assertEquals( "     14,34 EUR", lines[ 5 ].substring( 70 ) );	// 6,05 + 8,29 EUR, VAT per order
+	}
+
+	@Test
+	public void test002_PrintOrdersToChannel() throws IOException {
+		StringWriter expected = new StringWriter();
+		outputProcessor.printOrders( List.of( o8592, o8599 ), true, expected );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WritableByteChannel channel = Channels.newChannel( bytes );
+		outputProcessor.printOrders( List.of( o8592, o8599 ), true, channel );
+		assertEquals( expected.toString(), new String( bytes.toByteArray(), StandardCharsets.UTF_8 ) );
+	}
+
+	@Test
+	public void test003_PrintOrdersParallel() throws IOException {
+		List<Order> orders = new ArrayList<Order>();
+		Article[] articles = { aTeller, aBecher, aTee };
+		for( int i=0; i < 3000; i++ ) {
+			Order o = dataFactory.createOrder( i % 2 == 0? cEric : cSandra );
+			for( int j=0; j <= i % 5; j++ ) {
+				Article a = articles[ ( i + j ) % articles.length ];
+				o.addItem( dataFactory.createOrderItem( a.getDescription(), a, 1 + ( i * 7 + j ) % 11 ) );
+			}
+			orders.add( o );
+		}
+		StringWriter expected = new StringWriter();
+		outputProcessor.printOrders( orders, true, expected );
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			StringWriter actual = new StringWriter();
+			outputProcessor.printOrders( orders, true, actual, pool );
+			assertEquals( expected.toString(), actual.toString() );
+
+			StringBuilder sb = new StringBuilder();
+			outputProcessor.printOrders( List.of( o8592, o8599 ), true, sb, pool );
+			StringWriter small = new StringWriter();
+			outputProcessor.printOrders( List.of( o8592, o8599 ), true, small );
+			assertEquals( small.toString(), sb.toString() );
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void test010_FmtPrice() {
+		assertEquals( "    2,99 EUR", outputProcessor.fmtPrice( 299, "EUR", 12 ) );
+		assertEquals( "     23,45 EUR", outputProcessor.fmtPrice( 2345, "EUR" ) );
+		assertEquals( "1.234.567,89 EUR", outputProcessor.fmtPrice( 123456789, "EUR", 12 ) );
+		assertEquals( "0,05", PriceFormatter.append( new StringBuilder(), 5 ).toString() );
+		assertEquals( "-0,05", PriceFormatter.append( new StringBuilder(), -5 ).toString() );
+		assertEquals( "-1.000,00", PriceFormatter.append( new StringBuilder(), -100000 ).toString() );
+		assertEquals( "92.233.720.368.547.758,07", PriceFormatter.append( new StringBuilder(), Long.MAX_VALUE ).toString() );
+		assertEquals( "-92.233.720.368.547.758,08", PriceFormatter.append( new StringBuilder(), Long.MIN_VALUE ).toString() );
+		assertEquals( PriceFormatter.MAX_LENGTH, PriceFormatter.length( Long.MIN_VALUE ) );
+	}
+
+	@Test
+	public void test011_FmtPriceMatchesDecimalFormat() {
+		DecimalFormat df = new DecimalFormat( "#,##0.00", new DecimalFormatSymbols( Locale.GERMAN ) );
+		for( long price = -2000000; price < 200000000; price += 997 ) {
+			String expected = df.format( price / 100.0 );
+			String actual = PriceFormatter.append( new StringBuilder(), price ).toString();
+			assertEquals( expected, actual );
+			assertEquals( expected.length(), PriceFormatter.length( price ) );
+		}
+	}
+
+	@Test
+	public void test012_Pad() {
+		OutputProcessor op = componentFactory.getOutputProcessor();
+		assertEquals( "   abc", op.pad( "abc", 6, true ) );
+		assertEquals( "abc   ", op.pad( "abc", 6, false ) );
+		assertEquals( "abcdef", op.pad( "abcdef", 3, true ) );
+	}
+
+	@Test
+	public void test020_FmtLine() {
+		final String price = "  9,99 EUR";
+		assertEquals( "abc         9,99 EUR", outputProcessor.fmtLine( "abc", price, 20 ).toString() );
+		// right part shifts into its leading spaces first
+		assertEquals( "abcdefghijk 9,99 EUR", outputProcessor.fmtLine( "abcdefghijk", price, 20 ).toString() );
+		// then left part is truncated by 1 char, "..", "..."
+		assertEquals( "abcdefghijk 9,99 EUR", outputProcessor.fmtLine( "abcdefghijkl", price, 20 ).toString() );
+		assertEquals( "abcdefghi.. 9,99 EUR", outputProcessor.fmtLine( "abcdefghijklm", price, 20 ).toString() );
+		assertEquals( "abcdefgh... 9,99 EUR", outputProcessor.fmtLine( "abcdefghijklmnop", price, 20 ).toString() );
+	}
+
+	@Test
+	public void test021_LineLayoutKeepsWidthForLongLeftParts() {
+		LineLayout line = new LineLayout( 30 );
+		for( int i=0; i < 10000; i++ ) {		// long B2B order, only first chars are kept
+			line.left( ' ' ).left( i ).left( "x Teller" );
+		}
+		assertEquals( " 0x Teller 1x Tell... 1,00 EUR", line.rightPrice( 100, "EUR", 10 ).layout().toString() );
+		assertEquals( 30, line.length() );
+	}
+
+}
@@ -0,0 +1,253 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+
+/**
+ *
+ * JUnit4 test code for Snapshotter class.
+ *
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ *
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class SnapshotterTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final DataFactory dataFactory = ComponentFactory.getInstance().getDataFactory();
+
+	private final Customer cEric = dataFactory.createCustomer( "Eric Schulz-Mueller", "eric2346@gmail.com" );
+	private final Article aTasse = dataFactory.createArticle( "Tasse", 299, 20 );
+	private final Article aBecher = dataFactory.createArticle( "Becher", 149, 10 );
+
+	private final Path dir;
+
+	public SnapshotterTest() throws IOException {
+		this.dir = Files.createTempDirectory( "snapshot" );
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try( Stream<Path> files = Files.walk( dir ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+		}
+	}
+
+
+	@Test
+	public void test001_RestoreSnapshotAndReplayJournalBehindIt() throws IOException {
+		final Order o1, o2;
+		final long lsn;
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			CustomerRepository customers = new CustomerRepository();
+			OrderRepository orders = new OrderRepository();
+			inventory.add( aTasse ).add( aBecher );
+			customers.add( cEric );
+			journal.articleCreated( aTasse );
+			journal.articleCreated( aBecher );
+			journal.customerCreated( cEric, "Eric Schulz-Mueller" );
+			OrderProcessor op = new OrderProcessor( inventory, new VatRateTable(),
+				OrderProcessor.StockMode.LOCKING, RoundingMode.HALF_UP, journal, orders );
+			o1 = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 4 ) );
+			assertTrue( op.accept( o1 ) );
+
+			lsn = new Snapshotter( journal, inventory, customers, orders ).snapshot();
+			assertEquals( journal.end(), lsn );
+
+			o2 = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Becher", aBecher, 3 ) );
+			assertTrue( op.accept( o2 ) );
+			inventory.restock( aTasse, 2 );
+		}
+		InventoryManager inventory = new InventoryManager();
+		CustomerRepository customers = new CustomerRepository();
+		OrderRepository orders = new OrderRepository();
+		Path snapshot = Snapshotter.latest( dir );
+		assertNotNull( snapshot );
+		assertEquals( lsn, dataFactory.restore( snapshot, inventory, customers, orders ) );
+		assertEquals( 16, inventory.get( aTasse.getId() ).get().getUnitsInStore() );
+		assertEquals( 1, orders.count() );
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			assertEquals( 2, dataFactory.replay( journal, lsn, inventory, customers, orders ) );
+		}
+		assertEquals( 20 - 4 + 2, inventory.get( aTasse.getId() ).get().getUnitsInStore() );
+		assertEquals( 10 - 3, inventory.get( aBecher.getId() ).get().getUnitsInStore() );
+		assertEquals( "Eric", customers.get( cEric.getId() ).get().getFirstName() );
+		assertEquals( 2, orders.count() );
+		assertEquals( o1.getValue(), orders.get( o1.getId() ).get().getValue() );
+		assertEquals( o2.getValue(), orders.get( o2.getId() ).get().getValue() );
+	}
+
+	@Test
+	public void test002_SnapshotTruncatesJournal() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTasse );
+			journal.articleCreated( aTasse );
+			for( int i=0; i < 200; i++ ) {
+				inventory.restock( aTasse, 1 );
+			}
+			final long segments = countFiles( "journal-" );
+			assertTrue( segments > 3 );
+			new Snapshotter( journal, inventory, new CustomerRepository(), new OrderRepository() ).snapshot();
+			assertEquals( 1, countFiles( "journal-" ) );
+			inventory.restock( aTasse, 5 );
+		}
+		InventoryManager inventory = new InventoryManager();
+		long lsn = dataFactory.restore( Snapshotter.latest( dir ), inventory, new CustomerRepository(), new OrderRepository() );
+		try( OrderJournal journal = new OrderJournal( dir, 1024, false ) ) {
+			assertEquals( 1, dataFactory.replay( journal, lsn, inventory, new CustomerRepository(), new OrderRepository() ) );
+		}
+		assertEquals( 20 + 200 + 5, inventory.get( aTasse.getId() ).get().getUnitsInStore() );
+	}
+
+	@Test
+	public void test003_SnapshotsWhileAcceptingOrdersAreConsistent() throws IOException, InterruptedException {
+		final Article aTeller = dataFactory.createArticle( "Teller", 649, 100000 );
+		final Queue<Order> accepted = new ConcurrentLinkedQueue<Order>();
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 20, false ) ) {
+			final InventoryManager inventory = new InventoryManager( journal );
+			final CustomerRepository customers = new CustomerRepository();
+			final OrderRepository orders = new OrderRepository();
+			inventory.add( aTeller );
+			customers.add( cEric );
+			journal.articleCreated( aTeller );
+			journal.customerCreated( cEric, "Eric Schulz-Mueller" );
+			final OrderProcessor op = new OrderProcessor( inventory, new VatRateTable(),
+				OrderProcessor.StockMode.OPTIMISTIC, RoundingMode.HALF_UP, journal, orders );
+			final Snapshotter snapshotter = new Snapshotter( journal, inventory, customers, orders );
+			Thread[] threads = new Thread[ 4 ];
+			for( int t=0; t < threads.length; t++ ) {
+				final int units = t + 1;
+				threads[ t ] = new Thread( () -> {
+					for( int i=0; i < 500; i++ ) {
+						Order o = dataFactory.createOrder( cEric )
+							.addItem( dataFactory.createOrderItem( "Teller", aTeller, units ) );
+						if( op.accept( o ) ) {
+							accepted.add( o );
+						}
+						if( i % 100 == 50 ) {
+							inventory.restock( aTeller, units );
+						}
+					}
+				});
+				threads[ t ].start();
+			}
+			for( int i=0; i < 5; i++ ) {
+				snapshotter.snapshot();
+			}
+			for( Thread t : threads ) {
+				t.join();
+			}
+		}
+		InventoryManager inventory = new InventoryManager();
+		CustomerRepository customers = new CustomerRepository();
+		OrderRepository orders = new OrderRepository();
+		long lsn = dataFactory.restore( Snapshotter.latest( dir ), inventory, customers, orders );
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 20, false ) ) {
+			dataFactory.replay( journal, lsn, inventory, customers, orders );
+		}
+		assertEquals( aTeller.getUnitsInStore(), inventory.get( aTeller.getId() ).get().getUnitsInStore() );
+		assertEquals( 2000, accepted.size() );
+		for( Order o : accepted ) {
+			assertEquals( o.getValue(), orders.get( o.getId() ).get().getValue() );
+		}
+	}
+
+	@Test
+	public void test004_CorruptSnapshotIsRejected() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTasse ).add( aBecher );
+			new Snapshotter( journal, inventory, new CustomerRepository(), new OrderRepository() ).snapshot();
+		}
+		Path snapshot = Snapshotter.latest( dir );
+		try( FileChannel ch = FileChannel.open( snapshot, StandardOpenOption.WRITE ) ) {
+			ch.write( ByteBuffer.wrap( new byte[] { 'X' } ), ch.size() - 5 );	// tax class of last article
+		}
+		try {
+			dataFactory.restore( snapshot, new InventoryManager(), new CustomerRepository(), new OrderRepository() );
+			fail( "corrupt snapshot not detected" );
+		} catch( IllegalStateException e ) {
+			assertTrue( e.getMessage().startsWith( "corrupt snapshot" ) );
+		}
+	}
+
+	@Test
+	public void test005_TruncatedSnapshotIsRejected() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			inventory.add( aTasse ).add( aBecher );
+			new Snapshotter( journal, inventory, new CustomerRepository(), new OrderRepository() ).snapshot();
+		}
+		Path snapshot = Snapshotter.latest( dir );
+		try( FileChannel ch = FileChannel.open( snapshot, StandardOpenOption.WRITE ) ) {
+			ch.write( ByteBuffer.allocate( 4 ).putInt( 1 << 30 ).flip(), 32 );	// length of first article id
+		}
+		try {
+			dataFactory.restore( snapshot, new InventoryManager(), new CustomerRepository(), new OrderRepository() );
+			fail( "corrupt snapshot not detected" );
+		} catch( IllegalStateException e ) {
+			assertTrue( e.getMessage().startsWith( "corrupt snapshot" ) );
+		}
+	}
+
+	@Test
+	public void test006_OrdersAcceptedAfterCutAreExcluded() throws IOException {
+		try( OrderJournal journal = new OrderJournal( dir, 1 << 16, false ) ) {
+			InventoryManager inventory = new InventoryManager( journal );
+			OrderRepository orders = new OrderRepository();
+			inventory.add( aTasse );
+			OrderProcessor op = new OrderProcessor( inventory, new VatRateTable(),
+				OrderProcessor.StockMode.LOCKING, RoundingMode.HALF_UP, journal, orders );
+			Order o1 = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 1 ) );
+			Order o2 = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 2 ) );
+			Order rejected = dataFactory.createOrder( cEric ).addItem( dataFactory.createOrderItem( "Tasse", aTasse, 100 ) );
+			assertTrue( op.accept( o1 ) );
+			JournalGate.Cut cut = journal.gate().cut( journal::end );
+			assertTrue( op.accept( o2 ) );
+			assertFalse( op.accept( rejected ) );
+			journal.gate().release( cut );
+			assertTrue( cut.includes( o1 ) );
+			assertFalse( cut.includes( o2 ) );
+			assertEquals( 19, cut.unitsOf( aTasse ) );		// units at the cut
+			assertEquals( 2, orders.count() );
+			assertFalse( orders.contains( rejected.getId() ) );
+		}
+	}
+
+	private long countFiles( String prefix ) throws IOException {
+		try( Stream<Path> files = Files.list( dir ) ) {
+			List<Path> list = files.filter( p -> p.getFileName().toString().startsWith( prefix ) ).toList();
+			return list.size();
+		}
+	}
+}
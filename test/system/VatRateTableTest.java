@@ -0,0 +1,74 @@
+package system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+
+import datamodel.TaxClass;
+
+
+/**
+ * 
+ * JUnit4 test code for VatRateTable class.
+ * 
+ * Use of assertions, see:
+ *   https://junit.org/junit4/javadoc/latest/org/junit/Assert.html
+ * 
+ */
+@FixMethodOrder(org.junit.runners.MethodSorters.NAME_ASCENDING)
+public class VatRateTableTest {
+
+	/*
+	 * Test fixtures - objects needed to perform the tests
+	 */
+	private final VatRateTable vatRateTable = new VatRateTable();
+
+
+	@Test
+	public void test001_CurrentRates() {
+		assertEquals( 1900, vatRateTable.rate( TaxClass.STANDARD, new Date() ) );
+		assertEquals( 700, vatRateTable.rate( TaxClass.REDUCED, new Date() ) );
+		assertEquals( 1900, vatRateTable.rate( TaxClass.STANDARD, null ) );		// null is now
+		assertEquals( 1900, vatRateTable.rate( null, new Date() ) );				// null is STANDARD
+	}
+
+	@Test
+	public void test002_HistoricRates() {
+		assertEquals( 1600, vatRateTable.rate( TaxClass.STANDARD, date( 2020, 8, 15 ) ) );
+		assertEquals( 500, vatRateTable.rate( TaxClass.REDUCED, date( 2020, 12, 31 ) ) );
+		assertEquals( 1900, vatRateTable.rate( TaxClass.STANDARD, date( 2020, 6, 30 ) ) );
+		assertEquals( 1900, vatRateTable.rate( TaxClass.STANDARD, date( 2021, 1, 1 ) ) );
+		assertEquals( 1600, vatRateTable.rate( TaxClass.STANDARD, date( 2006, 12, 31 ) ) );
+	}
+
+	@Test
+	public void test010_DefineRates() {
+		Date future = date( 2099, 1, 1 );
+		vatRateTable.define( TaxClass.REDUCED, future, 1000 );
+		assertEquals( 1000, vatRateTable.rate( TaxClass.REDUCED, future ) );
+		assertEquals( 700, vatRateTable.rate( TaxClass.REDUCED, new Date() ) );
+		assertEquals( 500, vatRateTable.rate( TaxClass.REDUCED, date( 2020, 8, 15 ) ) );
+
+		vatRateTable.define( TaxClass.REDUCED, future, 1100 );		// replace rate
+		assertEquals( 1100, vatRateTable.rate( TaxClass.REDUCED, date( 2100, 1, 1 ) ) );
+		assertEquals( 1900, vatRateTable.rate( TaxClass.STANDARD, future ) );
+	}
+
+	@Test
+	public void test020_VatByTaxClassAndDate() {
+		OrderProcessor op = new OrderProcessor( new InventoryManager() );
+		assertEquals( 796L, op.vat( 4984L, TaxClass.STANDARD, new Date() ) );
+		assertEquals( 687L, op.vat( 4984L, TaxClass.STANDARD, date( 2020, 8, 15 ) ) );
+		assertEquals( 326L, op.vat( 4984L, TaxClass.REDUCED, new Date() ) );
+	}
+
+	private static Date date( int year, int month, int day ) {
+		return Date.from( LocalDate.of( year, month, day ).atStartOfDay( ZoneId.of( "Europe/Berlin" ) ).toInstant() );
+	}
+
+}
@@ -19,7 +19,21 @@ import org.junit.runners.Suite;
 	datamodel.ArticleTest.class,
 	datamodel.OrderItemTest.class,
 	datamodel.OrderTest.class,
-	datamodel.RawDataFactoryTest.class
+	datamodel.RawDataFactoryTest.class,
+	system.InventoryManagerTest.class,
+	system.ColumnarInventoryManagerTest.class,
+	system.OffHeapInventoryManagerTest.class,
+	system.IDGeneratorTest.class,
+	system.DescriptionDictionaryTest.class,
+	system.CustomerRepositoryTest.class,
+	system.OrderRepositoryTest.class,
+	system.OrderProcessorTest.class,
+	system.OrderIntakeTest.class,
+	system.OrderJournalTest.class,
+	system.SnapshotterTest.class,
+	system.AggregatesTest.class,
+	system.VatRateTableTest.class,
+	system.OutputProcessorTest.class
 	// add more test classes ...
 })
 public class TestSuite {